@@ -0,0 +1,128 @@
+package cn.daydayup.dev.md2doc.core;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * @ClassName BatchZipWriter
+ * @Description 以有限并发执行一批文档生成任务，结果按完成顺序写入压缩包；批量转换和邮件合并共用
+ * @Author ZhaoYanNing
+ * @Date 2025/11/25 14:10
+ * @Version 1.0
+ */
+final class BatchZipWriter {
+
+    private final ZipOutputStream zip;
+    private final Map<String, String> failures = new LinkedHashMap<>();
+    private final Set<String> entryNames = new HashSet<>();
+    private int total;
+    private int succeeded;
+
+    BatchZipWriter(ZipOutputStream zip) {
+        this.zip = zip;
+    }
+
+    /**
+     * 依次取出任务并提交，同时在途（已生成未写出）的文档不超过 2 * parallelism 篇
+     * 任务从迭代器中逐个取出，调用方可以边读取输入边生成，内存占用与批次大小无关
+     * @param tasks 生成任务，单个任务失败时应返回带错误信息的结果而不是抛出异常
+     * @param parallelism 最大并发数
+     */
+    void run(Iterator<Callable<Generated>> tasks, int parallelism) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        CompletionService<Generated> completion = new ExecutorCompletionService<>(executor);
+        Semaphore inFlight = new Semaphore(Math.max(1, parallelism) * 2);
+        try {
+            int submitted = 0;
+            int completed = 0;
+            while (tasks.hasNext()) {
+                Callable<Generated> task = tasks.next();
+                // 已生成但尚未写出的文档过多时，先写出已完成的结果
+                while (!inFlight.tryAcquire()) {
+                    write(completion.take());
+                    inFlight.release();
+                    completed++;
+                }
+                completion.submit(task);
+                submitted++;
+            }
+            while (completed < submitted) {
+                write(completion.take());
+                inFlight.release();
+                completed++;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    Map<String, String> getFailures() {
+        return failures;
+    }
+
+    int getTotal() {
+        return total;
+    }
+
+    int getSucceeded() {
+        return succeeded;
+    }
+
+    private void write(Future<Generated> future) throws IOException, InterruptedException {
+        Generated generated;
+        try {
+            generated = future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("批量生成任务异常: " + e.getCause().getMessage(), e.getCause());
+        }
+        total++;
+        if (generated.data() == null) {
+            failures.put(generated.name(), generated.error());
+            return;
+        }
+        zip.putNextEntry(new ZipEntry(uniqueEntryName(generated.name())));
+        zip.write(generated.data());
+        zip.closeEntry();
+        succeeded++;
+    }
+
+    /**
+     * 文档名去除路径分隔符等非法字符，重名时追加序号
+     */
+    private String uniqueEntryName(String name) {
+        String base = name == null || name.isBlank() ? "document" : name.replaceAll("[\\\\/:*?\"<>|]", "_");
+        String lower = base.toLowerCase();
+        if (lower.endsWith(".md") || lower.endsWith(".docx")) {
+            base = base.substring(0, base.lastIndexOf('.'));
+        }
+        String entryName = base + ".docx";
+        for (int i = 2; !entryNames.add(entryName); i++) {
+            entryName = base + "-" + i + ".docx";
+        }
+        return entryName;
+    }
+
+    /**
+     * 单篇文档的生成结果，失败时 data 为空
+     */
+    record Generated(String name, byte[] data, String error) {
+
+        static Generated failed(String name, Exception e) {
+            return new Generated(name, null, e.getMessage() == null ? e.toString() : e.getMessage());
+        }
+    }
+}
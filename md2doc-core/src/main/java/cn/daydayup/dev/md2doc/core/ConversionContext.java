@@ -0,0 +1,122 @@
+package cn.daydayup.dev.md2doc.core;
+
+import cn.daydayup.dev.md2doc.core.model.ConversionOptions;
+import cn.daydayup.dev.md2doc.core.model.SharedResources;
+import cn.daydayup.dev.md2doc.core.model.WordParam;
+import cn.daydayup.dev.md2doc.core.parse.MarkdownBlock;
+import cn.daydayup.dev.md2doc.core.util.ImageDownloader;
+import cn.daydayup.dev.md2doc.core.util.ImageFetcher;
+import cn.daydayup.dev.md2doc.core.util.ImageOptimizer;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @ClassName ConversionContext
+ * @Description 单次转换的上下文，每次调用独立创建；转换器本身不持有可变状态，可在多线程间共享
+ * @Author ZhaoYanNing
+ * @Date 2025/11/17 14:05
+ * @Version 1.0
+ */
+@Getter
+public class ConversionContext {
+
+    /**
+     * 本次转换的参数，转换期间不应再修改
+     */
+    private final ConversionOptions options;
+
+    /**
+     * 文档标题，在转换开始时确定，并行渲染的各块看到同一个值
+     */
+    private final String title;
+
+    /**
+     * 已开始加载的图片，按来源去重；图片加载时限从第一次预加载开始计算
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<String, CompletableFuture<WordParam>> prefetchedImages = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private volatile long imageDeadlineNanos;
+
+    private ConversionContext(ConversionOptions options, String title) {
+        this.options = options;
+        this.title = title;
+    }
+
+    public static ConversionContext create(ConversionOptions options) {
+        // 生成文档标题：上个月的年月 + "分析报告"
+        LocalDate lastMonth = LocalDate.now().minusMonths(1);
+        String title = lastMonth.getYear() + "年" + lastMonth.getMonthValue() + "月分析报告";
+        return new ConversionContext(options, title);
+    }
+
+    /**
+     * 并发加载块中的全部图片，不等待加载完成；未设置图片加载器时不做任何事
+     * @param blocks 本次转换中需要渲染的块
+     */
+    public void prefetchImages(Collection<MarkdownBlock> blocks) {
+        ImageFetcher fetcher = options.getImageFetcher();
+        if (fetcher == null) {
+            return;
+        }
+        synchronized (prefetchedImages) {
+            if (imageDeadlineNanos == 0) {
+                imageDeadlineNanos = System.nanoTime() + fetcher.getDeadline().toNanos();
+            }
+        }
+        for (MarkdownBlock block : blocks) {
+            if (block instanceof MarkdownBlock.Image image) {
+                prefetchedImages.computeIfAbsent(image.getSource(), source -> fetcher.fetch(source, this::fetchImage));
+            }
+        }
+    }
+
+    /**
+     * 加载图片参数，设置了共享资源时同一来源的图片只加载一次
+     * 已预加载的图片等待其结果，超过文档的图片加载时限时取消尚未开始的加载并返回占位符
+     * @param imageSource 图片来源（URL 或本地路径）
+     * @return 图片参数或加载失败的占位符文本
+     */
+    public WordParam loadImage(String imageSource) {
+        CompletableFuture<WordParam> prefetched = prefetchedImages.get(imageSource);
+        if (prefetched == null) {
+            return fetchImage(imageSource);
+        }
+        try {
+            return prefetched.get(Math.max(0, imageDeadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | CancellationException e) {
+            prefetched.cancel(false);
+            return WordParam.imagePlaceholder(imageSource, "超过文档的图片加载时限");
+        } catch (ExecutionException e) {
+            return WordParam.imagePlaceholder(imageSource, "图片处理异常: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return WordParam.imagePlaceholder(imageSource, "图片加载被中断");
+        }
+    }
+
+    /**
+     * 取消本次转换中尚未完成的图片预加载，排队中的加载不再占用主机和总并发额度；转换结束或失败时调用
+     */
+    public void cancelPrefetchedImages() {
+        prefetchedImages.values().forEach(future -> future.cancel(false));
+    }
+
+    private WordParam fetchImage(String imageSource) {
+        SharedResources resources = options.getSharedResources();
+        ImageDownloader downloader = options.getImageDownloader();
+        ImageOptimizer optimizer = options.getImageOptimizer();
+        return resources == null ? WordParam.image(imageSource, downloader, optimizer)
+                : resources.image(imageSource, downloader, optimizer);
+    }
+}
@@ -0,0 +1,210 @@
+package cn.daydayup.dev.md2doc.core;
+
+import cn.daydayup.dev.md2doc.core.generate.CompiledTemplate;
+import cn.daydayup.dev.md2doc.core.model.BatchResult;
+import cn.daydayup.dev.md2doc.core.model.ChartTable;
+import cn.daydayup.dev.md2doc.core.model.SharedResources;
+import cn.daydayup.dev.md2doc.core.model.WordParam;
+import cn.daydayup.dev.md2doc.core.model.WordParams;
+import cn.daydayup.dev.md2doc.core.util.ImageDownloader;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * @ClassName MailMergeConverter
+ * @Description 邮件合并：同一个已编译模板以 NDJSON 中的每条记录各渲染一份文档，以有限并发渲染，结果依次写入压缩包
+ *              每行一条记录，格式如下（各部分均可省略）：
+ *              {"name": "文件名", "text": {"占位符": "文本"}, "images": {"占位符": "图片URL或路径"},
+ *               "tables": {"占位符": [["表头1", "表头2"], ["值1", "值2"]]},
+ *               "charts": {"图表标题": {"title": "新标题", "xAxis": ["一月", "二月"], "series": {"系列名": [1, 2]}}}}
+ * @Author ZhaoYanNing
+ * @Date 2025/11/25 14:10
+ * @Version 1.0
+ */
+public class MailMergeConverter {
+
+    private static final Logger logger = LogManager.getLogger(MailMergeConverter.class);
+
+    /**
+     * ObjectMapper 线程安全，所有记录共用一个实例
+     */
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MailMergeConverter() {
+    }
+
+    /**
+     * 逐行读取记录并渲染，每份文档写入压缩包后即释放；单条记录失败不影响其余记录
+     * 记录在工作线程中解析，同时在途的记录不超过 2 * parallelism 条，内存占用与记录数无关
+     * 各记录共用的图片按字节数做LRU缓存（SharedResources.DEFAULT_MAX_IMAGE_BYTES），图片来源再多也不会无限增长
+     * @param template 已编译的模板
+     * @param records NDJSON 记录（由调用方负责关闭）
+     * @param parallelism 最大并发渲染数
+     * @param zip 结果压缩包（由调用方负责 finish 和关闭）
+     * @return 汇总结果
+     */
+    public static BatchResult merge(CompiledTemplate template, Reader records, int parallelism,
+                                    ZipOutputStream zip) throws IOException, InterruptedException {
+        return merge(template, records, parallelism, ImageDownloader.defaultDownloader(), zip);
+    }
+
+    /**
+     * 使用指定的图片下载器逐行读取记录并渲染
+     * @param template 已编译的模板
+     * @param records NDJSON 记录（由调用方负责关闭）
+     * @param parallelism 最大并发渲染数
+     * @param downloader 加载记录中图片使用的下载器
+     * @param zip 结果压缩包（由调用方负责 finish 和关闭）
+     * @return 汇总结果
+     */
+    public static BatchResult merge(CompiledTemplate template, Reader records, int parallelism,
+                                    ImageDownloader downloader, ZipOutputStream zip)
+            throws IOException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        SharedResources resources = new SharedResources();
+        BatchZipWriter writer = new BatchZipWriter(zip);
+        try {
+            writer.run(new RecordTasks(new BufferedReader(records), template, resources, downloader), parallelism);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        BatchResult result = new BatchResult(writer.getTotal(), writer.getSucceeded(), writer.getFailures(),
+                System.currentTimeMillis() - startTime, resources.imageCount(), 0);
+        logger.info("邮件合并完成：共 {} 条记录，成功 {} 份，耗时 {}ms，吞吐量 {} 份/秒",
+                result.getTotal(), result.getSucceeded(), result.getElapsedMillis(),
+                String.format("%.2f", result.getDocsPerSecond()));
+        return result;
+    }
+
+    /**
+     * 将一条记录转换为模板参数
+     * @param record 记录的JSON树
+     * @param resources 共享资源，同一来源的图片只加载一次
+     * @return 模板参数
+     */
+    public static WordParams toWordParams(JsonNode record, SharedResources resources) {
+        return toWordParams(record, resources, ImageDownloader.defaultDownloader());
+    }
+
+    /**
+     * 将一条记录转换为模板参数，图片使用指定的下载器加载
+     * @param record 记录的JSON树
+     * @param resources 共享资源，同一来源的图片只加载一次
+     * @param downloader 图片下载器
+     * @return 模板参数
+     */
+    public static WordParams toWordParams(JsonNode record, SharedResources resources, ImageDownloader downloader) {
+        WordParams params = WordParams.create();
+        record.path("text").fields().forEachRemaining(field ->
+                params.setText(field.getKey(), field.getValue().isValueNode()
+                        ? field.getValue().asText() : field.getValue().toString()));
+        record.path("images").fields().forEachRemaining(field ->
+                params.setParam(field.getKey(), resources.image(field.getValue().asText(), downloader, null)));
+        record.path("tables").fields().forEachRemaining(field -> {
+            List<List<String>> rows = new ArrayList<>();
+            for (JsonNode row : field.getValue()) {
+                List<String> cells = new ArrayList<>();
+                row.forEach(cell -> cells.add(cell.isNull() ? "" : cell.asText()));
+                rows.add(cells);
+            }
+            params.setParam(field.getKey(), WordParam.table(rows));
+        });
+        record.path("charts").fields().forEachRemaining(field -> {
+            JsonNode chart = field.getValue();
+            ChartTable chartTable = params.addChart(field.getKey());
+            chartTable.setTitle(chart.path("title").asText(field.getKey()));
+            chart.path("xAxis").forEach(x -> chartTable.getXAxis().addAllData(x.asText()));
+            for (Map.Entry<String, JsonNode> series : iterable(chart.path("series").fields())) {
+                List<Number> data = new ArrayList<>();
+                series.getValue().forEach(value -> data.add(value.isNumber() ? value.numberValue() : null));
+                chartTable.newNumberYAxis(series.getKey()).setTitle(series.getKey()).addAllData(data);
+            }
+        });
+        return params;
+    }
+
+    private static <T> Iterable<T> iterable(Iterator<T> iterator) {
+        return () -> iterator;
+    }
+
+    /**
+     * 按行读取记录并生成渲染任务，空行跳过；记录没有 name 时以行号命名
+     */
+    private static class RecordTasks implements Iterator<Callable<BatchZipWriter.Generated>> {
+
+        private final BufferedReader reader;
+        private final CompiledTemplate template;
+        private final SharedResources resources;
+        private final ImageDownloader downloader;
+        private String nextLine;
+        private int lineNumber;
+
+        RecordTasks(BufferedReader reader, CompiledTemplate template, SharedResources resources,
+                    ImageDownloader downloader) {
+            this.reader = reader;
+            this.template = template;
+            this.resources = resources;
+            this.downloader = downloader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (nextLine == null) {
+                    String line = reader.readLine();
+                    if (line == null) {
+                        return false;
+                    }
+                    lineNumber++;
+                    if (!line.isBlank()) {
+                        nextLine = line;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException("读取合并记录失败: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public Callable<BatchZipWriter.Generated> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String line = nextLine;
+            String defaultName = "record-" + lineNumber;
+            nextLine = null;
+            return () -> render(line, defaultName);
+        }
+
+        private BatchZipWriter.Generated render(String line, String defaultName) {
+            String name = defaultName;
+            try {
+                JsonNode record = objectMapper.readTree(line);
+                name = record.path("name").asText(defaultName);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                template.render(toWordParams(record, resources, downloader), out);
+                return new BatchZipWriter.Generated(name, out.toByteArray(), null);
+            } catch (Exception e) {
+                logger.error("邮件合并中记录 {} 渲染失败: {}", name, e.getMessage());
+                return BatchZipWriter.Generated.failed(name, e);
+            }
+        }
+    }
+}
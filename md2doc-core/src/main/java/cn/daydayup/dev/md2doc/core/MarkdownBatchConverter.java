@@ -0,0 +1,74 @@
+package cn.daydayup.dev.md2doc.core;
+
+import cn.daydayup.dev.md2doc.core.model.BatchDocument;
+import cn.daydayup.dev.md2doc.core.model.BatchResult;
+import cn.daydayup.dev.md2doc.core.model.ConversionOptions;
+import cn.daydayup.dev.md2doc.core.model.SharedResources;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * @ClassName MarkdownBatchConverter
+ * @Description 批量转换：一批文档共享图片、ECharts配置和文档骨架，以有限并发转换，结果依次写入压缩包
+ * @Author ZhaoYanNing
+ * @Date 2025/11/19 10:20
+ * @Version 1.0
+ */
+public class MarkdownBatchConverter {
+
+    private static final Logger logger = LogManager.getLogger(MarkdownBatchConverter.class);
+
+    private final MarkdownToWordConverter converter;
+
+    public MarkdownBatchConverter(MarkdownToWordConverter converter) {
+        this.converter = converter;
+    }
+
+    /**
+     * 批量转换并将每篇文档写入压缩包，按完成顺序写出；单篇失败不影响其余文档
+     * 同时在途（已转换未写出）的文档不超过 2 * parallelism 篇，内存占用与批次大小无关
+     * @param documents 待转换的文档
+     * @param options 转换参数，未设置共享资源时为本批创建一个
+     * @param parallelism 最大并发转换数
+     * @param zip 结果压缩包（由调用方负责 finish 和关闭）
+     * @return 汇总结果
+     */
+    public BatchResult convert(List<BatchDocument> documents, ConversionOptions options, int parallelism,
+                               ZipOutputStream zip) throws IOException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        ConversionOptions batchOptions = options.copy();
+        if (batchOptions.getSharedResources() == null) {
+            batchOptions.setSharedResources(new SharedResources());
+        }
+
+        BatchZipWriter writer = new BatchZipWriter(zip);
+        writer.run(documents.stream()
+                .<Callable<BatchZipWriter.Generated>>map(document -> () -> convertOne(document, batchOptions))
+                .iterator(), parallelism);
+
+        SharedResources resources = batchOptions.getSharedResources();
+        BatchResult result = new BatchResult(documents.size(), writer.getSucceeded(), writer.getFailures(),
+                System.currentTimeMillis() - startTime, resources.imageCount(), resources.echartsConfigCount());
+        logger.info("批量转换完成：共 {} 篇，成功 {} 篇，耗时 {}ms，吞吐量 {} 篇/秒",
+                result.getTotal(), result.getSucceeded(), result.getElapsedMillis(),
+                String.format("%.2f", result.getDocsPerSecond()));
+        return result;
+    }
+
+    private BatchZipWriter.Generated convertOne(BatchDocument document, ConversionOptions options) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            converter.convert(document.getMarkdown(), out, options);
+            return new BatchZipWriter.Generated(document.getName(), out.toByteArray(), null);
+        } catch (Exception e) {
+            logger.error("批量转换中文档 {} 转换失败: {}", document.getName(), e.getMessage());
+            return BatchZipWriter.Generated.failed(document.getName(), e);
+        }
+    }
+}
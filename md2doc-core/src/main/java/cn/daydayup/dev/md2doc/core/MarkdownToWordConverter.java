@@ -1,24 +1,43 @@
 package cn.daydayup.dev.md2doc.core;
 
+import cn.daydayup.dev.md2doc.core.generate.DocxFragment;
+import cn.daydayup.dev.md2doc.core.generate.FragmentCache;
+import cn.daydayup.dev.md2doc.core.generate.FragmentRenderer;
+import cn.daydayup.dev.md2doc.core.generate.PlaceholderIndex;
 import cn.daydayup.dev.md2doc.core.generate.PoiWordGenerator;
+import cn.daydayup.dev.md2doc.core.generate.StreamingDocxWriter;
+import cn.daydayup.dev.md2doc.core.model.ConversionOptions;
 import cn.daydayup.dev.md2doc.core.model.WordParam;
 import cn.daydayup.dev.md2doc.core.model.WordParams;
-import cn.daydayup.dev.md2doc.core.parse.MarkdownTableParser;
+import cn.daydayup.dev.md2doc.core.parse.MarkdownBlock;
+import cn.daydayup.dev.md2doc.core.parse.MarkdownBlockParser;
 import cn.daydayup.dev.md2doc.core.template.DynamicWordDocumentCreator;
-import cn.daydayup.dev.md2doc.core.template.EChartsToWordConverter;
 import lombok.val;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import java.io.File;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * @ClassName FullMarkdownToWordConverter
  * @Description 完整的Markdown到Word转换器，支持文字、表格和ECharts图表的转换
+ *              实例不持有可变状态，可在多线程间共享；每次转换的状态保存在 ConversionContext 中
  * @Author ZhaoYanNing
  * @Date 2025/8/13 9:39
  * @Version 1.0
@@ -27,22 +46,10 @@ public class MarkdownToWordConverter {
 
     private static final Logger logger = LogManager.getLogger(MarkdownToWordConverter.class);
 
-    // 用于匹配ECharts代码块的正则表达式
-    private static final Pattern ECHARTS_PATTERN = Pattern.compile(
-            "```echarts\\s*\\n(.*?)\\n```",
-            Pattern.DOTALL
-    );
-    // 用于匹配Mermaid代码块的正则表达式
-    private static final Pattern MERMAID_PATTERN = Pattern.compile(
-            "```mermaid\\s*\\n(.*?)\\n```",
-            Pattern.DOTALL
-    );
-    // 用于匹配表格的正则表达式
-    private static final Pattern TABLE_PATTERN = Pattern.compile("(\\|[^\\n]*\\|\\s*\\n\\s*\\|[-|:\\s]*\\|\\s*\\n(?:\\s*\\|[^\\n]*\\|\\s*\\n?)*)", Pattern.MULTILINE);
-    // 用于匹配标题的正则表达式
-    private static final Pattern HEADER_PATTERN = Pattern.compile("^(#{1,6})\\s+(.*)$", Pattern.MULTILINE);
-    // 用于匹配图片的正则表达式: ![alt](url)
-    private static final Pattern IMAGE_PATTERN = Pattern.compile("!\\[([^\\]]*)\\]\\(([^)]+)\\)", Pattern.MULTILINE);
+    /**
+     * 并行渲染时每段最多包含的块数，与在途段数一起限制已渲染未写出的片段数量
+     */
+    private static final int MAX_CHUNK_BLOCKS = 32;
 
     /**
      * 将Markdown文件转换为Word文档
@@ -51,8 +58,13 @@ public class MarkdownToWordConverter {
      * @throws Exception 转换过程中可能抛出的异常
      */
     public void convertMarkdownFileToWord(String markdownFile, String outputFile) throws Exception {
-        String markdownContent = new String(Files.readAllBytes(Paths.get(markdownFile)));
-        convertMarkdownToWord(markdownContent, outputFile);
+        long startTime = System.currentTimeMillis();
+        try (Reader reader = Files.newBufferedReader(Paths.get(markdownFile), StandardCharsets.UTF_8);
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+            convert(reader, out);
+        }
+        long endTime = System.currentTimeMillis();
+        logger.info("Markdown文件已成功转换为Word文档: {}，耗时: {}ms", outputFile, (endTime - startTime));
     }
 
     /**
@@ -63,150 +75,507 @@ public class MarkdownToWordConverter {
      */
     public void convertMarkdownToWord(String markdownContent, String outputFile) throws Exception {
         long startTime = System.currentTimeMillis();
-        // 创建临时模板文件
-        String templateFile = outputFile.replace(".docx", "_template.docx");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+            convert(markdownContent, out, ConversionOptions.create());
+        }
+        long endTime = System.currentTimeMillis();
+        logger.info("Markdown文档已成功转换为Word文档: {}，耗时: {}ms", outputFile, (endTime - startTime));
+    }
+
+    /**
+     * 从字符流读取Markdown并将Word文档写入输出流，不访问文件系统
+     * @param reader Markdown字符流（由调用方负责关闭）
+     * @param out Word文档输出流（由调用方负责关闭）
+     * @throws Exception 转换过程中可能抛出的异常
+     */
+    public void convert(Reader reader, OutputStream out) throws Exception {
+        convert(reader, out, ConversionOptions.create());
+    }
+
+    /**
+     * 从字节流读取Markdown并将Word文档写入输出流，不访问文件系统
+     * @param in Markdown字节流，按 options 中的字符集解码（由调用方负责关闭）
+     * @param out Word文档输出流（由调用方负责关闭）
+     * @param options 转换参数
+     * @throws Exception 转换过程中可能抛出的异常
+     */
+    public void convert(InputStream in, OutputStream out, ConversionOptions options) throws Exception {
+        convert(new InputStreamReader(in, options.getCharset()), out, options);
+    }
+
+    /**
+     * 从字符流读取Markdown并将Word文档写入输出流，不访问文件系统
+     * @param reader Markdown字符流（由调用方负责关闭）
+     * @param out Word文档输出流（由调用方负责关闭）
+     * @param options 转换参数
+     * @throws Exception 转换过程中可能抛出的异常
+     */
+    public void convert(Reader reader, OutputStream out, ConversionOptions options) throws Exception {
+        StringBuilder markdown = new StringBuilder();
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            markdown.append(buffer, 0, read);
+        }
+        convert(markdown.toString(), out, options);
+    }
+
+    /**
+     * 将Markdown内容转换为Word文档并写入输出流
+     * @param markdownContent Markdown内容
+     * @param out Word文档输出流（由调用方负责关闭）
+     * @param options 转换参数
+     * @throws Exception 转换过程中可能抛出的异常
+     */
+    public void convert(String markdownContent, OutputStream out, ConversionOptions options) throws Exception {
+        convert(markdownContent, out, ConversionContext.create(options));
+    }
+
+    /**
+     * 在给定的转换上下文中将Markdown内容转换为Word文档并写入输出流
+     * @param markdownContent Markdown内容
+     * @param out Word文档输出流（由调用方负责关闭）
+     * @param context 本次转换的上下文
+     * @throws Exception 转换过程中可能抛出的异常
+     */
+    public void convert(String markdownContent, OutputStream out, ConversionContext context) throws Exception {
+        try {
+            convertBlocks(markdownContent, out, context);
+        } finally {
+            context.cancelPrefetchedImages();
+        }
+    }
 
-        // 使用新的方法创建完整模板，更好地保持Markdown结构
-        DynamicWordDocumentCreator.createCompleteTemplateFromMarkdown(templateFile, markdownContent);
+    private void convertBlocks(String markdownContent, OutputStream out, ConversionContext context) throws Exception {
+        ConversionOptions options = context.getOptions();
 
-        val params = WordParams.create();
+        // 一次性解析Markdown块，模板构建和参数提取共用同一份块列表
+        List<MarkdownBlock> blocks = MarkdownBlockParser.parse(markdownContent);
 
-        // 处理图片（在 ECharts、Mermaid 和表格之前处理）
-        processImages(params, markdownContent);
+        if (options.getBackend() == ConversionOptions.Backend.STREAMING
+                || options.getFragmentCache() != null || options.getRenderPool() != null) {
+            convertStreaming(blocks, out, context);
+            return;
+        }
 
-        // 处理 Mermaid 图表
-        processMermaid(params, markdownContent);
+        // 图片在构建模板期间并发加载
+        context.prefetchImages(blocks);
 
-        // 处理ECharts图表
-        processECharts(params, markdownContent);
+        // 在内存中创建完整模板，直接交给替换阶段，只序列化一次
+        PlaceholderIndex index = new PlaceholderIndex();
+        try (XWPFDocument document = DynamicWordDocumentCreator.createCompleteTemplateFromMarkdown(blocks, options, index)) {
+            val params = WordParams.create();
 
-        // 处理表格
-        processTables(params, markdownContent);
+            // 处理图片（在 ECharts、Mermaid 和表格之前处理）
+            processImages(params, blocks, context);
 
-        // 处理文本内容
-        processTextContent(params, markdownContent);
+            // 处理 Mermaid 图表
+            processMermaid(params, blocks);
 
-        // 生成Word文档
-        PoiWordGenerator.buildDoc(
-                params,
-                new File(templateFile),
-                new File(outputFile)
-        );
+            // 处理ECharts图表
+            processECharts(blocks, context);
 
-        // 删除临时模板文件
-        new File(templateFile).delete();
-        long endTime = System.currentTimeMillis();
-        logger.info("Markdown文档已成功转换为Word文档: {}，耗时: {}ms", outputFile, (endTime - startTime));
+            // 处理表格
+            processTables(params, blocks);
+
+            // 处理文本内容
+            processTextContent(params, context);
+
+            // 生成Word文档
+            if (!PoiWordGenerator.buildDoc(params, document, index, out)) {
+                throw new IOException("生成Word文档失败");
+            }
+        }
     }
 
+    /**
+     * 书籍模式：将多个Markdown章节合并为一篇Word文档
+     * 标题编号跨章节连续，章节之间插入分节符；章节按块分段在线程池中并行渲染，图片和图表部件在整篇文档中统一编号
+     * 章节的解析和各段的渲染只比写出提前有限的段数，已渲染未写出的片段不随书籍长度增长
+     * @param chapters 各章节的Markdown内容，按顺序合并
+     * @param out Word文档输出流（由调用方负责关闭）
+     * @param options 转换参数，未设置渲染线程池时使用公共线程池
+     * @throws Exception 转换过程中可能抛出的异常
+     */
+    public void convertBook(List<String> chapters, OutputStream out, ConversionOptions options) throws Exception {
+        long startTime = System.currentTimeMillis();
+        ConversionContext context = ConversionContext.create(options);
+        ForkJoinPool pool = options.getRenderPool() != null ? options.getRenderPool() : ForkJoinPool.commonPool();
+
+        try (StreamingDocxWriter writer = new StreamingDocxWriter(out);
+             FragmentRenderer renderer = new FragmentRenderer(options)) {
+            val headerParams = WordParams.create();
+            processTextContent(headerParams, context);
+            writer.append(renderer.renderHeader(headerParams));
+
+            BookChunks chunks = new BookChunks(chapters, pool, renderer, context);
+            try {
+                writeInOrder(pool, chunks, writer);
+            } finally {
+                chunks.cancel();
+                context.cancelPrefetchedImages();
+            }
+            writer.finish(renderer.skeleton(headerParams));
+        }
+        logger.info("书籍模式转换完成：共 {} 个章节，耗时: {}ms", chapters.size(), System.currentTimeMillis() - startTime);
+    }
 
     /**
-     * 处理 Mermaid 图表
-     * Mermaid 图表将被转换为文本说明（占位符）
-     * @param params Word参数对象
-     * @param markdownContent Markdown内容
+     * 流式后端：逐块准备参数、渲染片段并立即写出，不在内存中保留整篇文档
+     * 提供片段缓存时，内容和上下文（标题编号等）都未变化的块直接复用缓存片段，跳过参数准备和渲染；图片块总是重新加载和渲染
+     * 提供渲染线程池时，各块分段在线程池中并行渲染，再按文档顺序写出，同时在途的段数有上限
+     * @param blocks Markdown块级元素
+     * @param out Word文档输出流
+     * @param context 本次转换的上下文
      */
-    private void processMermaid(WordParams params, String markdownContent) {
-        Matcher matcher = MERMAID_PATTERN.matcher(markdownContent);
-        int mermaidIndex = 1;
+    private void convertStreaming(List<MarkdownBlock> blocks, OutputStream out, ConversionContext context) throws Exception {
+        ConversionOptions options = context.getOptions();
+        try (StreamingDocxWriter writer = new StreamingDocxWriter(out);
+             FragmentRenderer renderer = new FragmentRenderer(options)) {
+            val headerParams = WordParams.create();
+            processTextContent(headerParams, context);
+            writer.append(renderer.renderHeader(headerParams));
+
+            // 按文档顺序推进标题编号、列表编号，确定每个块的上下文；之后各块的渲染互不依赖
+            String[] blockContexts = new String[blocks.size()];
+            for (int i = 0; i < blocks.size(); i++) {
+                blockContexts[i] = renderer.prepare(blocks.get(i));
+            }
+
+            // 只预加载需要渲染的块中的图片，缓存命中的块不再加载
+            FragmentCache cache = options.getFragmentCache();
+            String fingerprint = options.fragmentFingerprint();
+            List<MarkdownBlock> uncached = new ArrayList<>();
+            for (int i = 0; i < blocks.size(); i++) {
+                if (cache == null || !cache.contains(blocks.get(i), blockContexts[i], fingerprint)) {
+                    uncached.add(blocks.get(i));
+                }
+            }
+            context.prefetchImages(uncached);
+
+            if (options.getRenderPool() == null) {
+                for (int i = 0; i < blocks.size(); i++) {
+                    writer.append(renderBlock(renderer, blocks.get(i), blockContexts[i], context));
+                }
+            } else {
+                renderParallel(blocks, blockContexts, context, writer);
+            }
+            writer.finish(renderer.skeleton(headerParams));
+
+            if (cache != null) {
+                logger.info("片段缓存：命中 {} 次，未命中 {} 次，当前缓存 {} 个片段，共 {} 字节",
+                        cache.getHitCount(), cache.getMissCount(), cache.size(), cache.bytes());
+            }
+        }
+    }
 
-        while (matcher.find()) {
-            String mermaidContent = matcher.group(1).trim();
-            String mermaidKey = "mermaid" + mermaidIndex;
+    /**
+     * 将块按顺序切分为若干段，每段在线程池中使用独立的渲染器渲染，按文档顺序等待并写出
+     * 列表编号已在骨架文档中创建，各段渲染器只需按上下文引用编号ID
+     */
+    private void renderParallel(List<MarkdownBlock> blocks, String[] blockContexts, ConversionContext context,
+                                StreamingDocxWriter writer) throws Exception {
+        ForkJoinPool pool = context.getOptions().getRenderPool();
+        int chunkSize = Math.min(MAX_CHUNK_BLOCKS,
+                Math.max(1, (blocks.size() + pool.getParallelism() * 4 - 1) / (pool.getParallelism() * 4)));
+        int[] next = {0};
+        writeInOrder(pool, () -> {
+            if (next[0] >= blocks.size()) {
+                return null;
+            }
+            int from = next[0];
+            int to = Math.min(blocks.size(), from + chunkSize);
+            next[0] = to;
+            return () -> renderRange(blocks, blockContexts, from, to, context);
+        }, writer);
+    }
+
+    /**
+     * 按顺序提交各段的渲染任务并按顺序写出结果，在途（已提交未写出）的段数不超过线程池并行度的两倍
+     * 每写出一段再提交下一段，已渲染未写出的片段不随文档长度增长；任一段失败时抛出其异常并取消其余任务
+     * @param pool 渲染线程池
+     * @param chunks 按顺序创建各段的渲染任务，在调用线程中调用
+     * @param writer 片段写出器
+     */
+    private static void writeInOrder(ForkJoinPool pool, ChunkSource chunks, StreamingDocxWriter writer)
+            throws Exception {
+        int window = inFlightChunks(pool);
+        ArrayDeque<ForkJoinTask<List<DocxFragment>>> inFlight = new ArrayDeque<>();
+        boolean exhausted = false;
+        try {
+            while (true) {
+                while (!exhausted && inFlight.size() < window) {
+                    Callable<List<DocxFragment>> chunk = chunks.next();
+                    if (chunk == null) {
+                        exhausted = true;
+                    } else {
+                        inFlight.add(pool.submit(chunk));
+                    }
+                }
+                if (inFlight.isEmpty()) {
+                    return;
+                }
+                for (DocxFragment fragment : inFlight.poll().get()) {
+                    writer.append(fragment);
+                }
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } finally {
+            inFlight.forEach(task -> task.cancel(false));
+        }
+    }
+
+    private static int inFlightChunks(ForkJoinPool pool) {
+        return Math.max(2, pool.getParallelism() * 2);
+    }
 
-            logger.info("处理 Mermaid 图表 [{}]", mermaidIndex);
+    @FunctionalInterface
+    private interface ChunkSource {
+        /**
+         * @return 下一段的渲染任务，没有更多的段时返回 null
+         */
+        Callable<List<DocxFragment>> next() throws Exception;
+    }
+
+    /**
+     * 书籍模式的分段：按章节顺序推进标题编号和图表序号（编号跨章节连续），每个章节再按块数切分为若干段
+     * 章节的解析在线程池中提前进行，提前的章节数与在途段数相同；后续章节的第一段先写出分节符
+     */
+    private class BookChunks implements ChunkSource {
+        private final List<String> chapters;
+        private final ForkJoinPool pool;
+        private final FragmentRenderer renderer;
+        private final ConversionContext context;
+        private final DocxFragment sectionBreak;
+        private final ArrayDeque<ForkJoinTask<List<MarkdownBlock>>> parsing = new ArrayDeque<>();
+        private int parsed;
+        private int chapter = -1;
+        private List<MarkdownBlock> blocks = List.of();
+        private String[] blockContexts;
+        private int position;
+        private int chartCount;
+        private boolean pendingBreak;
+
+        private BookChunks(List<String> chapters, ForkJoinPool pool, FragmentRenderer renderer,
+                           ConversionContext context) throws IOException {
+            this.chapters = chapters;
+            this.pool = pool;
+            this.renderer = renderer;
+            this.context = context;
+            this.sectionBreak = renderer.renderSectionBreak();
+        }
 
-            // 创建 Mermaid 图表的文本表示
-            String mermaidText = "【Mermaid 图表】\n\n" + mermaidContent + "\n\n" +
-                    "注意: Mermaid 图表已保留原始代码。如需可视化效果,请访问 https://mermaid.live/ 查看。";
+        @Override
+        public Callable<List<DocxFragment>> next() throws Exception {
+            while (position >= blocks.size()) {
+                if (pendingBreak) {
+                    // 空章节只写出分节符
+                    pendingBreak = false;
+                    return () -> List.of(sectionBreak);
+                }
+                if (chapter + 1 >= chapters.size()) {
+                    return null;
+                }
+                startChapter();
+            }
+            List<MarkdownBlock> chunkBlocks = blocks;
+            String[] chunkContexts = blockContexts;
+            int from = position;
+            int to = Math.min(blocks.size(), from + MAX_CHUNK_BLOCKS);
+            boolean withBreak = pendingBreak;
+            position = to;
+            pendingBreak = false;
+            return () -> {
+                List<DocxFragment> fragments = renderRange(chunkBlocks, chunkContexts, from, to, context);
+                if (withBreak) {
+                    fragments.add(0, sectionBreak);
+                }
+                return fragments;
+            };
+        }
 
-            params.setText(mermaidKey, mermaidText);
-            mermaidIndex++;
+        private void startChapter() throws Exception {
+            while (parsed < chapters.size() && parsing.size() < inFlightChunks(pool)) {
+                String markdown = chapters.get(parsed++);
+                parsing.add(pool.submit(() -> MarkdownBlockParser.parse(markdown)));
+            }
+            chapter++;
+            List<MarkdownBlock> chapterBlocks = new ArrayList<>(parsing.poll().get());
+            context.prefetchImages(chapterBlocks);
+            int chapterCharts = 0;
+            for (int i = 0; i < chapterBlocks.size(); i++) {
+                if (chapterBlocks.get(i) instanceof MarkdownBlock.ECharts echarts) {
+                    chapterBlocks.set(i, new MarkdownBlock.ECharts(chartCount + echarts.getIndex(), echarts.getConfig()));
+                    chapterCharts++;
+                }
+            }
+            chartCount += chapterCharts;
+            blockContexts = new String[chapterBlocks.size()];
+            for (int i = 0; i < chapterBlocks.size(); i++) {
+                blockContexts[i] = renderer.prepare(chapterBlocks.get(i));
+            }
+            blocks = chapterBlocks;
+            position = 0;
+            pendingBreak = chapter > 0;
         }
 
-        if (mermaidIndex > 1) {
-            logger.info("共处理 {} 个 Mermaid 图表", mermaidIndex - 1);
+        private void cancel() {
+            parsing.forEach(task -> task.cancel(false));
         }
     }
 
     /**
-     * 处理图片
-     * @param params Word参数对象
-     * @param markdownContent Markdown内容
+     * 使用独立的渲染器按顺序渲染 [from, to) 范围内的块，供线程池任务调用
      */
-    private void processImages(WordParams params, String markdownContent) {
-        Matcher matcher = IMAGE_PATTERN.matcher(markdownContent);
-        int imageIndex = 1;
+    private List<DocxFragment> renderRange(List<MarkdownBlock> blocks, String[] blockContexts, int from, int to,
+                                           ConversionContext context) throws Exception {
+        ConversionOptions options = context.getOptions();
+        try (FragmentRenderer renderer = new FragmentRenderer(options)) {
+            List<DocxFragment> fragments = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                fragments.add(renderBlock(renderer, blocks.get(i), blockContexts[i], context));
+            }
+            return fragments;
+        }
+    }
 
-        while (matcher.find()) {
-            String altText = matcher.group(1);  // alt 文本
-            String imageSource = matcher.group(2);  // 图片 URL 或路径
-            String imageKey = "image" + imageIndex;
+    /**
+     * 渲染单个块，缓存命中时直接返回缓存片段
+     * 图片块的片段不缓存：同一来源的图片内容可能已经变化，每次转换都重新加载，网络图片由 ImageCache 按 ETag/Last-Modified 重新验证
+     */
+    private DocxFragment renderBlock(FragmentRenderer renderer, MarkdownBlock block, String blockContext,
+                                     ConversionContext context) throws Exception {
+        ConversionOptions options = context.getOptions();
+        FragmentCache cache = block instanceof MarkdownBlock.Image ? null : options.getFragmentCache();
+        String fingerprint = cache == null ? null : options.fragmentFingerprint();
+        DocxFragment fragment = cache == null ? null : cache.get(block, blockContext, fingerprint);
+        if (fragment == null) {
+            val params = WordParams.create();
+            processBlock(params, block, context);
+            fragment = renderer.render(block, blockContext, params);
+            if (cache != null) {
+                cache.put(block, blockContext, fingerprint, fragment);
+            }
+        }
+        return fragment;
+    }
 
-            logger.info("处理图片 [{}]: {} (alt: {})", imageIndex, imageSource, altText);
+    /**
+     * 为单个块准备替换参数
+     * @param params Word参数对象
+     * @param block Markdown块
+     * @param context 本次转换的上下文
+     */
+    private void processBlock(WordParams params, MarkdownBlock block, ConversionContext context) throws Exception {
+        if (block instanceof MarkdownBlock.Image image) {
+            processImage(params, image, context);
+        } else if (block instanceof MarkdownBlock.Mermaid mermaid) {
+            processMermaid(params, mermaid);
+        } else if (block instanceof MarkdownBlock.ECharts echarts) {
+            // 图表在渲染时按块的图表模型直接生成，这里只检查配置能否解析
+            echarts.getChartModel(context.getOptions().getSharedResources());
+        } else if (block instanceof MarkdownBlock.Table table) {
+            params.setParam(table.getKey(), WordParam.table(table.getRows()));
+        }
+    }
 
-            // 使用 WordParam.image(String) 方法，自动处理下载和失败情况
-            WordParam imageParam = WordParam.image(imageSource);
-            params.setParam(imageKey, imageParam);
 
-            imageIndex++;
+    /**
+     * 处理 Mermaid 图表
+     * Mermaid 图表将被转换为文本说明（占位符）
+     * @param params Word参数对象
+     * @param blocks Markdown块级元素
+     */
+    private void processMermaid(WordParams params, List<MarkdownBlock> blocks) {
+        int mermaidCount = 0;
+        for (MarkdownBlock block : blocks) {
+            if (!(block instanceof MarkdownBlock.Mermaid mermaid)) {
+                continue;
+            }
+            processMermaid(params, mermaid);
+            mermaidCount++;
         }
 
-        if (imageIndex > 1) {
-            logger.info("共处理 {} 张图片", imageIndex - 1);
+        if (mermaidCount > 0) {
+            logger.info("共处理 {} 个 Mermaid 图表", mermaidCount);
         }
     }
 
     /**
-     * 处理ECharts图表
+     * 处理图片
      * @param params Word参数对象
-     * @param markdownContent Markdown内容
+     * @param blocks Markdown块级元素
+     * @param context 本次转换的上下文
      */
-    private void processECharts(WordParams params, String markdownContent) throws Exception {
-        Matcher matcher = ECHARTS_PATTERN.matcher(markdownContent);
-        int chartIndex = 1;
+    private void processImages(WordParams params, List<MarkdownBlock> blocks, ConversionContext context) {
+        int imageCount = 0;
+        for (MarkdownBlock block : blocks) {
+            if (!(block instanceof MarkdownBlock.Image image)) {
+                continue;
+            }
+            processImage(params, image, context);
+            imageCount++;
+        }
+
+        if (imageCount > 0) {
+            logger.info("共处理 {} 张图片", imageCount);
+        }
+    }
 
-        while (matcher.find()) {
-            String echartsConfig = matcher.group(1);
-            String chartKey = "chart" + chartIndex;
+    private void processMermaid(WordParams params, MarkdownBlock.Mermaid mermaid) {
+        logger.info("处理 Mermaid 图表 [{}]", mermaid.getIndex());
 
-            // 使用现有的ECharts转换功能
-            EChartsToWordConverter.convertEChartsToWordChart(params, chartKey, echartsConfig);
-            chartIndex++;
+        // 创建 Mermaid 图表的文本表示
+        String mermaidText = "【Mermaid 图表】\n\n" + mermaid.getContent() + "\n\n" +
+                "注意: Mermaid 图表已保留原始代码。如需可视化效果,请访问 https://mermaid.live/ 查看。";
+
+        params.setText(mermaid.getKey(), mermaidText);
+    }
+
+    private void processImage(WordParams params, MarkdownBlock.Image image, ConversionContext context) {
+        logger.info("处理图片 [{}]: {} (alt: {})", image.getIndex(), image.getSource(), image.getAltText());
+
+        // 使用 WordParam.image(String) 方法，自动处理下载和失败情况
+        WordParam imageParam = context.loadImage(image.getSource());
+        params.setParam(image.getKey(), imageParam);
+    }
+
+    /**
+     * 处理ECharts图表
+     * 图表在构建模板时已按块的图表模型生成，不再解析第二遍、也不再按标题替换数据，这里只检查配置能否解析
+     * @param blocks Markdown块级元素
+     * @param context 本次转换的上下文
+     * @throws IOException 存在无法解析的ECharts配置
+     */
+    private void processECharts(List<MarkdownBlock> blocks, ConversionContext context) throws IOException {
+        for (MarkdownBlock block : blocks) {
+            if (block instanceof MarkdownBlock.ECharts echarts) {
+                echarts.getChartModel(context.getOptions().getSharedResources());
+            }
         }
     }
 
     /**
      * 处理表格
      * @param params Word参数对象
-     * @param markdownContent Markdown内容
+     * @param blocks Markdown块级元素
      */
-    private void processTables(WordParams params, String markdownContent) {
-        Matcher matcher = TABLE_PATTERN.matcher(markdownContent);
-        int tableIndex = 1;
-
-        while (matcher.find()) {
-            String tableMarkdown = matcher.group(1);
-            List<List<String>> tableData = MarkdownTableParser.parseTable(tableMarkdown);
-            String tableKey = "table" + tableIndex;
-
-            params.setParam(tableKey, WordParam.table(tableData));
-            tableIndex++;
+    private void processTables(WordParams params, List<MarkdownBlock> blocks) {
+        for (MarkdownBlock block : blocks) {
+            if (block instanceof MarkdownBlock.Table table) {
+                params.setParam(table.getKey(), WordParam.table(table.getRows()));
+            }
         }
     }
 
     /**
      * 处理文本内容
      * @param params Word参数对象
-     * @param markdownContent Markdown内容
+     * @param context 本次转换的上下文
      */
-    private void processTextContent(WordParams params, String markdownContent) {
-        // 生成文档标题：上个月的年月 + "分析报告"
-        java.time.LocalDate now = java.time.LocalDate.now();
-        // 计算上个月
-        java.time.LocalDate lastMonth = now.minusMonths(1);
-        String title = lastMonth.getYear() + "年" + lastMonth.getMonthValue() + "月分析报告";
-        params.setText("title", title);
+    private void processTextContent(WordParams params, ConversionContext context) {
+        params.setText("title", context.getTitle());
 
         // 可以添加更多文本处理逻辑
         // 例如提取作者、日期等信息
@@ -0,0 +1,186 @@
+package cn.daydayup.dev.md2doc.core.generate;
+
+import cn.daydayup.dev.md2doc.core.model.ChartModel;
+import org.apache.poi.ss.util.CellReference;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * @ClassName ChartWorkbookWriter
+ * @Description 流式写出图表内嵌的 .xlsx 工作簿：按行直接写出 SpreadsheetML，不构建 XSSFWorkbook 对象模型
+ *              只包含一张工作表，A 列为类别，其后每列一个系列，首行为系列名称；字符串使用内联字符串，不生成共享字符串表和样式表
+ * @Author ZhaoYanNing
+ * @Date 2025/12/12 10:20
+ * @Version 1.0
+ */
+public class ChartWorkbookWriter {
+
+    /**
+     * 工作表名称，图表中的单元格引用以此为前缀
+     */
+    public static final String SHEET_NAME = "Sheet1";
+
+    private static final String CONTENT_TYPES = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+            + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+            + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+            + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+            + "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+            + "</Types>";
+    private static final String ROOT_RELS = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+            + "</Relationships>";
+    private static final String WORKBOOK = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" "
+            + "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+            + "<sheets><sheet name=\"" + SHEET_NAME + "\" sheetId=\"1\" r:id=\"rId1\"/></sheets></workbook>";
+    private static final String WORKBOOK_RELS = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+            + "</Relationships>";
+
+    private ChartWorkbookWriter() {
+    }
+
+    /**
+     * 写出图表模型对应的工作簿
+     * @param model 图表模型
+     * @return .xlsx 内容
+     */
+    public static byte[] write(ChartModel model) throws IOException {
+        return write(model.getCategories(), model.getSeries());
+    }
+
+    /**
+     * 写出给定类别和系列的工作簿，类别应与图表缓存中的类别一致（如已按数据点数补齐）
+     * @param categories A 列的类别
+     * @param series 其后各列的系列
+     * @return .xlsx 内容
+     */
+    public static byte[] write(String[] categories, List<ChartModel.Series> series) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(buffer, StandardCharsets.UTF_8)) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+            writeEntry(zip, writer, "[Content_Types].xml", CONTENT_TYPES);
+            writeEntry(zip, writer, "_rels/.rels", ROOT_RELS);
+            writeEntry(zip, writer, "xl/workbook.xml", WORKBOOK);
+            writeEntry(zip, writer, "xl/_rels/workbook.xml.rels", WORKBOOK_RELS);
+
+            zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+            writeSheet(writer, categories, series);
+            writer.flush();
+            zip.closeEntry();
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 类别所在区域的引用，如 Sheet1!$A$2:$A$10
+     */
+    public static String categoryRange(int pointCount) {
+        return range(0, pointCount);
+    }
+
+    /**
+     * 第 seriesIndex 个系列（从 0 开始）数据所在区域的引用
+     */
+    public static String valueRange(int seriesIndex, int pointCount) {
+        return range(seriesIndex + 1, pointCount);
+    }
+
+    /**
+     * 第 seriesIndex 个系列（从 0 开始）名称所在的单元格
+     */
+    public static CellReference titleCell(int seriesIndex) {
+        return new CellReference(SHEET_NAME, 0, seriesIndex + 1, true, true);
+    }
+
+    private static String range(int column, int pointCount) {
+        String col = CellReference.convertNumToColString(column);
+        return SHEET_NAME + "!$" + col + "$2:$" + col + "$" + (Math.max(pointCount, 1) + 1);
+    }
+
+    private static void writeEntry(ZipOutputStream zip, Writer writer, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        writer.write(content);
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    private static void writeSheet(Writer writer, String[] categories, List<ChartModel.Series> series)
+            throws IOException {
+        int rows = categories.length;
+        for (ChartModel.Series serie : series) {
+            rows = Math.max(rows, serie.getValues().length);
+        }
+        String[] columns = new String[series.size() + 1];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = CellReference.convertNumToColString(c);
+        }
+
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+        writer.write("<row r=\"1\">");
+        for (int s = 0; s < series.size(); s++) {
+            writeString(writer, columns[s + 1] + "1", series.get(s).getName());
+        }
+        writer.write("</row>");
+        for (int i = 0; i < rows; i++) {
+            String row = Integer.toString(i + 2);
+            writer.write("<row r=\"");
+            writer.write(row);
+            writer.write("\">");
+            if (i < categories.length) {
+                writeString(writer, columns[0] + row, categories[i]);
+            }
+            for (int s = 0; s < series.size(); s++) {
+                double[] values = series.get(s).getValues();
+                // 缺失和非有限的数据点留空
+                if (i < values.length && Double.isFinite(values[i])) {
+                    writer.write("<c r=\"");
+                    writer.write(columns[s + 1]);
+                    writer.write(row);
+                    writer.write("\"><v>");
+                    writer.write(Double.toString(values[i]));
+                    writer.write("</v></c>");
+                }
+            }
+            writer.write("</row>");
+        }
+        writer.write("</sheetData></worksheet>");
+    }
+
+    private static void writeString(Writer writer, String cell, String text) throws IOException {
+        if (text == null) {
+            return;
+        }
+        writer.write("<c r=\"");
+        writer.write(cell);
+        writer.write("\" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> writer.write("&amp;");
+                case '<' -> writer.write("&lt;");
+                case '>' -> writer.write("&gt;");
+                case '"' -> writer.write("&quot;");
+                default -> {
+                    // XML 1.0 不允许的控制字符直接丢弃
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        writer.write(c);
+                    }
+                }
+            }
+        }
+        writer.write("</t></is></c>");
+    }
+}
@@ -0,0 +1,434 @@
+package cn.daydayup.dev.md2doc.core.generate;
+
+import cn.daydayup.dev.md2doc.core.model.ChartTable;
+import cn.daydayup.dev.md2doc.core.model.WordParam;
+import cn.daydayup.dev.md2doc.core.model.WordParams;
+import lombok.Getter;
+import org.apache.poi.ooxml.POIXMLDocumentPart;
+import org.apache.poi.ooxml.POIXMLTypeLoader;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.xddf.usermodel.chart.PoiUtil;
+import org.apache.poi.xwpf.usermodel.XWPFChart;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFPictureData;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.xmlbeans.XmlOptions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * @ClassName CompiledTemplate
+ * @Description 预编译的 .docx 模板：只解析一次，记录 ${key} 占位符和图表标题的位置，之后可在多线程中以不同参数反复渲染
+ *              渲染时直接拼接正文、页眉页脚XML片段，只重写发生变化的部件，其余部件原样复制
+ * @Author ZhaoYanNing
+ * @Date 2025/11/24 9:30
+ * @Version 1.0
+ */
+public class CompiledTemplate {
+
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\$\\{([^{}<>]+)}");
+    private static final Pattern BODY_PART_PATTERN = Pattern.compile("word/(document|header\\d*|footer\\d*)\\.xml");
+    private static final Pattern UNPRESERVED_TEXT_PATTERN = Pattern.compile("<w:t>(?=[^<]*\\$\\{)");
+    private static final Pattern DOC_PR_ID_PATTERN = Pattern.compile("(<wp:docPr id=\")(\\d+)(\")");
+    private static final String CONTENT_TYPES_PART = "[Content_Types].xml";
+    private static final String IMAGE_REL_TYPE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships/image";
+
+    private static final XmlOptions FRAGMENT_XML_OPTIONS = new XmlOptions(POIXMLTypeLoader.DEFAULT_XML_OPTIONS)
+            .setSaveOuter()
+            .setSaveImplicitNamespaces(Map.of("w", StreamingDocxWriter.DOCUMENT_NAMESPACES.get("w")));
+
+    /**
+     * 合并占位符后的模板包内容，按原顺序保存
+     */
+    private final Map<String, byte[]> entries;
+
+    /**
+     * 含占位符的部件（正文、页眉、页脚）及其XML和占位符位置
+     */
+    private final Map<String, String> partXml;
+    private final Map<String, List<Slot>> slots;
+
+    /**
+     * 图表标题（即 WordParams.setChart 的键）到图表部件名的映射
+     */
+    private final Map<String, String> charts;
+
+    /**
+     * 模板中出现的占位符名
+     */
+    @Getter
+    private final Set<String> placeholders;
+
+    /**
+     * 新增绘图对象的起始ID，大于模板中已有的所有ID
+     */
+    private final int docPrBase;
+
+    private CompiledTemplate(Map<String, byte[]> entries, Map<String, String> partXml, Map<String, List<Slot>> slots,
+                             Map<String, String> charts, Set<String> placeholders, int docPrBase) {
+        this.entries = entries;
+        this.partXml = partXml;
+        this.slots = slots;
+        this.charts = charts;
+        this.placeholders = placeholders;
+        this.docPrBase = docPrBase;
+    }
+
+    /**
+     * 编译模板：合并拆分在多个run中的占位符，定位占位符所在的run和段落，记录图表标题
+     * @param docx 模板 .docx 输入流（由调用方负责关闭）
+     * @return 可复用、线程安全的已编译模板
+     */
+    public static CompiledTemplate compile(InputStream docx) throws IOException {
+        byte[] normalized;
+        Map<String, String> charts = new LinkedHashMap<>();
+        try (XWPFDocument document = new XWPFDocument(docx)) {
+            // 以空参数替换一遍：占位符原样保留，但拆分在多个run中的占位符会合并到同一个run
+            PoiWordGenerator.fillDoc(document, WordParams.create());
+            for (POIXMLDocumentPart part : document.getRelations()) {
+                if (part instanceof XWPFChart chart) {
+                    String title = PoiWordGenerator.getBarTitle(chart);
+                    if (title != null) {
+                        charts.putIfAbsent(title, chart.getPackagePart().getPartName().getName().substring(1));
+                    }
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            normalized = out.toByteArray();
+        } catch (InvalidFormatException e) {
+            throw new IOException("编译模板失败: " + e.getMessage(), e);
+        }
+
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(normalized))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+
+        Map<String, String> partXml = new LinkedHashMap<>();
+        Map<String, List<Slot>> slots = new LinkedHashMap<>();
+        Set<String> placeholders = new LinkedHashSet<>();
+        int docPrBase = 0;
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            if (!BODY_PART_PATTERN.matcher(entry.getKey()).matches()) {
+                continue;
+            }
+            String xml = new String(entry.getValue(), StandardCharsets.UTF_8);
+            Matcher docPrId = DOC_PR_ID_PATTERN.matcher(xml);
+            while (docPrId.find()) {
+                docPrBase = Math.max(docPrBase, Integer.parseInt(docPrId.group(2)) + 1);
+            }
+
+            // 占位符所在文本保留首尾空白，替换后的文本与 setText 的效果一致
+            xml = UNPRESERVED_TEXT_PATTERN.matcher(xml).replaceAll("<w:t xml:space=\"preserve\">");
+            List<Slot> partSlots = locateSlots(xml);
+            if (!partSlots.isEmpty()) {
+                partXml.put(entry.getKey(), xml);
+                slots.put(entry.getKey(), partSlots);
+                partSlots.forEach(slot -> placeholders.add(slot.key()));
+            }
+        }
+        return new CompiledTemplate(Collections.unmodifiableMap(entries), partXml, slots,
+                Collections.unmodifiableMap(charts), Collections.unmodifiableSet(placeholders), docPrBase);
+    }
+
+    /**
+     * 只保留位于 w:t 文本中的占位符，并记录其所在段落的起点和文本的终点
+     */
+    private static List<Slot> locateSlots(String xml) {
+        List<Slot> slots = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER_PATTERN.matcher(xml);
+        while (matcher.find()) {
+            int tagStart = xml.lastIndexOf('<', matcher.start());
+            if (tagStart < 0 || !(xml.startsWith("<w:t>", tagStart) || xml.startsWith("<w:t ", tagStart))) {
+                continue;
+            }
+            int paragraphStart = Math.max(xml.lastIndexOf("<w:p>", tagStart), xml.lastIndexOf("<w:p ", tagStart));
+            int textEnd = xml.indexOf("</w:t>", matcher.end());
+            if (paragraphStart < 0 || textEnd < 0) {
+                continue;
+            }
+            slots.add(new Slot(matcher.group(1), matcher.start(), matcher.end(), paragraphStart,
+                    textEnd + "</w:t>".length()));
+        }
+        return slots;
+    }
+
+    /**
+     * 以给定参数渲染模板并写入输出流，可在多线程中并发调用
+     * 文本直接拼接；图片和表格在临时文档中生成XML后拼接；图表只重写对应的图表部件
+     * @param params 替换参数
+     * @param out 输出流（由调用方负责关闭，完成后只结束 zip）
+     */
+    public void render(WordParams params, OutputStream out) throws IOException {
+        try (RenderState state = new RenderState()) {
+            Map<String, byte[]> replaced = new HashMap<>();
+            for (Map.Entry<String, List<Slot>> entry : slots.entrySet()) {
+                String xml = splice(entry.getKey(), partXml.get(entry.getKey()), entry.getValue(), params, state);
+                replaced.put(entry.getKey(), xml.getBytes(StandardCharsets.UTF_8));
+            }
+            for (Map.Entry<String, String> chart : charts.entrySet()) {
+                ChartTable chartTable = params.getChart(chart.getKey());
+                if (chartTable != null) {
+                    replaced.put(chart.getValue(), PoiUtil.updateChart(entries.get(chart.getValue()),
+                            xddfChart -> PoiWordGenerator.replaceCharts(xddfChart, chartTable)));
+                }
+            }
+
+            ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                String name = entry.getKey();
+                byte[] content = replaced.getOrDefault(name, entry.getValue());
+                if (CONTENT_TYPES_PART.equals(name)) {
+                    content = state.mergeContentTypes(content);
+                } else if (state.relationships.containsKey(name)) {
+                    content = insertBefore(content, "</Relationships>", state.relationships.remove(name));
+                }
+                writeEntry(zip, name, content);
+            }
+            // 模板中原本没有关系部件的页眉页脚
+            for (Map.Entry<String, String> rels : state.relationships.entrySet()) {
+                writeEntry(zip, rels.getKey(), ("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                        + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                        + rels.getValue() + "</Relationships>").getBytes(StandardCharsets.UTF_8));
+            }
+            for (Map.Entry<String, byte[]> media : state.media.entrySet()) {
+                writeEntry(zip, media.getKey(), media.getValue());
+            }
+            zip.finish();
+        }
+    }
+
+    private String splice(String partName, String xml, List<Slot> partSlots, WordParams params, RenderState state)
+            throws IOException {
+        List<Edit> edits = new ArrayList<>();
+        for (Slot slot : partSlots) {
+            WordParam value = params.getParam(slot.key());
+            if (value instanceof WordParam.Text text) {
+                edits.add(new Edit(slot.start(), slot.end(), escapeXml(text.getMsg())));
+            } else if (value instanceof WordParam.Image image) {
+                edits.add(new Edit(slot.start(), slot.end(), ""));
+                edits.add(new Edit(slot.textEnd(), slot.textEnd(), state.drawing(partName, slot.key(), image)));
+            } else if (value instanceof WordParam.Table table) {
+                edits.add(new Edit(slot.start(), slot.end(), ""));
+                edits.add(new Edit(slot.paragraphStart(), slot.paragraphStart(), state.table(table.getData())));
+            }
+        }
+        // 同一位置的多个插入保持占位符顺序（同一段落中的多个表格依次插入段落之前）
+        edits.sort(Comparator.comparingInt(Edit::from));
+        StringBuilder result = new StringBuilder(xml.length() + 256);
+        int position = 0;
+        for (Edit edit : edits) {
+            result.append(xml, position, edit.from()).append(edit.replacement());
+            position = edit.to();
+        }
+        return result.append(xml, position, xml.length()).toString();
+    }
+
+    private static String relsPartOf(String partName) {
+        int slash = partName.lastIndexOf('/');
+        return partName.substring(0, slash) + "/_rels/" + partName.substring(slash + 1) + ".rels";
+    }
+
+    private static void writeEntry(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    private static byte[] insertBefore(byte[] xml, String closingTag, String addition) {
+        String text = new String(xml, StandardCharsets.UTF_8);
+        int index = text.lastIndexOf(closingTag);
+        return (text.substring(0, index) + addition + text.substring(index)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 转义文本参数，null 按空串处理
+     */
+    private static String escapeXml(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> escaped.append("&amp;");
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case '"' -> escaped.append("&quot;");
+                default -> {
+                    // XML 1.0 不允许的控制字符直接丢弃
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * 占位符位置
+     *
+     * @param key            占位符名
+     * @param start          ${ 的位置
+     * @param end            } 之后的位置
+     * @param paragraphStart 所在段落 w:p 的起点，表格插入在此处
+     * @param textEnd        所在 w:t 结束标签之后的位置，图片插入在此处
+     */
+    private record Slot(String key, int start, int end, int paragraphStart, int textEnd) {
+    }
+
+    private record Edit(int from, int to, String replacement) {
+    }
+
+    /**
+     * 按内容和显示尺寸区分的图片
+     */
+    private record ImageKey(ByteBuffer data, int width, int height) {
+    }
+
+    /**
+     * 已生成的图片绘图XML，其中的关系ID为临时文档中的ID，使用时替换
+     */
+    private record Drawing(String xml, String relId, String mediaName) {
+    }
+
+    /**
+     * 单次渲染的状态：新增的图片部件、关系和内容类型，以及生成图片和表格XML用的临时文档
+     * 同一份文档中内容相同的图片共用一个媒体部件，绘图XML也只生成一次
+     */
+    private class RenderState implements AutoCloseable {
+        private final Map<String, String> relationships = new LinkedHashMap<>();
+        private final Map<String, byte[]> media = new LinkedHashMap<>();
+        private final Map<String, String> contentTypes = new LinkedHashMap<>();
+        private final Map<ImageKey, Drawing> drawings = new HashMap<>();
+        private final Map<ByteBuffer, String> mediaNames = new HashMap<>();
+        private final Map<String, String> relIds = new HashMap<>();
+        private XWPFDocument scratch;
+        private int relationshipSeq = 0;
+        private int docPrId = docPrBase;
+
+        private XWPFDocument scratch() {
+            if (scratch == null) {
+                scratch = new XWPFDocument();
+            }
+            return scratch;
+        }
+
+        String table(List<List<String>> data) {
+            XWPFDocument document = scratch();
+            XWPFTable table = PoiWordGenerator.createTable(document.createParagraph(), data);
+            String xml = table.getCTTbl().xmlText(FRAGMENT_XML_OPTIONS);
+            clearBody(document);
+            return xml;
+        }
+
+        String drawing(String partName, String key, WordParam.Image image) throws IOException {
+            ImageKey imageKey = new ImageKey(ByteBuffer.wrap(image.getData()), image.getWidth(), image.getHeight());
+            Drawing drawing = drawings.get(imageKey);
+            if (drawing == null) {
+                drawing = newDrawing(key, image);
+                drawings.put(imageKey, drawing);
+            }
+
+            // 同一部件中内容相同的图片共用一个关系
+            String rels = relsPartOf(partName);
+            String mediaName = drawing.mediaName();
+            String relId = relIds.computeIfAbsent(rels + "|" + mediaName, ignored -> {
+                String id = "rIdTpl" + (++relationshipSeq);
+                relationships.merge(rels, "<Relationship Id=\"" + id + "\" Target=\""
+                        + mediaName.substring("word/".length()) + "\" Type=\"" + IMAGE_REL_TYPE + "\"/>", String::concat);
+                return id;
+            });
+
+            String xml = drawing.xml().replace("\"" + drawing.relId() + "\"", "\"" + relId + "\"");
+            Matcher matcher = DOC_PR_ID_PATTERN.matcher(xml);
+            StringBuilder result = new StringBuilder();
+            while (matcher.find()) {
+                matcher.appendReplacement(result, "$1" + (docPrId++) + "$3");
+            }
+            matcher.appendTail(result);
+            return result.toString();
+        }
+
+        /**
+         * 在临时文档中生成图片的绘图XML；内容相同的图片只生成一个媒体部件
+         */
+        private Drawing newDrawing(String key, WordParam.Image image) throws IOException {
+            XWPFDocument document = scratch();
+            XWPFRun run = document.createParagraph().createRun();
+            try {
+                run.addPicture(image.getInputStream(), image.getPictureType(), key + "." + image.getFileExtension(),
+                        image.getWidth(), image.getHeight());
+            } catch (InvalidFormatException e) {
+                throw new IOException("插入图片失败: " + e.getMessage(), e);
+            }
+            XWPFPictureData picture = run.getEmbeddedPictures().get(0).getPictureData();
+            String xml = run.getCTR().getDrawingArray(0).xmlText(FRAGMENT_XML_OPTIONS);
+            clearBody(document);
+
+            String extension = picture.getPackagePart().getPartName().getExtension();
+            String mediaName = mediaNames.computeIfAbsent(ByteBuffer.wrap(image.getData()), ignored -> {
+                String name = "word/media/template_image" + (mediaNames.size() + 1) + "." + extension;
+                media.put(name, picture.getData());
+                return name;
+            });
+            contentTypes.putIfAbsent(extension, picture.getPackagePart().getContentType());
+            return new Drawing(xml, document.getRelationId(picture), mediaName);
+        }
+
+        byte[] mergeContentTypes(byte[] content) {
+            if (contentTypes.isEmpty()) {
+                return content;
+            }
+            String xml = new String(content, StandardCharsets.UTF_8);
+            StringBuilder additions = new StringBuilder();
+            for (Map.Entry<String, String> entry : contentTypes.entrySet()) {
+                if (!xml.contains("Extension=\"" + entry.getKey() + "\"")) {
+                    additions.append("<Default ContentType=\"").append(entry.getValue())
+                            .append("\" Extension=\"").append(entry.getKey()).append("\"/>");
+                }
+            }
+            return insertBefore(content, "</Types>", additions.toString());
+        }
+
+        private void clearBody(XWPFDocument document) {
+            for (int i = document.getBodyElements().size() - 1; i >= 0; i--) {
+                document.removeBodyElement(i);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (scratch != null) {
+                scratch.close();
+            }
+        }
+    }
+}
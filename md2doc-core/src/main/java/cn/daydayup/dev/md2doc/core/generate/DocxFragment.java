@@ -0,0 +1,30 @@
+package cn.daydayup.dev.md2doc.core.generate;
+
+import java.util.List;
+
+/**
+ * @ClassName DocxFragment
+ * @Description 单个Markdown块渲染后的OOXML片段：document.xml 中的正文元素以及其引用的图片/图表部件
+ * @Author ZhaoYanNing
+ * @Date 2025/11/10 15:30
+ * @Version 1.0
+ *
+ * @param bodyXml 正文元素XML（w:p / w:tbl），其中的关系ID为片段内局部ID
+ * @param parts   正文引用的部件，写出时由 StreamingDocxWriter 分配最终的部件名和关系ID
+ */
+public record DocxFragment(String bodyXml, List<Part> parts) {
+
+    /**
+     * 被引用的包部件
+     *
+     * @param relId       片段内局部关系ID
+     * @param relType     关系类型
+     * @param contentType 部件内容类型
+     * @param extension   部件文件扩展名
+     * @param data        部件内容
+     * @param related     该部件自身引用的部件（如图表内嵌的工作簿），关系ID保持不变
+     */
+    public record Part(String relId, String relType, String contentType, String extension,
+                       byte[] data, List<Part> related) {
+    }
+}
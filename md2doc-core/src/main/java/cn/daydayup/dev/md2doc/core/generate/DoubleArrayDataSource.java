@@ -0,0 +1,130 @@
+package cn.daydayup.dev.md2doc.core.generate;
+
+import org.apache.poi.xddf.usermodel.chart.XDDFNumericalDataSource;
+import org.openxmlformats.schemas.drawingml.x2006.chart.CTNumData;
+import org.openxmlformats.schemas.drawingml.x2006.chart.CTNumVal;
+
+/**
+ * @ClassName DoubleArrayDataSource
+ * @Description 以 double[] 为数据的图表数值数据源，替代 XDDFDataSourcesFactory.fromArray(Number[])
+ * 写入图表缓存时直接读取数组，不先复制成包装类型的数组；NaN 视为缺失的数据点，与 fromArray 中的 null 相同
+ * @Author ZhaoYanNing
+ * @Date 2025/12/10 10:40
+ * @Version 1.0
+ */
+public class DoubleArrayDataSource implements XDDFNumericalDataSource<Double> {
+
+    private final double[] values;
+    private final String dataRange;
+    private final int colIndex;
+    private String formatCode;
+
+    public DoubleArrayDataSource(double[] values) {
+        this(values, null, 0);
+    }
+
+    /**
+     * @param values 数据
+     * @param dataRange 数据在内嵌工作簿中的单元格区域，如 Sheet1!$B$2:$B$10；为 null 时只写入图表缓存
+     * @param colIndex 数据在内嵌工作簿中所在的列
+     */
+    public DoubleArrayDataSource(double[] values, String dataRange, int colIndex) {
+        this.values = values;
+        this.dataRange = dataRange;
+        this.colIndex = colIndex;
+    }
+
+    @Override
+    public int getPointCount() {
+        return values.length;
+    }
+
+    /**
+     * 内嵌工作簿逐点读取数据时使用，缺失的数据点返回 null
+     * 工作簿按类别数逐行填写，系列比类别短时超出部分同样按缺失处理
+     */
+    @Override
+    public Double getPointAt(int index) {
+        if (index >= values.length) {
+            return null;
+        }
+        double value = values[index];
+        return Double.isNaN(value) ? null : value;
+    }
+
+    /**
+     * 与默认实现写出相同的缓存，数值直接由 double 格式化
+     */
+    @Override
+    public void fillNumericalCache(CTNumData cache) {
+        if (formatCode == null) {
+            if (cache.isSetFormatCode()) {
+                cache.unsetFormatCode();
+            }
+        } else {
+            cache.setFormatCode(formatCode);
+        }
+        cache.setPtArray(null);
+        int effectiveCount = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (!Double.isNaN(values[i])) {
+                CTNumVal pt = cache.addNewPt();
+                pt.setIdx(i);
+                pt.setV(Double.toString(values[i]));
+                effectiveCount++;
+            }
+        }
+        if (effectiveCount == 0) {
+            if (cache.isSetPtCount()) {
+                cache.unsetPtCount();
+            }
+        } else if (cache.isSetPtCount()) {
+            cache.getPtCount().setVal(values.length);
+        } else {
+            cache.addNewPtCount().setVal(values.length);
+        }
+    }
+
+    @Override
+    public String getFormatCode() {
+        return formatCode;
+    }
+
+    @Override
+    public void setFormatCode(String formatCode) {
+        this.formatCode = formatCode;
+    }
+
+    @Override
+    public boolean isLiteral() {
+        return dataRange == null;
+    }
+
+    @Override
+    public boolean isCellRange() {
+        return false;
+    }
+
+    @Override
+    public boolean isReference() {
+        return dataRange != null;
+    }
+
+    @Override
+    public boolean isNumeric() {
+        return true;
+    }
+
+    @Override
+    public int getColIndex() {
+        return colIndex;
+    }
+
+    @Override
+    public String getDataRangeReference() {
+        if (dataRange == null) {
+            throw new UnsupportedOperationException("Literal data source can not be expressed by reference.");
+        }
+        return dataRange;
+    }
+}
@@ -0,0 +1,205 @@
+package cn.daydayup.dev.md2doc.core.generate;
+
+import cn.daydayup.dev.md2doc.core.parse.MarkdownBlock;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @ClassName FragmentCache
+ * @Description 已渲染片段的LRU缓存，同一份报告反复转换时只重新渲染发生变化的块
+ *              片段带有图片、图表和内嵌工作簿的内容，按片段的字节数而不是个数限制缓存大小
+ *              键只保留块内容、上下文和渲染参数的 SHA-256 摘要，不持有块本身（图表配置、解析出的图表模型等）
+ * @Author ZhaoYanNing
+ * @Date 2025/11/12 10:40
+ * @Version 1.0
+ */
+public class FragmentCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * 每个键计入的字节数：64 位十六进制摘要按字符数的两倍计算
+     */
+    private static final long KEY_BYTES = 2L * 64;
+
+    private final long maxBytes;
+    private final Map<Key, DocxFragment> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hitCount;
+    private long missCount;
+
+    public FragmentCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes 缓存片段的字节数上限（正文XML和键按字符数的两倍计算，部件按内容长度计算），超出后淘汰最久未使用的片段
+     */
+    public FragmentCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes 必须大于0");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 查找块的已渲染片段
+     * @param block Markdown块（按内容比较，包括图表、表格等的序号）
+     * @param context BlockWriter.prepare 返回的块上下文，如标题编号
+     * @param fingerprint ConversionOptions.fragmentFingerprint 返回的渲染参数
+     * @return 缓存的片段，未命中时返回 null
+     */
+    public synchronized DocxFragment get(MarkdownBlock block, String context, String fingerprint) {
+        DocxFragment fragment = entries.get(key(block, context, fingerprint));
+        if (fragment == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return fragment;
+    }
+
+    /**
+     * 判断块是否已缓存，不计入命中统计，也不改变淘汰顺序
+     */
+    public synchronized boolean contains(MarkdownBlock block, String context, String fingerprint) {
+        return entries.containsKey(key(block, context, fingerprint));
+    }
+
+    /**
+     * 缓存片段；单个片段超过上限时不缓存
+     */
+    public synchronized void put(MarkdownBlock block, String context, String fingerprint, DocxFragment fragment) {
+        long size = sizeOf(fragment);
+        if (size > maxBytes) {
+            return;
+        }
+        DocxFragment previous = entries.put(key(block, context, fingerprint), fragment);
+        if (previous != null) {
+            bytes -= sizeOf(previous);
+        }
+        bytes += size;
+        Iterator<DocxFragment> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= sizeOf(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return 当前缓存片段的字节数
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private static long sizeOf(DocxFragment fragment) {
+        long size = KEY_BYTES + 2L * fragment.bodyXml().length();
+        for (DocxFragment.Part part : fragment.parts()) {
+            size += sizeOf(part);
+        }
+        return size;
+    }
+
+    private static long sizeOf(DocxFragment.Part part) {
+        long size = part.data().length;
+        for (DocxFragment.Part related : part.related()) {
+            size += sizeOf(related);
+        }
+        return size;
+    }
+
+    /**
+     * 按块的类型和全部内容字段计算摘要，与块的 equals 比较的字段一致；每个字段带长度前缀，避免拼接产生歧义
+     */
+    private static Key key(MarkdownBlock block, String context, String fingerprint) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        if (block instanceof MarkdownBlock.Heading heading) {
+            update(digest, "heading");
+            update(digest, heading.getLevel());
+            update(digest, heading.getText());
+        } else if (block instanceof MarkdownBlock.Paragraph paragraph) {
+            update(digest, "paragraph");
+            update(digest, paragraph.getText());
+        } else if (block instanceof MarkdownBlock.ListItem item) {
+            update(digest, "list");
+            update(digest, item.getIndent());
+            update(digest, item.isOrdered() ? 1 : 0);
+            update(digest, item.getText());
+        } else if (block instanceof MarkdownBlock.Table table) {
+            update(digest, "table");
+            update(digest, table.getIndex());
+            update(digest, table.getMarkdown());
+            update(digest, table.getRows().size());
+            for (List<String> row : table.getRows()) {
+                update(digest, row.size());
+                for (String cell : row) {
+                    update(digest, cell);
+                }
+            }
+        } else if (block instanceof MarkdownBlock.ECharts echarts) {
+            update(digest, "echarts");
+            update(digest, echarts.getIndex());
+            update(digest, echarts.getConfig());
+        } else if (block instanceof MarkdownBlock.Mermaid mermaid) {
+            update(digest, "mermaid");
+            update(digest, mermaid.getIndex());
+            update(digest, mermaid.getContent());
+        } else if (block instanceof MarkdownBlock.Image image) {
+            update(digest, "image");
+            update(digest, image.getIndex());
+            update(digest, image.getAltText());
+            update(digest, image.getSource());
+        }
+        update(digest, context);
+        update(digest, fingerprint);
+        return new Key(HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private static void update(MessageDigest digest, int value) {
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(value).array());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            update(digest, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        update(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    private record Key(String digest) {
+    }
+}
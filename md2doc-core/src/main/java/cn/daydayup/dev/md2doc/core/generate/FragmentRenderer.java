@@ -0,0 +1,251 @@
+package cn.daydayup.dev.md2doc.core.generate;
+
+import cn.daydayup.dev.md2doc.core.model.ConversionOptions;
+import cn.daydayup.dev.md2doc.core.model.SharedResources;
+import cn.daydayup.dev.md2doc.core.model.WordParams;
+import cn.daydayup.dev.md2doc.core.parse.MarkdownBlock;
+import cn.daydayup.dev.md2doc.core.template.DocumentSkeleton;
+import cn.daydayup.dev.md2doc.core.template.DynamicWordDocumentCreator;
+import org.apache.poi.ooxml.POIXMLDocumentPart;
+import org.apache.poi.ooxml.POIXMLTypeLoader;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.TargetMode;
+import org.apache.poi.xddf.usermodel.chart.PoiUtil;
+import org.apache.poi.xwpf.usermodel.*;
+import org.apache.xmlbeans.XmlOptions;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSectPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STSectionMark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @ClassName FragmentRenderer
+ * @Description 将Markdown块逐个渲染为独立的OOXML片段，渲染完成后立即从暂存文档中移除，内存只与单个块相关
+ * @Author ZhaoYanNing
+ * @Date 2025/11/10 15:30
+ * @Version 1.0
+ */
+public class FragmentRenderer implements Closeable {
+
+    private static final XmlOptions FRAGMENT_XML_OPTIONS = new XmlOptions(POIXMLTypeLoader.DEFAULT_XML_OPTIONS)
+            .setSaveOuter()
+            .setSaveImplicitNamespaces(StreamingDocxWriter.DOCUMENT_NAMESPACES);
+
+    private final DocumentSkeleton skeleton;
+
+    /**
+     * 暂存文档：由骨架克隆，正文每次渲染后清空
+     */
+    private final XWPFDocument scratch;
+    private final DynamicWordDocumentCreator.BlockWriter blockWriter;
+
+    /**
+     * 当前块写入的占位符位置，替换后清空
+     */
+    private final PlaceholderIndex placeholderIndex = new PlaceholderIndex();
+
+    public FragmentRenderer() {
+        this(DocumentSkeleton.defaultSkeleton(), null);
+    }
+
+    /**
+     * @param skeleton 文档骨架
+     * @param resources 共享资源（已解析的ECharts配置），可为 null
+     */
+    public FragmentRenderer(DocumentSkeleton skeleton, SharedResources resources) {
+        this.skeleton = skeleton;
+        this.scratch = skeleton.newDocument();
+        this.blockWriter = new DynamicWordDocumentCreator.BlockWriter(skeleton.getBulletNumId(), resources,
+                placeholderIndex);
+    }
+
+    /**
+     * @param options 转换参数，取其中的骨架、共享资源和图表降采样器
+     */
+    public FragmentRenderer(ConversionOptions options) {
+        this.skeleton = options.getSkeleton();
+        this.scratch = skeleton.newDocument();
+        this.blockWriter = new DynamicWordDocumentCreator.BlockWriter(skeleton.getBulletNumId(), options,
+                placeholderIndex);
+    }
+
+    /**
+     * 渲染文档开头（标题段落和空行）
+     * @param params 替换参数，需包含 title
+     * @return 渲染后的片段
+     */
+    public DocxFragment renderHeader(WordParams params) throws IOException, InvalidFormatException {
+        DynamicWordDocumentCreator.createTemplateHeader(scratch, placeholderIndex);
+        fill(scratch, params);
+        return drainBody(scratch, false);
+    }
+
+    /**
+     * 渲染分节符（下一页），页面设置和页眉页脚引用沿用骨架
+     * @return 只包含分节符段落的片段
+     */
+    public DocxFragment renderSectionBreak() throws IOException {
+        CTSectPr bodySectPr = scratch.getDocument().getBody().getSectPr();
+        XWPFParagraph paragraph = scratch.createParagraph();
+        CTSectPr sectPr = paragraph.getCTP().addNewPPr().addNewSectPr();
+        if (bodySectPr != null) {
+            sectPr.set(bodySectPr);
+        }
+        (sectPr.isSetType() ? sectPr.getType() : sectPr.addNewType()).setVal(STSectionMark.NEXT_PAGE);
+        return drainBody(scratch, false);
+    }
+
+    /**
+     * 渲染单个Markdown块
+     * @param block Markdown块
+     * @param params 该块所需的替换参数
+     * @return 渲染后的片段
+     */
+    public DocxFragment render(MarkdownBlock block, WordParams params) throws IOException, InvalidFormatException {
+        return render(block, prepare(block), params);
+    }
+
+    /**
+     * 推进标题编号、列表编号等块间状态，返回该块渲染结果所依赖的上下文
+     * 使用片段缓存时，命中缓存的块也必须调用本方法
+     * @param block Markdown块
+     * @return 块上下文，与块内容一起作为片段缓存的键
+     */
+    public String prepare(MarkdownBlock block) {
+        return blockWriter.prepare(scratch, block);
+    }
+
+    /**
+     * 按 prepare 返回的上下文渲染单个Markdown块
+     * 图片和图表会产生独立的包部件，在一次性的文档中渲染，渲染完成后随文档一起释放
+     * @param block Markdown块
+     * @param context prepare 返回的块上下文
+     * @param params 该块所需的替换参数
+     * @return 渲染后的片段
+     */
+    public DocxFragment render(MarkdownBlock block, String context, WordParams params)
+            throws IOException, InvalidFormatException {
+        if (block instanceof MarkdownBlock.ECharts || block instanceof MarkdownBlock.Image) {
+            try (XWPFDocument document = new XWPFDocument()) {
+                blockWriter.write(document, block, context);
+                fill(document, params);
+                return drainBody(document, true);
+            }
+        }
+        blockWriter.write(scratch, block, context);
+        fill(scratch, params);
+        return drainBody(scratch, false);
+    }
+
+    /**
+     * 输出骨架包（正文为空），包含样式、列表编号、设置和文档属性等部件
+     * 正文块只在暂存文档中增删正文元素，图片和图表在一次性文档中渲染，骨架部件不会变化，直接复用预构建的包
+     * @return 骨架 .docx 内容
+     */
+    public byte[] skeleton() {
+        return skeleton.getPackageBytes();
+    }
+
+    /**
+     * 输出骨架包；参考文档的页眉页脚含占位符时，在暂存文档上替换后重新序列化
+     * @param params 替换参数，通常与 renderHeader 相同
+     * @return 骨架 .docx 内容
+     */
+    public byte[] skeleton(WordParams params) throws IOException, InvalidFormatException {
+        if (!skeleton.isHeaderFooterPlaceholders()) {
+            return skeleton.getPackageBytes();
+        }
+        PoiWordGenerator.fillHeaderFooter(scratch, params);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        scratch.write(out);
+        return out.toByteArray();
+    }
+
+    @Override
+    public void close() throws IOException {
+        scratch.close();
+    }
+
+    /**
+     * 只替换本块记录的占位符，不扫描暂存文档中的其他部件
+     */
+    private void fill(XWPFDocument document, WordParams params) throws IOException, InvalidFormatException {
+        try {
+            PoiWordGenerator.fillBody(document, params, placeholderIndex);
+        } finally {
+            placeholderIndex.clear();
+        }
+    }
+
+    private static DocxFragment drainBody(XWPFDocument document, boolean collectParts) throws IOException {
+        StringBuilder xml = new StringBuilder();
+        for (IBodyElement element : document.getBodyElements()) {
+            if (element instanceof XWPFParagraph paragraph) {
+                xml.append(paragraph.getCTP().xmlText(FRAGMENT_XML_OPTIONS));
+            } else if (element instanceof XWPFTable table) {
+                xml.append(table.getCTTbl().xmlText(FRAGMENT_XML_OPTIONS));
+            }
+        }
+        for (int i = document.getBodyElements().size() - 1; i >= 0; i--) {
+            document.removeBodyElement(i);
+        }
+
+        String bodyXml = xml.toString();
+        List<DocxFragment.Part> parts = new ArrayList<>();
+        if (collectParts) {
+            for (POIXMLDocumentPart.RelationPart relationPart : document.getRelationParts()) {
+                String relId = relationPart.getRelationship().getId();
+                if (!bodyXml.contains("\"" + relId + "\"")) {
+                    continue;
+                }
+                POIXMLDocumentPart part = relationPart.getDocumentPart();
+                if (part instanceof XWPFChart chart) {
+                    byte[] chartXml = PoiUtil.commitChart(chart);
+                    parts.add(toPart(relationPart.getRelationship(), chart.getPackagePart(), chartXml,
+                            collectRelated(chart.getPackagePart())));
+                } else if (part instanceof XWPFPictureData picture) {
+                    parts.add(toPart(relationPart.getRelationship(), picture.getPackagePart(), picture.getData(),
+                            List.of()));
+                }
+            }
+        }
+        return new DocxFragment(bodyXml, parts);
+    }
+
+    private static List<DocxFragment.Part> collectRelated(PackagePart source) throws IOException {
+        List<DocxFragment.Part> related = new ArrayList<>();
+        try {
+            for (PackageRelationship relationship : source.getRelationships()) {
+                if (relationship.getTargetMode() != TargetMode.INTERNAL) {
+                    continue;
+                }
+                PackagePart target = source.getRelatedPart(relationship);
+                try (InputStream in = target.getInputStream()) {
+                    related.add(toPart(relationship, target, in.readAllBytes(), List.of()));
+                }
+            }
+        } catch (InvalidFormatException e) {
+            throw new IOException("读取图表关联部件失败: " + e.getMessage(), e);
+        }
+        return related;
+    }
+
+    private static DocxFragment.Part toPart(PackageRelationship relationship, PackagePart packagePart,
+                                            byte[] data, List<DocxFragment.Part> related) {
+        return new DocxFragment.Part(
+                relationship.getId(),
+                relationship.getRelationshipType(),
+                packagePart.getContentType(),
+                packagePart.getPartName().getExtension(),
+                data,
+                related
+        );
+    }
+}
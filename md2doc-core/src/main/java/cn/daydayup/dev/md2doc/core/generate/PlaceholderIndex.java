@@ -0,0 +1,48 @@
+package cn.daydayup.dev.md2doc.core.generate;
+
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @ClassName PlaceholderIndex
+ * @Description 占位符位置索引：模板构建时记录每个 ${key} 所在的run（该run的文本只有这一个占位符），
+ *              替换阶段直接在记录的run上替换，无需逐段逐run扫描
+ * @Author ZhaoYanNing
+ * @Date 2025/11/21 10:15
+ * @Version 1.0
+ */
+public class PlaceholderIndex {
+
+    private final List<Site> sites = new ArrayList<>();
+
+    /**
+     * 记录占位符所在的run
+     * @param key 占位符名（不含 ${}）
+     * @param run 文本只有 ${key} 的run
+     */
+    public void add(String key, XWPFRun run) {
+        sites.add(new Site(key, run));
+    }
+
+    /**
+     * @return 所有占位符位置，按文档写入顺序排列
+     */
+    public List<Site> sites() {
+        return Collections.unmodifiableList(sites);
+    }
+
+    public void clear() {
+        sites.clear();
+    }
+
+    /**
+     * 占位符位置
+     * @param key 占位符名
+     * @param run 占位符所在的run
+     */
+    public record Site(String key, XWPFRun run) {
+    }
+}
@@ -2,6 +2,7 @@ package cn.daydayup.dev.md2doc.core.generate;
 
 import cn.daydayup.dev.md2doc.core.model.ChartColumn;
 import cn.daydayup.dev.md2doc.core.model.ChartTable;
+import cn.daydayup.dev.md2doc.core.model.NumberColumn;
 import cn.daydayup.dev.md2doc.core.model.WordParam;
 import cn.daydayup.dev.md2doc.core.model.WordParams;
 import lombok.val;
@@ -9,11 +10,18 @@ import org.apache.poi.ooxml.POIXMLDocumentPart;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.xddf.usermodel.chart.*;
 import org.apache.poi.xwpf.usermodel.*;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTDrawing;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTRPr;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @ClassName PoiWordGenerator
@@ -27,12 +35,39 @@ public class PoiWordGenerator {
     public static boolean buildDoc(WordParams params, File from, File to) {
         try (val in = new FileInputStream(from)) {
             try (val doc = new XWPFDocument(in)) {
-                replaceParagraph(doc, params);
-                replaceChart(doc, params);
                 try (val out = new FileOutputStream(to)) {
-                    doc.write(out);
+                    return buildDoc(params, doc, out);
                 }
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 直接对内存中的模板文档进行占位符替换并输出，模板只序列化一次
+     * @param params 替换参数
+     * @param doc 模板文档（由调用方负责关闭）
+     * @param out 输出流（由调用方负责关闭）
+     * @return 是否成功
+     */
+    public static boolean buildDoc(WordParams params, XWPFDocument doc, OutputStream out) {
+        return buildDoc(params, doc, null, out);
+    }
+
+    /**
+     * 按占位符索引直接定位替换位置并输出
+     * @param params 替换参数
+     * @param doc 模板文档（由调用方负责关闭）
+     * @param index 模板构建时生成的占位符索引，为 null 时扫描全文
+     * @param out 输出流（由调用方负责关闭）
+     * @return 是否成功
+     */
+    public static boolean buildDoc(WordParams params, XWPFDocument doc, PlaceholderIndex index, OutputStream out) {
+        try {
+            fillDoc(doc, params, index);
+            doc.write(out);
             return true;
         } catch (IOException | InvalidFormatException e) {
             e.printStackTrace();
@@ -40,121 +75,241 @@ public class PoiWordGenerator {
         }
     }
 
+    /**
+     * 在文档上就地完成占位符和图表数据替换，不输出
+     * 扫描正文段落、表格单元格（含嵌套表格）以及页眉页脚中的占位符
+     * @param doc 模板文档
+     * @param params 替换参数
+     */
+    public static void fillDoc(XWPFDocument doc, WordParams params) throws IOException, InvalidFormatException {
+        Map<PictureKey, CTDrawing> pictures = new HashMap<>();
+        for (XWPFParagraph paragraph : collectParagraphs(doc.getBodyElements(), new ArrayList<>())) {
+            replaceParagraph(paragraph, params, pictures);
+        }
+        fillHeaderFooter(doc, params);
+        replaceChart(doc, params);
+    }
+
+    /**
+     * 按占位符索引就地替换：正文直接在索引记录的run上替换，页眉页脚仍按段落扫描
+     * @param doc 模板文档
+     * @param params 替换参数
+     * @param index 占位符索引，为 null 时扫描全文
+     */
+    public static void fillDoc(XWPFDocument doc, WordParams params, PlaceholderIndex index)
+            throws IOException, InvalidFormatException {
+        if (index == null) {
+            fillDoc(doc, params);
+            return;
+        }
+        fillBody(doc, params, index);
+        fillHeaderFooter(doc, params);
+    }
+
+    /**
+     * 只替换索引中记录的正文占位符和图表，不处理页眉页脚
+     * 直接在记录的run上替换，没有对应参数的占位符保持原样
+     */
+    static void fillBody(XWPFDocument doc, WordParams params, PlaceholderIndex index)
+            throws IOException, InvalidFormatException {
+        Map<PictureKey, CTDrawing> pictures = new HashMap<>();
+        for (PlaceholderIndex.Site site : index.sites()) {
+            WordParam value = params.getParam(site.key());
+            if (value != null) {
+                XWPFRun run = site.run();
+                replaceValue((XWPFParagraph) run.getParent(), run, "", value, site.key(), pictures);
+            }
+        }
+        replaceChart(doc, params);
+    }
+
+    /**
+     * 替换页眉页脚中的占位符
+     * 按文档关系查找页眉页脚部件，新建的页眉页脚在重新加载前不会出现在 getHeaderList 中
+     */
+    static void fillHeaderFooter(XWPFDocument doc, WordParams params) throws IOException, InvalidFormatException {
+        List<XWPFParagraph> paragraphs = new ArrayList<>();
+        for (POIXMLDocumentPart part : doc.getRelations()) {
+            if (part instanceof XWPFHeaderFooter headerFooter) {
+                collectParagraphs(headerFooter.getBodyElements(), paragraphs);
+            }
+        }
+        Map<PictureKey, CTDrawing> pictures = new HashMap<>();
+        for (XWPFParagraph paragraph : paragraphs) {
+            replaceParagraph(paragraph, params, pictures);
+        }
+    }
+
+    /**
+     * 收集正文元素中的段落，递归进入表格单元格；替换前先收集，替换过程中插入的表格不会被再次扫描
+     */
+    private static List<XWPFParagraph> collectParagraphs(List<IBodyElement> elements, List<XWPFParagraph> paragraphs) {
+        for (IBodyElement element : elements) {
+            if (element instanceof XWPFParagraph paragraph) {
+                paragraphs.add(paragraph);
+            } else if (element instanceof XWPFTable table) {
+                for (XWPFTableRow row : table.getRows()) {
+                    for (XWPFTableCell cell : row.getTableCells()) {
+                        collectParagraphs(cell.getBodyElements(), paragraphs);
+                    }
+                }
+            }
+        }
+        return paragraphs;
+    }
+
     private enum ReplaceType {
         NotFound,
         $,
         Start,
     }
 
-    private static void replaceParagraph(XWPFDocument doc, WordParams params)
+    /**
+     * 同一部件中已插入的图片，按图片内容和显示尺寸查找
+     * 内容相同的图片本就共用一个图片部件，再次出现时直接复制第一次生成的绘图元素，
+     * 省去图片字节的复制、校验和计算、与已有图片的逐字节比对以及绘图XML的解析
+     */
+    private record PictureKey(POIXMLDocumentPart part, ByteBuffer data, int width, int height) {
+    }
+
+    private static void replaceParagraph(XWPFParagraph paragraph, WordParams params,
+                                         Map<PictureKey, CTDrawing> pictures)
             throws IOException, InvalidFormatException {
-        for (XWPFParagraph paragraph : doc.getParagraphs()) {
-            val runs = paragraph.getRuns();
-
-            val prevText = new StringBuilder();
-            XWPFRun replaceRun = null;
-            int replaceIndex = 0;
-            ReplaceType replaceType = ReplaceType.NotFound;
-            val key = new StringBuilder();
-
-            for (int index = 0; index < runs.size(); index++) {
-                val run = runs.get(index);
-                // run.getCTR().sizeOfTArray();
-                val text = run.getText(0);
-                if (text == null || text.isEmpty()) {
-                    continue;
-                }
-                switch (replaceType) {
-                    case NotFound:
-                        replaceIndex = text.indexOf('$');
-                        if (replaceIndex < 0) {
-                            continue;
-                        }
-                        replaceRun = run;
-                        prevText.append(text, 0, replaceIndex);
-                        replaceIndex++;
-                        replaceType = ReplaceType.$;
-                    case $:
-                        if (replaceIndex == text.length()) {
-                            replaceIndex = 0;
-                            continue;
-                        }
-                        if (text.charAt(replaceIndex) != '{') {
-                            replaceRun = null;
-                            prevText.setLength(0);
-                            replaceType = ReplaceType.NotFound;
-                            continue;
-                        }
-                        replaceIndex++;
-                        replaceType = ReplaceType.Start;
-                    case Start:
-                        if (replaceIndex == text.length()) {
-                            if (replaceRun != run) {
-                                paragraph.removeRun(index);
-                                index--;
-                            }
-                            replaceIndex = 0;
-                            continue;
-                        }
-                        var replaceEnd = text.indexOf('}', replaceIndex);
-                        if (replaceEnd < 0) {
-                            key.append(text, replaceIndex, text.length());
-                            if (replaceRun != run) {
-                                paragraph.removeRun(index);
-                                index--;
-                            }
-                            continue;
-                        }
-                        key.append(text, replaceIndex, replaceEnd);
-                        val value = params.getParam(key.toString());
-                        if (value == null) {
-                            prevText.append("${");
-                            prevText.append(key);
-                            prevText.append("}");
-                            replaceRun.setText(prevText.toString(), 0);
-                        } else if (value instanceof WordParam.Text msg) {
-                            prevText.append(msg.getMsg());
-                            replaceRun.setText(prevText.toString(), 0);
-                        } else if (value instanceof WordParam.Image image) {
-                            replaceRun.setText(prevText.toString(), 0);
-                            String placeholderKey = key.toString();
-                            String imageFileName = placeholderKey + "." + image.getFileExtension();
-                            replaceRun.addPicture(
-                                    image.getInputStream(),
-                                    image.getPictureType(),
-                                    imageFileName,
-                                    image.getWidth(),
-                                    image.getHeight()
-                            );
-                        } else if (value instanceof WordParam.Table table) {
-                            // 处理表格
-                            replaceRun.setText(prevText.toString(), 0);
-                            createTable(paragraph, table.getData());
-                        }
+        val runs = paragraph.getRuns();
+
+        val prevText = new StringBuilder();
+        XWPFRun replaceRun = null;
+        int replaceIndex = 0;
+        ReplaceType replaceType = ReplaceType.NotFound;
+        val key = new StringBuilder();
+
+        for (int index = 0; index < runs.size(); index++) {
+            val run = runs.get(index);
+            // run.getCTR().sizeOfTArray();
+            val text = run.getText(0);
+            if (text == null || text.isEmpty()) {
+                continue;
+            }
+            switch (replaceType) {
+                case NotFound:
+                    replaceIndex = text.indexOf('$');
+                    if (replaceIndex < 0) {
+                        continue;
+                    }
+                    replaceRun = run;
+                    prevText.append(text, 0, replaceIndex);
+                    replaceIndex++;
+                    replaceType = ReplaceType.$;
+                case $:
+                    if (replaceIndex == text.length()) {
+                        replaceIndex = 0;
+                        continue;
+                    }
+                    if (text.charAt(replaceIndex) != '{') {
+                        replaceRun = null;
                         prevText.setLength(0);
-                        key.setLength(0);
-                        replaceEnd++;
-                        if (replaceEnd < text.length()) {
-                            run.setText(text.substring(replaceEnd), 0);
+                        replaceType = ReplaceType.NotFound;
+                        continue;
+                    }
+                    replaceIndex++;
+                    replaceType = ReplaceType.Start;
+                case Start:
+                    if (replaceIndex == text.length()) {
+                        if (replaceRun != run) {
+                            paragraph.removeRun(index);
                             index--;
-                        } else if (replaceRun != run) {
+                        }
+                        replaceIndex = 0;
+                        continue;
+                    }
+                    var replaceEnd = text.indexOf('}', replaceIndex);
+                    if (replaceEnd < 0) {
+                        key.append(text, replaceIndex, text.length());
+                        replaceIndex = 0;
+                        if (replaceRun != run) {
                             paragraph.removeRun(index);
                             index--;
                         }
-                        replaceRun = null;
-                        replaceType = ReplaceType.NotFound;
-                }
+                        continue;
+                    }
+                    key.append(text, replaceIndex, replaceEnd);
+                    val value = params.getParam(key.toString());
+                    if (value == null) {
+                        prevText.append("${");
+                        prevText.append(key);
+                        prevText.append("}");
+                        replaceRun.setText(prevText.toString(), 0);
+                    } else {
+                        replaceValue(paragraph, replaceRun, prevText.toString(), value, key.toString(), pictures);
+                    }
+                    prevText.setLength(0);
+                    key.setLength(0);
+                    replaceEnd++;
+                    if (replaceEnd < text.length() && replaceRun == run) {
+                        // 占位符与后续文本在同一个run中：后续文本移到新run，继续查找其中的占位符
+                        XWPFRun rest = paragraph.insertNewRun(index + 1);
+                        if (run.getCTR().isSetRPr()) {
+                            rest.getCTR().setRPr((CTRPr) run.getCTR().getRPr().copy());
+                        }
+                        rest.setText(text.substring(replaceEnd));
+                    } else if (replaceEnd < text.length()) {
+                        run.setText(text.substring(replaceEnd), 0);
+                        index--;
+                    } else if (replaceRun != run) {
+                        paragraph.removeRun(index);
+                        index--;
+                    }
+                    replaceRun = null;
+                    replaceType = ReplaceType.NotFound;
+            }
+        }
+    }
+
+    /**
+     * 用参数替换run中的占位符
+     * @param paragraph run所在段落
+     * @param run 占位符所在的run，替换后其文本为 prefix 加上文本参数
+     * @param prefix 占位符之前的文本
+     * @param value 替换参数
+     * @param key 占位符名，用作图片文件名
+     * @param pictures 同一部件中已插入的图片
+     */
+    private static void replaceValue(XWPFParagraph paragraph, XWPFRun run, String prefix, WordParam value, String key,
+                                     Map<PictureKey, CTDrawing> pictures) throws IOException, InvalidFormatException {
+        if (value instanceof WordParam.Text msg) {
+            run.setText(prefix + msg.getMsg(), 0);
+        } else if (value instanceof WordParam.Image image) {
+            run.setText(prefix, 0);
+            PictureKey pictureKey = new PictureKey(paragraph.getPart(), ByteBuffer.wrap(image.getData()),
+                    image.getWidth(), image.getHeight());
+            CTDrawing drawing = pictures.get(pictureKey);
+            if (drawing != null) {
+                PoiDrawingUtil.copyDrawing(run, drawing);
+            } else {
+                String imageFileName = key + "." + image.getFileExtension();
+                run.addPicture(
+                        image.getInputStream(),
+                        image.getPictureType(),
+                        imageFileName,
+                        image.getWidth(),
+                        image.getHeight()
+                );
+                // 保存副本：原绘图元素所在的run之后可能被移除
+                CTDrawing added = run.getCTR().getDrawingArray(run.getCTR().sizeOfDrawingArray() - 1);
+                pictures.put(pictureKey, (CTDrawing) added.copy());
             }
+        } else if (value instanceof WordParam.Table table) {
+            // 处理表格
+            run.setText(prefix, 0);
+            createTable(paragraph, table.getData());
         }
     }
 
     // 创建表格的方法
-    private static void createTable(XWPFParagraph paragraph, List<List<String>> tableData) {
-        XWPFDocument document = paragraph.getDocument();
+    static XWPFTable createTable(XWPFParagraph paragraph, List<List<String>> tableData) {
+        // 在段落后插入表格（段落可能位于正文、表格单元格或页眉页脚中）
+        XWPFTable table = insertTable(paragraph);
 
-        // 在段落后插入表格
-        XWPFTable table = document.insertNewTbl(paragraph.getCTP().newCursor());
-        
         // 设置表格居中对齐
         table.setTableAlignment(TableRowAlign.CENTER);
         
@@ -211,6 +366,29 @@ public class PoiWordGenerator {
                 }
             }
         }
+        return table;
+    }
+
+    /**
+     * 在段落位置插入空表格
+     * 单元格和页眉页脚的 insertNewTbl 只生成空的表格元素（无属性、无行），补齐表格属性和边框并去掉无对应元素的行
+     */
+    private static XWPFTable insertTable(XWPFParagraph paragraph) {
+        XWPFTable table = paragraph.getBody().insertNewTbl(paragraph.getCTP().newCursor());
+        if (table.getCTTbl().getTblPr() != null) {
+            return table;
+        }
+        table.getCTTbl().addNewTblPr().addNewTblW();
+        while (!table.getRows().isEmpty()) {
+            table.removeRow(0);
+        }
+        table.setTopBorder(XWPFTable.XWPFBorderType.SINGLE, 4, 0, "auto");
+        table.setBottomBorder(XWPFTable.XWPFBorderType.SINGLE, 4, 0, "auto");
+        table.setLeftBorder(XWPFTable.XWPFBorderType.SINGLE, 4, 0, "auto");
+        table.setRightBorder(XWPFTable.XWPFBorderType.SINGLE, 4, 0, "auto");
+        table.setInsideHBorder(XWPFTable.XWPFBorderType.SINGLE, 4, 0, "auto");
+        table.setInsideVBorder(XWPFTable.XWPFBorderType.SINGLE, 4, 0, "auto");
+        return table;
     }
 
     private static void replaceChart(XWPFDocument doc, WordParams params) {
@@ -226,7 +404,7 @@ public class PoiWordGenerator {
 
     }
 
-    private static String getBarTitle(XWPFChart chart) {
+    static String getBarTitle(XDDFChart chart) {
         XDDFTitle title = chart.getTitle();
         if (title != null) {
             return title.getBody().getParagraph(0).getText();
@@ -237,7 +415,7 @@ public class PoiWordGenerator {
     /**
      * 调用替换柱状图、折线图组合数据
      */
-    private static void replaceCharts(XWPFChart chart, ChartTable chartTable) {
+    static void replaceCharts(XDDFChart chart, ChartTable chartTable) {
         // 设置标题
         chart.setTitleText(chartTable.getTitle());
 
@@ -250,7 +428,7 @@ public class PoiWordGenerator {
                 if (title == null) {
                     continue;
                 }
-                val yAxis = chartTable.getYAxis(title);
+                val yAxis = chartTable.getNumberYAxis(title);
                 if (yAxis == null) {
                     continue;
                 }
@@ -268,7 +446,7 @@ public class PoiWordGenerator {
         return XDDFDataSourcesFactory.fromArray(column.toArray(new String[0]));
     }
 
-    private static XDDFNumericalDataSource<Number> fromNumber(ChartColumn<Number> column) {
-        return XDDFDataSourcesFactory.fromArray(column.toArray(new Number[0]));
+    private static XDDFNumericalDataSource<Double> fromNumber(NumberColumn column) {
+        return new DoubleArrayDataSource(column.toArray());
     }
 }
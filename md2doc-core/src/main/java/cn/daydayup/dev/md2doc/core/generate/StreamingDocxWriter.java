@@ -0,0 +1,290 @@
+package cn.daydayup.dev.md2doc.core.generate;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * @ClassName StreamingDocxWriter
+ * @Description 流式写出 .docx：片段引用的图片、图表等部件随片段追加立即写入 ZipOutputStream，
+ *              word/document.xml 的正文先追加到临时文件，结束时再整体复制进 zip（zip 条目必须连续写入）；
+ *              内存中只保留关系和内容类型等索引，占用与单个块相关，不随文档中的图片和图表数量增长
+ * @Author ZhaoYanNing
+ * @Date 2025/11/10 15:30
+ * @Version 1.0
+ */
+public class StreamingDocxWriter implements Closeable {
+
+    /**
+     * document.xml 根元素上声明的命名空间，片段序列化时视为已声明
+     */
+    public static final Map<String, String> DOCUMENT_NAMESPACES;
+
+    static {
+        Map<String, String> namespaces = new LinkedHashMap<>();
+        namespaces.put("w", "http://schemas.openxmlformats.org/wordprocessingml/2006/main");
+        namespaces.put("wp", "http://schemas.openxmlformats.org/drawingml/2006/wordprocessingDrawing");
+        namespaces.put("r", "http://schemas.openxmlformats.org/officeDocument/2006/relationships");
+        namespaces.put("a", "http://schemas.openxmlformats.org/drawingml/2006/main");
+        namespaces.put("pic", "http://schemas.openxmlformats.org/drawingml/2006/picture");
+        namespaces.put("c", "http://schemas.openxmlformats.org/drawingml/2006/chart");
+        DOCUMENT_NAMESPACES = Collections.unmodifiableMap(namespaces);
+    }
+
+    private static final String DOCUMENT_PART = "word/document.xml";
+    private static final String DOCUMENT_RELS_PART = "word/_rels/document.xml.rels";
+    private static final String CONTENT_TYPES_PART = "[Content_Types].xml";
+    private static final String REL_TYPE_PREFIX = "http://schemas.openxmlformats.org/officeDocument/2006/relationships/";
+    private static final Pattern SECT_PR_PATTERN = Pattern.compile("<w:sectPr[\\s>].*?</w:sectPr>", Pattern.DOTALL);
+    private static final Pattern DOC_PR_ID_PATTERN = Pattern.compile("(<wp:docPr id=\")(\\d+)(\")");
+    /**
+     * 引用部件的关系属性：图片为 r:embed，图表为 r:id；只改写这些属性，正文文本中的同名字符串保持不变
+     */
+    private static final Pattern REL_ATTRIBUTE_PATTERN = Pattern.compile("(\\sr:(?:embed|id)=\")([^\"]*)(\")");
+
+    private final ZipOutputStream zip;
+    private final Path documentBody;
+    private final Writer documentWriter;
+
+    private final Map<String, Integer> partCounters = new HashMap<>();
+    private final Map<String, String> defaultContentTypes = new LinkedHashMap<>();
+    private final StringBuilder overrideContentTypes = new StringBuilder();
+    private final StringBuilder documentRelationships = new StringBuilder();
+
+    /**
+     * 已写出的图片部件，按内容的 SHA-256 摘要查找关系ID；内容相同的图片共用一个部件和关系
+     */
+    private final Map<String, String> imageRelIds = new HashMap<>();
+    private int relationshipSeq = 0;
+    private int drawingSeq = 0;
+
+    public StreamingDocxWriter(OutputStream out) throws IOException {
+        this.zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        this.documentBody = Files.createTempFile("md2doc-document", ".xml");
+        try {
+            this.documentWriter = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(documentBody),
+                    StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Files.deleteIfExists(documentBody);
+            throw e;
+        }
+    }
+
+    /**
+     * 追加一个片段到正文末尾，并为其引用的部件分配最终的部件名和关系ID
+     * @param fragment 渲染后的片段
+     */
+    public void append(DocxFragment fragment) throws IOException {
+        String xml = fragment.bodyXml();
+        if (!fragment.parts().isEmpty()) {
+            Map<String, String> relIds = new HashMap<>();
+            for (DocxFragment.Part part : fragment.parts()) {
+                boolean image = part.relType().endsWith("/image") && part.related().isEmpty();
+                String digest = image ? digest(part.data()) : null;
+                String existing = image ? imageRelIds.get(digest) : null;
+                if (existing != null) {
+                    relIds.put(part.relId(), existing);
+                    continue;
+                }
+                String relId = "rIdMd" + (++relationshipSeq);
+                if (image) {
+                    imageRelIds.put(digest, relId);
+                }
+                String partName = nextPartName(part);
+                relIds.put(part.relId(), relId);
+                documentRelationships.append("<Relationship Id=\"").append(relId)
+                        .append("\" Target=\"").append(partName.substring("word/".length()))
+                        .append("\" Type=\"").append(part.relType()).append("\"/>");
+                writePart(partName, part);
+            }
+            xml = renumberDrawings(replaceRelIds(xml, relIds));
+        }
+        documentWriter.write(xml);
+    }
+
+    /**
+     * 结束 document.xml 并将正文写入 zip，再合并骨架包中的样式、编号、设置等部件
+     * 完成后只结束 zip，不关闭调用方的输出流
+     * @param skeletonDocx FragmentRenderer.skeleton() 输出的骨架包
+     */
+    public void finish(byte[] skeletonDocx) throws IOException {
+        Map<String, byte[]> skeletonEntries = new LinkedHashMap<>();
+        try (ZipInputStream skeleton = new ZipInputStream(new ByteArrayInputStream(skeletonDocx))) {
+            ZipEntry entry;
+            while ((entry = skeleton.getNextEntry()) != null) {
+                skeletonEntries.put(entry.getName(), skeleton.readAllBytes());
+            }
+        }
+
+        // 沿用骨架中的页面设置（纸张、页边距、页眉页脚引用）
+        byte[] skeletonDocument = skeletonEntries.remove(DOCUMENT_PART);
+        if (skeletonDocument != null) {
+            Matcher sectPr = SECT_PR_PATTERN.matcher(new String(skeletonDocument, StandardCharsets.UTF_8));
+            if (sectPr.find()) {
+                documentWriter.write(sectPr.group());
+            }
+        }
+        documentWriter.write("</w:body></w:document>");
+        documentWriter.close();
+
+        zip.putNextEntry(new ZipEntry(DOCUMENT_PART));
+        StringBuilder root = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<w:document");
+        for (Map.Entry<String, String> namespace : DOCUMENT_NAMESPACES.entrySet()) {
+            root.append(" xmlns:").append(namespace.getKey()).append("=\"").append(namespace.getValue()).append("\"");
+        }
+        zip.write(root.append("><w:body>").toString().getBytes(StandardCharsets.UTF_8));
+        Files.copy(documentBody, zip);
+        zip.closeEntry();
+
+        for (Map.Entry<String, byte[]> entry : skeletonEntries.entrySet()) {
+            String name = entry.getKey();
+            byte[] content = entry.getValue();
+            if (CONTENT_TYPES_PART.equals(name)) {
+                content = mergeContentTypes(new String(content, StandardCharsets.UTF_8));
+            } else if (DOCUMENT_RELS_PART.equals(name)) {
+                content = insertBefore(new String(content, StandardCharsets.UTF_8), "</Relationships>",
+                        documentRelationships.toString());
+            }
+            zip.putNextEntry(new ZipEntry(name));
+            zip.write(content);
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    /**
+     * 删除正文临时文件；未调用 finish 时输出不完整，只关闭临时文件，不关闭调用方的输出流
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            documentWriter.close();
+        } finally {
+            Files.deleteIfExists(documentBody);
+        }
+    }
+
+    private void writePart(String partName, DocxFragment.Part part) throws IOException {
+        zip.putNextEntry(new ZipEntry(partName));
+        zip.write(part.data());
+        zip.closeEntry();
+        registerContentType(partName, part);
+
+        if (part.related().isEmpty()) {
+            return;
+        }
+        String directory = partName.substring(0, partName.lastIndexOf('/'));
+        String fileName = partName.substring(partName.lastIndexOf('/') + 1);
+        StringBuilder rels = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>")
+                .append("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+        for (DocxFragment.Part related : part.related()) {
+            String relatedName = nextPartName(related);
+            rels.append("<Relationship Id=\"").append(related.relId())
+                    .append("\" Target=\"../").append(relatedName.substring("word/".length()))
+                    .append("\" Type=\"").append(related.relType()).append("\"/>");
+            writePart(relatedName, related);
+        }
+        rels.append("</Relationships>");
+        zip.putNextEntry(new ZipEntry(directory + "/_rels/" + fileName + ".rels"));
+        zip.write(rels.toString().getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    /**
+     * 按关系类型决定部件目录：图片放在 media，图表放在 charts，内嵌工作簿放在 embeddings
+     */
+    private String nextPartName(DocxFragment.Part part) {
+        String type = part.relType().startsWith(REL_TYPE_PREFIX)
+                ? part.relType().substring(REL_TYPE_PREFIX.length())
+                : part.relType();
+        String prefix = switch (type) {
+            case "image" -> "word/media/image";
+            case "chart" -> "word/charts/chart";
+            case "package" -> "word/embeddings/Microsoft_Excel_Worksheet";
+            default -> "word/" + type;
+        };
+        int index = partCounters.merge(prefix, 1, Integer::sum);
+        return prefix + index + "." + part.extension();
+    }
+
+    private void registerContentType(String partName, DocxFragment.Part part) {
+        if (part.relType().endsWith("/image") || part.relType().endsWith("/package")) {
+            defaultContentTypes.putIfAbsent(part.extension(), part.contentType());
+        } else {
+            overrideContentTypes.append("<Override ContentType=\"").append(part.contentType())
+                    .append("\" PartName=\"/").append(partName).append("\"/>");
+        }
+    }
+
+    private byte[] mergeContentTypes(String contentTypes) {
+        StringBuilder additions = new StringBuilder();
+        for (Map.Entry<String, String> entry : defaultContentTypes.entrySet()) {
+            if (!contentTypes.contains("Extension=\"" + entry.getKey() + "\"")) {
+                additions.append("<Default ContentType=\"").append(entry.getValue())
+                        .append("\" Extension=\"").append(entry.getKey()).append("\"/>");
+            }
+        }
+        additions.append(overrideContentTypes);
+        return insertBefore(contentTypes, "</Types>", additions.toString());
+    }
+
+    private static byte[] insertBefore(String xml, String closingTag, String addition) {
+        int index = xml.lastIndexOf(closingTag);
+        return (xml.substring(0, index) + addition + xml.substring(index)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 把片段内的局部关系ID替换为最终的关系ID，只处理 r:embed / r:id 属性
+     */
+    private static String replaceRelIds(String xml, Map<String, String> relIds) {
+        Matcher matcher = REL_ATTRIBUTE_PATTERN.matcher(xml);
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            String relId = relIds.get(matcher.group(2));
+            matcher.appendReplacement(result, Matcher.quoteReplacement(
+                    relId == null ? matcher.group() : matcher.group(1) + relId + matcher.group(3)));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static String digest(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 各片段在独立文档中渲染，绘图对象ID都从0开始，写出时重新编号保证文档内唯一
+     */
+    private String renumberDrawings(String xml) {
+        Matcher matcher = DOC_PR_ID_PATTERN.matcher(xml);
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            matcher.appendReplacement(result, "$1" + (drawingSeq++) + "$3");
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+}
@@ -0,0 +1,26 @@
+package cn.daydayup.dev.md2doc.core.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @ClassName BatchDocument
+ * @Description 批量转换中的一篇Markdown文档
+ * @Author ZhaoYanNing
+ * @Date 2025/11/19 10:20
+ * @Version 1.0
+ */
+@Getter
+@AllArgsConstructor
+public class BatchDocument {
+
+    /**
+     * 文档名称，用作压缩包中的文件名（不含扩展名）
+     */
+    private final String name;
+
+    /**
+     * Markdown内容
+     */
+    private final String markdown;
+}
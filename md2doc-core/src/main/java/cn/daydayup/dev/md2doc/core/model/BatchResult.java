@@ -0,0 +1,51 @@
+package cn.daydayup.dev.md2doc.core.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * @ClassName BatchResult
+ * @Description 批量转换的汇总结果
+ * @Author ZhaoYanNing
+ * @Date 2025/11/19 10:20
+ * @Version 1.0
+ */
+@Getter
+@AllArgsConstructor
+public class BatchResult {
+
+    /**
+     * 提交的文档数
+     */
+    private final int total;
+
+    /**
+     * 转换成功的文档数
+     */
+    private final int succeeded;
+
+    /**
+     * 转换失败的文档及失败原因
+     */
+    private final Map<String, String> failures;
+
+    /**
+     * 整批耗时（毫秒）
+     */
+    private final long elapsedMillis;
+
+    /**
+     * 加载的图片数（被缓存淘汰后重新加载的重复计入）和共享的ECharts配置数
+     */
+    private final int sharedImages;
+    private final int sharedChartConfigs;
+
+    /**
+     * @return 吞吐量（篇/秒）
+     */
+    public double getDocsPerSecond() {
+        return elapsedMillis == 0 ? succeeded : succeeded * 1000.0 / elapsedMillis;
+    }
+}
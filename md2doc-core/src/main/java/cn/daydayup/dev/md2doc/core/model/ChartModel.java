@@ -0,0 +1,62 @@
+package cn.daydayup.dev.md2doc.core.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * @ClassName ChartModel
+ * @Description 解析后的图表：每个 ECharts 块只解析一次，直接据此生成最终的图表部件；实例只读，可在多篇文档之间共享
+ * @Author ZhaoYanNing
+ * @Date 2025/12/8 14:30
+ * @Version 1.0
+ */
+@Getter
+@AllArgsConstructor
+public class ChartModel {
+
+    /**
+     * 图表类型：bar、line 或 pie，取第一个系列的类型，未知类型按柱状图处理
+     */
+    private final String type;
+
+    /**
+     * 图表标题
+     */
+    private final String title;
+
+    /**
+     * X 轴名称，未设置时为 null
+     */
+    private final String xAxisName;
+
+    /**
+     * Y 轴名称，未设置时为 null
+     */
+    private final String yAxisName;
+
+    /**
+     * 类别标签：柱状图和折线图取 X 轴数据，饼图取各数据项的名称
+     */
+    private final String[] categories;
+
+    /**
+     * 数据系列，饼图只有一个
+     */
+    private final List<Series> series;
+
+    public boolean isPie() {
+        return "pie".equals(type);
+    }
+
+    /**
+     * 数据系列
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Series {
+        private final String name;
+        private final double[] values;
+    }
+}
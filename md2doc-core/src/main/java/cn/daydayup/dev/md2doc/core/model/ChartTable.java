@@ -20,7 +20,7 @@ import java.util.HashMap;
 public class ChartTable {
     private String title;
     private ChartColumn<String> xAxis = new ChartColumn<>("x轴");
-    private HashMap<String, ChartColumn<Number>> yAxis = new HashMap<>();
+    private HashMap<String, NumberColumn> numberYAxis = new HashMap<>();
 
     public ChartTable(String title) {
         this.title = title;
@@ -31,14 +31,55 @@ public class ChartTable {
         return this;
     }
 
-    public ChartColumn<Number> newYAxis(String title) {
-        val column = new ChartColumn<Number>();
-        yAxis.put(title, column);
+    public NumberColumn newNumberYAxis(String title) {
+        val column = new NumberColumn();
+        numberYAxis.put(title, column);
         return column;
     }
 
+    public NumberColumn getNumberYAxis(String title) {
+        return numberYAxis.get(title);
+    }
+
+    /**
+     * @deprecated 数据按包装类型逐个存放，改用 newNumberYAxis；返回的列直接读写新建的 NumberColumn
+     */
+    @Deprecated
+    public ChartColumn<Number> newYAxis(String title) {
+        return newNumberYAxis(title).asChartColumn();
+    }
+
+    /**
+     * @deprecated 改用 getNumberYAxis；返回的列直接读写对应的 NumberColumn
+     */
+    @Deprecated
     public ChartColumn<Number> getYAxis(String title) {
-        return yAxis.get(title);
+        val column = numberYAxis.get(title);
+        return column == null ? null : column.asChartColumn();
+    }
+
+    /**
+     * @deprecated 改用 getNumberYAxis；返回的映射是副本，其中的列直接读写对应的 NumberColumn，增删系列不影响本表
+     */
+    @Deprecated
+    public HashMap<String, ChartColumn<Number>> getYAxis() {
+        HashMap<String, ChartColumn<Number>> columns = new HashMap<>();
+        numberYAxis.forEach((key, column) -> columns.put(key, column.asChartColumn()));
+        return columns;
+    }
+
+    /**
+     * @deprecated 改用 setNumberYAxis；各列的数据复制到新建的 NumberColumn
+     */
+    @Deprecated
+    public void setYAxis(HashMap<String, ChartColumn<Number>> yAxis) {
+        HashMap<String, NumberColumn> columns = new HashMap<>();
+        yAxis.forEach((key, column) -> {
+            val numbers = new NumberColumn(column.getTitle());
+            numbers.addAllData(column.getDateList());
+            columns.put(key, numbers);
+        });
+        this.numberYAxis = columns;
     }
 
 }
@@ -0,0 +1,142 @@
+package cn.daydayup.dev.md2doc.core.model;
+
+import cn.daydayup.dev.md2doc.core.generate.FragmentCache;
+import cn.daydayup.dev.md2doc.core.template.DocumentSkeleton;
+import cn.daydayup.dev.md2doc.core.util.ChartDownsampler;
+import cn.daydayup.dev.md2doc.core.util.ImageDownloader;
+import cn.daydayup.dev.md2doc.core.util.ImageFetcher;
+import cn.daydayup.dev.md2doc.core.util.ImageOptimizer;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @ClassName ConversionOptions
+ * @Description 单次转换的可选参数
+ * @Author ZhaoYanNing
+ * @Date 2025/11/5 14:20
+ * @Version 1.0
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+public class ConversionOptions {
+
+    /**
+     * 输入流的字符集，仅在以 InputStream 作为输入时使用
+     */
+    private Charset charset = StandardCharsets.UTF_8;
+
+    /**
+     * 文档生成后端，默认使用 POI 在内存中构建完整文档
+     */
+    private Backend backend = Backend.POI;
+
+    /**
+     * 片段缓存，设置后启用增量转换：只渲染内容或编号发生变化的块，其余块直接复用缓存片段；图片块不缓存，每次重新加载
+     * 增量转换基于流式后端，设置后忽略 backend
+     */
+    private FragmentCache fragmentCache;
+
+    /**
+     * 渲染线程池，设置后各块在其中并行渲染，再按文档顺序写出；标题编号和列表编号仍按文档顺序确定
+     * 并行渲染基于流式后端，设置后忽略 backend；线程池由调用方创建和关闭
+     */
+    private ForkJoinPool renderPool;
+
+    /**
+     * 文档骨架（样式、编号、主题等部件），默认使用内置骨架；可通过 DocumentSkeleton.fromReferenceDocx 使用参考文档
+     */
+    private DocumentSkeleton skeleton = DocumentSkeleton.defaultSkeleton();
+
+    /**
+     * 多篇文档共享的图片和ECharts配置缓存，批量转换时同一批文档共用一个实例；为 null 时不共享
+     */
+    private SharedResources sharedResources;
+
+    /**
+     * 图片加载器，文档中的全部图片在转换开始时并发加载，渲染到图片时再等待结果；为 null 时在渲染时逐张加载
+     */
+    private ImageFetcher imageFetcher = ImageFetcher.defaultFetcher();
+
+    /**
+     * 图片下载器，带有HTTP客户端、图片大小上限、网络图片缓存和故障保护；默认使用进程内共用的实例
+     */
+    private ImageDownloader imageDownloader = ImageDownloader.defaultDownloader();
+
+    /**
+     * 图片优化器，设置后超过页面显示宽度的图片先缩小、重新压缩再嵌入文档；为 null 时嵌入原图
+     */
+    private ImageOptimizer imageOptimizer;
+
+    /**
+     * 图表降采样器，设置后数据点超过上限的折线图和柱状图先降采样再生成图表部件；为 null 时嵌入全部数据点
+     */
+    private ChartDownsampler chartDownsampler;
+
+    /**
+     * 图表内嵌工作簿的生成方式，默认由 POI 构建 XSSFWorkbook
+     */
+    private ChartWorkbook chartWorkbook = ChartWorkbook.XSSF;
+
+    /**
+     * 影响块渲染结果的参数，作为片段缓存键的一部分；切换图片优化、图表降采样或内嵌工作簿方式后不会命中旧的片段
+     */
+    public String fragmentFingerprint() {
+        return (imageOptimizer == null ? "" : imageOptimizer.cacheKey())
+                + ";" + (chartDownsampler == null ? "" : chartDownsampler.cacheKey())
+                + ";" + chartWorkbook;
+    }
+
+    public static ConversionOptions create() {
+        return new ConversionOptions();
+    }
+
+    /**
+     * 复制一份参数，缓存、线程池、骨架等引用类型的参数与原对象共用
+     */
+    public ConversionOptions copy() {
+        return new ConversionOptions()
+                .setCharset(charset)
+                .setBackend(backend)
+                .setFragmentCache(fragmentCache)
+                .setRenderPool(renderPool)
+                .setSkeleton(skeleton)
+                .setSharedResources(sharedResources)
+                .setImageFetcher(imageFetcher)
+                .setImageDownloader(imageDownloader)
+                .setImageOptimizer(imageOptimizer)
+                .setChartDownsampler(chartDownsampler)
+                .setChartWorkbook(chartWorkbook);
+    }
+
+    public enum Backend {
+        /**
+         * 使用 XWPFDocument 在内存中构建完整文档后一次性写出
+         */
+        POI,
+        /**
+         * 逐块渲染并增量写出 word/document.xml，内存占用只与单个块相关，适合超大文档
+         */
+        STREAMING
+    }
+
+    public enum ChartWorkbook {
+        /**
+         * 由 POI 构建 XSSFWorkbook 并写入图表数据，图表数据可在 Word 中编辑
+         */
+        XSSF,
+        /**
+         * 按行直接写出工作簿，不构建 XSSFWorkbook；图表数据同样可在 Word 中编辑
+         */
+        STREAMING,
+        /**
+         * 不生成内嵌工作簿，图表只保存缓存数据，显示不受影响，但无法在 Word 中编辑数据
+         */
+        NONE
+    }
+}
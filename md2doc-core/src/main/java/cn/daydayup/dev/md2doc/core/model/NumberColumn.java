@@ -0,0 +1,160 @@
+package cn.daydayup.dev.md2doc.core.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * @ClassName NumberColumn
+ * @Description word图表-数值字段：数据按 double 存放在可扩容的数组中，不为每个数据点创建包装对象；缺失的数据点记为 NaN
+ * @Author ZhaoYanNing
+ * @Date 2025/12/10 10:15
+ * @Version 1.0
+ */
+@NoArgsConstructor
+public class NumberColumn {
+    @Getter
+    private String title;
+    private double[] values = new double[16];
+    private int size;
+
+    public NumberColumn(String title) {
+        this.title = title;
+    }
+
+    public NumberColumn setTitle(String title) {
+        this.title = title;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        return values[index];
+    }
+
+    public void add(double value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size + (size >> 1) + 1);
+        }
+        values[size++] = value;
+    }
+
+    public void addAll(double... data) {
+        ensureCapacity(size + data.length);
+        System.arraycopy(data, 0, values, size, data.length);
+        size += data.length;
+    }
+
+    /**
+     * 追加包装类型的数据，null 记为缺失的数据点
+     */
+    public final void addAllData(Number... data) {
+        ensureCapacity(size + data.length);
+        for (Number value : data) {
+            add(toDouble(value));
+        }
+    }
+
+    /**
+     * 追加包装类型的数据，null 记为缺失的数据点
+     */
+    public final void addAllData(Collection<? extends Number> data) {
+        ensureCapacity(size + data.size());
+        for (Number value : data) {
+            add(toDouble(value));
+        }
+    }
+
+    /**
+     * 以 ChartColumn<Number> 形式读写本列，供仍使用旧接口的调用方；读写直接作用于本列，缺失的数据点读出为 null
+     * @return 与本列共用数据和标题的视图
+     */
+    public ChartColumn<Number> asChartColumn() {
+        NumberColumn column = this;
+        ChartColumn<Number> view = new ChartColumn<>() {
+            @Override
+            public String getTitle() {
+                return column.title;
+            }
+
+            @Override
+            public ChartColumn<Number> setTitle(String title) {
+                column.setTitle(title);
+                return this;
+            }
+        };
+        view.setDateList(new ValueList());
+        return view;
+    }
+
+    /**
+     * @return 按实际长度复制出的数据
+     */
+    public double[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, Math.max(capacity, size + (size >> 1) + 1));
+        }
+    }
+
+    private static double toDouble(Number value) {
+        return value == null ? Double.NaN : value.doubleValue();
+    }
+
+    /**
+     * 以包装类型读写数组中数据的列表视图
+     */
+    private class ValueList extends AbstractList<Number> {
+
+        @Override
+        public Number get(int index) {
+            double value = NumberColumn.this.get(index);
+            return Double.isNaN(value) ? null : value;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Number set(int index, Number element) {
+            Number previous = get(index);
+            values[index] = toDouble(element);
+            return previous;
+        }
+
+        @Override
+        public void add(int index, Number element) {
+            if (index < 0 || index > size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+            }
+            ensureCapacity(size + 1);
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = toDouble(element);
+            size++;
+            modCount++;
+        }
+
+        @Override
+        public Number remove(int index) {
+            Number previous = get(index);
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+            modCount++;
+            return previous;
+        }
+    }
+}
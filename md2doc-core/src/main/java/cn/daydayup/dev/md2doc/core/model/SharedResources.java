@@ -0,0 +1,183 @@
+package cn.daydayup.dev.md2doc.core.model;
+
+import cn.daydayup.dev.md2doc.core.template.EChartsToWordConverter;
+import cn.daydayup.dev.md2doc.core.util.ImageDownloader;
+import cn.daydayup.dev.md2doc.core.util.ImageOptimizer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @ClassName SharedResources
+ * @Description 多篇文档之间共享的资源：已加载的图片和ECharts配置解析出的图表模型，一批转换共用一个实例
+ *              图片按字节数限制缓存大小，ECharts配置解析结果很小，不做限制
+ * @Author ZhaoYanNing
+ * @Date 2025/11/19 10:20
+ * @Version 1.0
+ */
+public class SharedResources {
+
+    public static final long DEFAULT_MAX_IMAGE_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * 已加载图片的LRU缓存，按图片字节数限制大小；邮件合并等长时间运行的批次不会因图片来源多而占满内存
+     */
+    private final long maxImageBytes;
+    private final Map<String, WordParam> images = new LinkedHashMap<>(16, 0.75f, true);
+    private long imageBytes;
+    private int imageLoads;
+
+    /**
+     * 正在加载的图片，并发请求同一来源时等待第一次加载的结果
+     */
+    private final ConcurrentMap<String, CompletableFuture<WordParam>> loading = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ChartModel> chartModels = new ConcurrentHashMap<>();
+
+    public SharedResources() {
+        this(DEFAULT_MAX_IMAGE_BYTES);
+    }
+
+    /**
+     * @param maxImageBytes 缓存图片的字节数上限，超出后淘汰最久未使用的图片
+     */
+    public SharedResources(long maxImageBytes) {
+        if (maxImageBytes <= 0) {
+            throw new IllegalArgumentException("maxImageBytes 必须大于0");
+        }
+        this.maxImageBytes = maxImageBytes;
+    }
+
+    /**
+     * 获取图片参数，加载失败时同样缓存占位符，避免一批文档重复请求失效的地址
+     * @param imageSource 图片来源（URL 或本地路径）
+     * @return 图片参数或占位符文本
+     */
+    public WordParam image(String imageSource) {
+        return image(imageSource, null);
+    }
+
+    /**
+     * 获取经过优化的图片参数，按来源和优化参数分别缓存
+     * 加载时抛出 Error（如解码大图时内存不足）不缓存：正在等待同一来源的调用方收到包装该异常的 CompletionException，之后的调用重新加载
+     * @param imageSource 图片来源（URL 或本地路径）
+     * @param optimizer 图片优化器，为 null 时嵌入原图
+     * @return 图片参数或占位符文本
+     */
+    public WordParam image(String imageSource, ImageOptimizer optimizer) {
+        return image(imageSource, ImageDownloader.defaultDownloader(), optimizer);
+    }
+
+    /**
+     * 使用指定的下载器获取图片参数；一批转换使用同一个下载器，缓存键不区分下载器
+     * @param imageSource 图片来源（URL 或本地路径）
+     * @param downloader 图片下载器
+     * @param optimizer 图片优化器，为 null 时嵌入原图
+     * @return 图片参数或占位符文本
+     */
+    public WordParam image(String imageSource, ImageDownloader downloader, ImageOptimizer optimizer) {
+        String key = optimizer == null ? imageSource : optimizer.cacheKey() + "|" + imageSource;
+        WordParam cached = cachedImage(key);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<WordParam> created = new CompletableFuture<>();
+        CompletableFuture<WordParam> existing = loading.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing.join();
+        }
+        try {
+            // 检查缓存之后、登记加载之前，其他线程可能刚好加载完成
+            WordParam image = cachedImage(key);
+            if (image == null) {
+                image = WordParam.image(imageSource, downloader, optimizer);
+                cacheImage(key, image);
+            }
+            created.complete(image);
+            return image;
+        } catch (Throwable e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, created);
+        }
+    }
+
+    private synchronized WordParam cachedImage(String key) {
+        return images.get(key);
+    }
+
+    /**
+     * 缓存加载完成的图片；单张图片超过上限时不缓存
+     */
+    private synchronized void cacheImage(String key, WordParam image) {
+        imageLoads++;
+        long size = sizeOf(image);
+        if (size > maxImageBytes) {
+            return;
+        }
+        WordParam previous = images.put(key, image);
+        if (previous != null) {
+            imageBytes -= sizeOf(previous);
+        }
+        imageBytes += size;
+        Iterator<WordParam> eldest = images.values().iterator();
+        while (imageBytes > maxImageBytes && eldest.hasNext()) {
+            imageBytes -= sizeOf(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    private static long sizeOf(WordParam image) {
+        if (image instanceof WordParam.Image picture) {
+            return picture.getData().length;
+        }
+        if (image instanceof WordParam.Text text && text.getMsg() != null) {
+            return 2L * text.getMsg().length();
+        }
+        return 0;
+    }
+
+    /**
+     * 获取ECharts配置解析出的图表模型
+     * @param echartsConfig ECharts配置字符串
+     * @return 图表模型
+     * @throws IOException JSON 解析异常（解析失败的配置不缓存）
+     */
+    public ChartModel chartModel(String echartsConfig) throws IOException {
+        try {
+            return chartModels.computeIfAbsent(echartsConfig, config -> {
+                try {
+                    return EChartsToWordConverter.parseChartModel(config);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return 实际加载的图片次数，被淘汰后再次使用的图片重复计入
+     */
+    public synchronized int imageCount() {
+        return imageLoads;
+    }
+
+    /**
+     * @return 当前缓存图片的字节数
+     */
+    public synchronized long imageBytes() {
+        return imageBytes;
+    }
+
+    public int echartsConfigCount() {
+        return chartModels.size();
+    }
+}
@@ -1,6 +1,7 @@
 package cn.daydayup.dev.md2doc.core.model;
 
 import cn.daydayup.dev.md2doc.core.util.ImageDownloader;
+import cn.daydayup.dev.md2doc.core.util.ImageOptimizer;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.apache.poi.util.Units;
@@ -37,9 +38,35 @@ public sealed interface WordParam {
      * @return WordParam.Image 成功时，WordParam.Text 失败时（占位符）
      */
     static WordParam image(String imageSource) {
+        return image(imageSource, null);
+    }
+
+    /**
+     * 从 URL 或本地路径创建图片参数，嵌入前先经过图片优化
+     *
+     * @param imageSource 图片来源（URL 或本地路径）
+     * @param optimizer 图片优化器，为 null 时嵌入原图
+     * @return WordParam.Image 成功时，WordParam.Text 失败时（占位符）
+     */
+    static WordParam image(String imageSource, ImageOptimizer optimizer) {
+        return image(imageSource, ImageDownloader.defaultDownloader(), optimizer);
+    }
+
+    /**
+     * 使用指定的下载器（HTTP客户端、大小上限、缓存和故障保护）从 URL 或本地路径创建图片参数
+     *
+     * @param imageSource 图片来源（URL 或本地路径）
+     * @param downloader 图片下载器
+     * @param optimizer 图片优化器，为 null 时嵌入原图
+     * @return WordParam.Image 成功时，WordParam.Text 失败时（占位符）
+     */
+    static WordParam image(String imageSource, ImageDownloader downloader, ImageOptimizer optimizer) {
         try {
-            ImageDownloader.DownloadedImage downloadedImage = ImageDownloader.downloadOrReadImage(imageSource);
+            ImageDownloader.DownloadedImage downloadedImage = downloader.load(imageSource);
             if (downloadedImage != null) {
+                if (optimizer != null) {
+                    downloadedImage = optimizer.optimize(downloadedImage);
+                }
                 return Image.fromDownloaded(downloadedImage, imageSource);
             } else {
                 // 下载/读取失败，返回占位符文本
@@ -0,0 +1,140 @@
+package cn.daydayup.dev.md2doc.core.parse;
+
+import cn.daydayup.dev.md2doc.core.model.ChartModel;
+import cn.daydayup.dev.md2doc.core.model.SharedResources;
+import cn.daydayup.dev.md2doc.core.template.EChartsToWordConverter;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * @ClassName MarkdownBlock
+ * @Description Markdown块级元素，由 MarkdownBlockParser 一次解析产生，模板构建和参数提取共用
+ * @Author ZhaoYanNing
+ * @Date 2025/11/3 10:15
+ * @Version 1.0
+ */
+public sealed interface MarkdownBlock {
+
+    /**
+     * 标题
+     */
+    @Getter
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    final class Heading implements MarkdownBlock {
+        private final int level;
+        private final String text;
+    }
+
+    /**
+     * 普通段落（已去除首尾空白）
+     */
+    @Getter
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    final class Paragraph implements MarkdownBlock {
+        private final String text;
+    }
+
+    /**
+     * 列表项，有序列表同样使用圆点符号输出
+     */
+    @Getter
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    final class ListItem implements MarkdownBlock {
+        private final String indent;
+        private final boolean ordered;
+        private final String text;
+    }
+
+    /**
+     * 表格，对应占位符 ${tableN}
+     */
+    @Getter
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    final class Table implements MarkdownBlock {
+        private final int index;
+        private final String markdown;
+        private final List<List<String>> rows;
+
+        public String getKey() {
+            return "table" + index;
+        }
+    }
+
+    /**
+     * ECharts 代码块，对应图表 chartN
+     */
+    @Getter
+    @RequiredArgsConstructor
+    @EqualsAndHashCode
+    final class ECharts implements MarkdownBlock {
+        private final int index;
+        private final String config;
+
+        /**
+         * 解析出的图表模型，构建模板和准备参数共用，每个块只解析一次；不参与块内容的比较
+         */
+        @Getter(AccessLevel.NONE)
+        @EqualsAndHashCode.Exclude
+        private ChartModel chartModel;
+
+        public String getKey() {
+            return "chart" + index;
+        }
+
+        /**
+         * 获取该块的图表模型，首次调用时解析配置
+         * @param resources 共享资源，不为 null 时同一配置在多篇文档之间只解析一次
+         * @return 图表模型
+         * @throws IOException 配置解析失败
+         */
+        public synchronized ChartModel getChartModel(SharedResources resources) throws IOException {
+            if (chartModel == null) {
+                chartModel = resources == null
+                        ? EChartsToWordConverter.parseChartModel(config)
+                        : resources.chartModel(config);
+            }
+            return chartModel;
+        }
+    }
+
+    /**
+     * Mermaid 代码块，对应占位符 ${mermaidN}
+     */
+    @Getter
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    final class Mermaid implements MarkdownBlock {
+        private final int index;
+        private final String content;
+
+        public String getKey() {
+            return "mermaid" + index;
+        }
+    }
+
+    /**
+     * 图片，对应占位符 ${imageN}
+     */
+    @Getter
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    final class Image implements MarkdownBlock {
+        private final int index;
+        private final String altText;
+        private final String source;
+
+        public String getKey() {
+            return "image" + index;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package cn.daydayup.dev.md2doc.core.parse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @ClassName MarkdownBlockParser
+ * @Description 将Markdown内容一次性切分为块级元素列表，图片/表格/图表的序号只在此处分配
+ * @Author ZhaoYanNing
+ * @Date 2025/11/3 10:15
+ * @Version 1.0
+ */
+public class MarkdownBlockParser {
+
+    // 用于匹配标题的正则表达式
+    private static final Pattern HEADER_PATTERN = Pattern.compile("^(#{1,6})\\s+(.*)$", Pattern.MULTILINE);
+    private static final Pattern UNORDERED_LIST_PATTERN = Pattern.compile("^(\\s*)[-+*]\\s+(.*)$");
+    private static final Pattern ORDERED_LIST_PATTERN = Pattern.compile("^(\\s*)(\\d+)\\.\\s+(.*)$");
+    // 用于匹配图片的正则表达式: ![alt](url)
+    private static final Pattern IMAGE_PATTERN = Pattern.compile("!\\[([^\\]]*)\\]\\(([^)]+)\\)");
+    private static final Pattern TABLE_SEPARATOR_PATTERN = Pattern.compile("^\\|?\\s*:?-{2,}[:\\-\\s|]*\\|?\\s*$");
+
+    /**
+     * 解析Markdown内容为块级元素列表
+     * @param markdownContent Markdown内容
+     * @return 按文档顺序排列的块级元素
+     */
+    public static List<MarkdownBlock> parse(String markdownContent) {
+        List<MarkdownBlock> blocks = new ArrayList<>();
+        String[] lines = markdownContent.split("\n");
+        int chartIndex = 1;
+        int mermaidIndex = 1;
+        int tableIndex = 1;
+        int imageIndex = 1;
+
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+
+            // 检查是否为标题
+            Matcher headerMatcher = HEADER_PATTERN.matcher(line);
+            if (headerMatcher.find()) {
+                blocks.add(new MarkdownBlock.Heading(headerMatcher.group(1).length(), headerMatcher.group(2)));
+                continue;
+            }
+
+            // 检查是否为无序列表
+            Matcher unorderedMatcher = UNORDERED_LIST_PATTERN.matcher(line);
+            if (unorderedMatcher.matches()) {
+                blocks.add(new MarkdownBlock.ListItem(unorderedMatcher.group(1), false,
+                        unorderedMatcher.group(2).trim()));
+                continue;
+            }
+
+            // 检查是否为有序列表
+            Matcher orderedMatcher = ORDERED_LIST_PATTERN.matcher(line);
+            if (orderedMatcher.matches()) {
+                blocks.add(new MarkdownBlock.ListItem(orderedMatcher.group(1), true,
+                        orderedMatcher.group(3).trim()));
+                continue;
+            }
+
+            // 检查是否为ECharts图表或Mermaid图表
+            String trimmed = line.trim();
+            if (trimmed.equals("```echarts") || trimmed.equals("```mermaid")) {
+                // 查找代码块的结束位置
+                StringBuilder code = new StringBuilder();
+                i++; // 移动到下一行
+                while (i < lines.length && !lines[i].trim().equals("```")) {
+                    code.append(lines[i]).append("\n");
+                    i++;
+                }
+                if (trimmed.equals("```echarts")) {
+                    blocks.add(new MarkdownBlock.ECharts(chartIndex++, code.toString()));
+                } else {
+                    blocks.add(new MarkdownBlock.Mermaid(mermaidIndex++, code.toString().trim()));
+                }
+                continue;
+            }
+
+            // 检查是否为表格开始
+            if (isTableHeaderLine(lines, i)) {
+                StringBuilder tableMarkdown = new StringBuilder(lines[i]).append("\n");
+                i++;
+                while (i < lines.length && isTableRowLine(lines[i])) {
+                    tableMarkdown.append(lines[i]).append("\n");
+                    i++;
+                }
+                i--; // 回退一行，因为循环会自动增加i
+
+                String markdown = tableMarkdown.toString();
+                blocks.add(new MarkdownBlock.Table(tableIndex++, markdown, MarkdownTableParser.parseTable(markdown)));
+                continue;
+            }
+
+            // 普通段落，行内图片拆分为独立的图片块
+            if (!trimmed.isEmpty()) {
+                Matcher imageMatcher = IMAGE_PATTERN.matcher(line);
+                int textStart = 0;
+                while (imageMatcher.find()) {
+                    addParagraph(blocks, line.substring(textStart, imageMatcher.start()));
+                    blocks.add(new MarkdownBlock.Image(imageIndex++, imageMatcher.group(1), imageMatcher.group(2)));
+                    textStart = imageMatcher.end();
+                }
+                addParagraph(blocks, line.substring(textStart));
+            }
+        }
+        return blocks;
+    }
+
+    private static void addParagraph(List<MarkdownBlock> blocks, String text) {
+        String trimmed = text.trim();
+        if (!trimmed.isEmpty()) {
+            blocks.add(new MarkdownBlock.Paragraph(trimmed));
+        }
+    }
+
+    private static boolean isTableHeaderLine(String[] lines, int index) {
+        if (index >= lines.length) {
+            return false;
+        }
+        String header = lines[index];
+        if (header == null || !header.contains("|")) {
+            return false;
+        }
+
+        // 标准Markdown表格，下一行是分隔线
+        if (index < lines.length - 1) {
+            String separator = lines[index + 1];
+            if (isTableSeparatorLine(separator)) {
+                return true;
+            }
+        }
+
+        // 放宽规则：当前行和下一行都包含竖线，则认为是表格
+        if (index < lines.length - 1) {
+            String nextLine = lines[index + 1];
+            if (nextLine != null && nextLine.contains("|")) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isTableRowLine(String line) {
+        if (line == null) {
+            return false;
+        }
+        String trimmed = line.trim();
+        if (trimmed.isEmpty()) {
+            return false;
+        }
+        return trimmed.contains("|") || isTableSeparatorLine(trimmed);
+    }
+
+    private static boolean isTableSeparatorLine(String line) {
+        if (line == null) {
+            return false;
+        }
+        return TABLE_SEPARATOR_PATTERN.matcher(line.trim()).matches();
+    }
+}
@@ -0,0 +1,67 @@
+package cn.daydayup.dev.md2doc.core.template;
+
+import cn.daydayup.dev.md2doc.core.model.ConversionOptions;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @ClassName ChartTimings
+ * @Description 按内嵌工作簿的生成方式累计每个图表部件的生成耗时（创建图表、绘制系列和写出工作簿），进程内所有转换共用
+ * @Author ZhaoYanNing
+ * @Date 2025/12/12 11:05
+ * @Version 1.0
+ */
+public final class ChartTimings {
+
+    private static final Map<ConversionOptions.ChartWorkbook, Counter> COUNTERS =
+            new EnumMap<>(ConversionOptions.ChartWorkbook.class);
+
+    static {
+        for (ConversionOptions.ChartWorkbook mode : ConversionOptions.ChartWorkbook.values()) {
+            COUNTERS.put(mode, new Counter());
+        }
+    }
+
+    private ChartTimings() {
+    }
+
+    static void record(ConversionOptions.ChartWorkbook mode, long nanos) {
+        Counter counter = COUNTERS.get(mode);
+        counter.charts.increment();
+        counter.totalNanos.add(nanos);
+        counter.maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * @return 各生成方式的统计，尚未生成过图表的方式计数为 0
+     */
+    public static Map<ConversionOptions.ChartWorkbook, Stats> stats() {
+        Map<ConversionOptions.ChartWorkbook, Stats> stats = new EnumMap<>(ConversionOptions.ChartWorkbook.class);
+        COUNTERS.forEach((mode, counter) -> {
+            long charts = counter.charts.sum();
+            long totalNanos = counter.totalNanos.sum();
+            stats.put(mode, new Stats(charts, totalNanos / 1_000_000.0,
+                    charts == 0 ? 0 : totalNanos / 1_000_000.0 / charts, counter.maxNanos.get() / 1_000_000.0));
+        });
+        return stats;
+    }
+
+    private static class Counter {
+        private final LongAdder charts = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+    }
+
+    /**
+     * 图表生成统计
+     * @param charts 生成的图表数
+     * @param totalMillis 累计耗时（毫秒）
+     * @param averageMillis 每个图表的平均耗时（毫秒）
+     * @param maxMillis 单个图表的最长耗时（毫秒）
+     */
+    public record Stats(long charts, double totalMillis, double averageMillis, double maxMillis) {
+    }
+}
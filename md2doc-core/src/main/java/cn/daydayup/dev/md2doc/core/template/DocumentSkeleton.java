@@ -0,0 +1,138 @@
+package cn.daydayup.dev.md2doc.core.template;
+
+import lombok.Getter;
+import org.apache.poi.xwpf.usermodel.XWPFAbstractNum;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFHeaderFooter;
+import org.apache.poi.xwpf.usermodel.XWPFNumbering;
+import org.apache.poi.xwpf.usermodel.XWPFStyle;
+import org.apache.poi.xwpf.usermodel.XWPFStyles;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTAbstractNum;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTStyle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @ClassName DocumentSkeleton
+ * @Description 文档骨架：正文为空、已包含标题样式和项目符号编号的Word包，构建一次后按篇克隆
+ * @Author ZhaoYanNing
+ * @Date 2025/11/14 9:50
+ * @Version 1.0
+ */
+public class DocumentSkeleton {
+
+    private static volatile DocumentSkeleton defaultSkeleton;
+
+    /**
+     * 骨架包内容（.docx），流式后端直接复用
+     */
+    @Getter
+    private final byte[] packageBytes;
+
+    /**
+     * 骨架中正文列表使用的项目符号编号ID
+     */
+    @Getter
+    private final BigInteger bulletNumId;
+
+    /**
+     * 是否来自参考文档：参考文档的主题、页眉页脚等部件只能通过解析骨架包克隆
+     */
+    private final boolean reference;
+
+    /**
+     * 页眉页脚中是否含有 ${...} 占位符，含有时流式后端需替换后再输出骨架包
+     */
+    @Getter
+    private final boolean headerFooterPlaceholders;
+
+    /**
+     * 预构建的标题样式和项目符号编号定义，默认骨架按篇复制到 POI 空白文档中，比重新解析骨架包快得多
+     */
+    private final List<CTStyle> styles = new ArrayList<>();
+    private final CTAbstractNum bulletAbstractNum;
+
+    private DocumentSkeleton(XWPFDocument document, BigInteger bulletNumId, boolean reference) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        document.write(out);
+        this.packageBytes = out.toByteArray();
+        this.bulletNumId = bulletNumId;
+        this.reference = reference;
+        this.headerFooterPlaceholders = document.getRelations().stream()
+                .anyMatch(part -> part instanceof XWPFHeaderFooter headerFooter && headerFooter.getText().contains("${"));
+        for (int level = 1; level <= 6; level++) {
+            XWPFStyle style = document.getStyles().getStyle("Heading" + level);
+            if (style != null) {
+                styles.add((CTStyle) style.getCTStyle().copy());
+            }
+        }
+        this.bulletAbstractNum = (CTAbstractNum) document.getNumbering()
+                .getAbstractNum(document.getNumbering().getAbstractNumID(bulletNumId))
+                .getCTAbstractNum().copy();
+    }
+
+    /**
+     * 默认骨架：POI 空白文档加上内置的标题样式，首次使用时构建并缓存
+     */
+    public static DocumentSkeleton defaultSkeleton() {
+        DocumentSkeleton skeleton = defaultSkeleton;
+        if (skeleton == null) {
+            synchronized (DocumentSkeleton.class) {
+                skeleton = defaultSkeleton;
+                if (skeleton == null) {
+                    try (XWPFDocument document = new XWPFDocument()) {
+                        skeleton = new DocumentSkeleton(document, DynamicWordDocumentCreator.prepareSkeleton(document), false);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("构建默认文档骨架失败", e);
+                    }
+                    defaultSkeleton = skeleton;
+                }
+            }
+        }
+        return skeleton;
+    }
+
+    /**
+     * 以参考文档构建骨架：保留其样式、编号、主题、页面设置和页眉页脚，丢弃正文
+     * 参考文档未定义的标题样式使用内置样式补齐；应在启动时构建一次并复用
+     * @param referenceDocx 参考 .docx 输入流（由调用方负责关闭）
+     * @return 文档骨架
+     */
+    public static DocumentSkeleton fromReferenceDocx(InputStream referenceDocx) throws IOException {
+        try (XWPFDocument document = new XWPFDocument(referenceDocx)) {
+            for (int i = document.getBodyElements().size() - 1; i >= 0; i--) {
+                document.removeBodyElement(i);
+            }
+            return new DocumentSkeleton(document, DynamicWordDocumentCreator.prepareSkeleton(document), true);
+        }
+    }
+
+    /**
+     * 克隆出一篇新文档，由调用方负责关闭
+     * @return 基于骨架的空白文档
+     */
+    public XWPFDocument newDocument() {
+        if (reference) {
+            try {
+                return new XWPFDocument(new ByteArrayInputStream(packageBytes));
+            } catch (IOException e) {
+                throw new UncheckedIOException("克隆文档骨架失败", e);
+            }
+        }
+        XWPFDocument document = new XWPFDocument();
+        XWPFStyles documentStyles = document.createStyles();
+        for (CTStyle style : styles) {
+            documentStyles.addStyle(new XWPFStyle((CTStyle) style.copy()));
+        }
+        XWPFNumbering numbering = document.createNumbering();
+        numbering.addNum(numbering.addAbstractNum(new XWPFAbstractNum((CTAbstractNum) bulletAbstractNum.copy())));
+        return document;
+    }
+}
@@ -1,8 +1,18 @@
 package cn.daydayup.dev.md2doc.core.template;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import cn.daydayup.dev.md2doc.core.generate.ChartWorkbookWriter;
+import cn.daydayup.dev.md2doc.core.generate.DoubleArrayDataSource;
+import cn.daydayup.dev.md2doc.core.generate.PlaceholderIndex;
+import cn.daydayup.dev.md2doc.core.model.ChartModel;
+import cn.daydayup.dev.md2doc.core.model.ConversionOptions;
+import cn.daydayup.dev.md2doc.core.model.SharedResources;
+import cn.daydayup.dev.md2doc.core.parse.MarkdownBlock;
+import cn.daydayup.dev.md2doc.core.parse.MarkdownBlockParser;
+import cn.daydayup.dev.md2doc.core.util.ChartDownsampler;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.util.Units;
 import org.apache.poi.xddf.usermodel.chart.*;
 import org.apache.poi.xwpf.usermodel.*;
@@ -12,12 +22,13 @@ import org.openxmlformats.schemas.wordprocessingml.x2006.main.*;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.Stack;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @ClassName DynamicWordDocumentCreator
@@ -27,13 +38,12 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @Version 1.0
  */
 public class DynamicWordDocumentCreator {
+
+    private static final Logger logger = LogManager.getLogger(DynamicWordDocumentCreator.class);
     
-    private static final Pattern UNORDERED_LIST_PATTERN = Pattern.compile("^(\\s*)[-+*]\\s+(.*)$");
-    private static final Pattern ORDERED_LIST_PATTERN = Pattern.compile("^(\\s*)(\\d+)\\.\\s+(.*)$");
     private static final Pattern INLINE_STYLE_PATTERN = Pattern.compile("(\\*\\*.+?\\*\\*|__.+?__|\\*[^*]+?\\*|_[^_]+?_|`[^`]+?`)");
     private static final int DEFAULT_FONT_SIZE = 12;
     private static final String DEFAULT_FONT_FAMILY = "仿宋";
-    private static final AtomicInteger NUMBERING_SEED = new AtomicInteger(1);
 
     private static class NumberingCache {
         private BigInteger bulletNumId;
@@ -251,7 +261,7 @@ public class DynamicWordDocumentCreator {
             numbering = document.createNumbering();
         }
 
-        BigInteger abstractNumId = BigInteger.valueOf(NUMBERING_SEED.getAndIncrement());
+        BigInteger abstractNumId = nextAbstractNumId(numbering);
         CTAbstractNum ctAbstractNum = CTAbstractNum.Factory.newInstance();
         ctAbstractNum.setAbstractNumId(abstractNumId);
 
@@ -274,13 +284,27 @@ public class DynamicWordDocumentCreator {
         return numbering.addNum(abstractId);
     }
 
+    /**
+     * 取已有抽象编号ID的最大值加一，避免与参考文档中的编号定义冲突
+     */
+    private static BigInteger nextAbstractNumId(XWPFNumbering numbering) {
+        BigInteger next = BigInteger.ONE;
+        for (XWPFAbstractNum abstractNum : numbering.getAbstractNums()) {
+            BigInteger id = abstractNum.getCTAbstractNum().getAbstractNumId();
+            if (id != null && id.compareTo(next) >= 0) {
+                next = id.add(BigInteger.ONE);
+            }
+        }
+        return next;
+    }
+
     private static BigInteger createOrderedNumbering(XWPFDocument document) {
         XWPFNumbering numbering = document.getNumbering();
         if (numbering == null) {
             numbering = document.createNumbering();
         }
 
-        BigInteger abstractNumId = BigInteger.valueOf(NUMBERING_SEED.getAndIncrement());
+        BigInteger abstractNumId = nextAbstractNumId(numbering);
         CTAbstractNum ctAbstractNum = CTAbstractNum.Factory.newInstance();
         ctAbstractNum.setAbstractNumId(abstractNumId);
 
@@ -367,89 +391,131 @@ public class DynamicWordDocumentCreator {
         }
     }
 
-    private static boolean isTableHeaderLine(String[] lines, int index) {
-        if (index >= lines.length) {
-            return false;
-        }
-        String header = lines[index];
-        if (header == null || !header.contains("|")) {
-            return false;
-        }
-
-        // 标准Markdown表格，下一行是分隔线
-        if (index < lines.length - 1) {
-            String separator = lines[index + 1];
-            if (isTableSeparatorLine(separator)) {
-                return true;
+    /**
+     * 根据Markdown内容创建更完整的模板
+     * @param filePath 输出文件路径
+     * @param markdownContent Markdown内容
+     * @throws IOException IO异常
+     * @throws InvalidFormatException 格式异常
+     */
+    public static void createCompleteTemplateFromMarkdown(String filePath, String markdownContent)
+            throws IOException, InvalidFormatException {
+        try (XWPFDocument document = createCompleteTemplateFromMarkdown(markdownContent)) {
+            // 保存文档
+            try (FileOutputStream out = new FileOutputStream(filePath)) {
+                document.write(out);
             }
         }
+    }
 
-        // 放宽规则：当前行和下一行都包含竖线，则认为是表格
-        if (index < lines.length - 1) {
-            String nextLine = lines[index + 1];
-            if (nextLine != null && nextLine.contains("|")) {
-                return true;
-            }
-        }
+    /**
+     * 根据Markdown内容在内存中创建完整模板，不落盘
+     * 返回的文档可直接交给 PoiWordGenerator 进行占位符替换，由调用方负责关闭
+     * @param markdownContent Markdown内容
+     * @return 包含占位符的Word文档对象
+     */
+    public static XWPFDocument createCompleteTemplateFromMarkdown(String markdownContent) {
+        return createCompleteTemplateFromMarkdown(MarkdownBlockParser.parse(markdownContent));
+    }
 
-        return false;
+    /**
+     * 根据已解析的Markdown块在内存中创建完整模板
+     * @param blocks MarkdownBlockParser 解析出的块级元素
+     * @return 包含占位符的Word文档对象
+     */
+    public static XWPFDocument createCompleteTemplateFromMarkdown(List<MarkdownBlock> blocks) {
+        return createCompleteTemplateFromMarkdown(blocks, DocumentSkeleton.defaultSkeleton(), null);
     }
 
-    private static boolean isTableRowLine(String line) {
-        if (line == null) {
-            return false;
-        }
-        String trimmed = line.trim();
-        if (trimmed.isEmpty()) {
-            return false;
-        }
-        return trimmed.contains("|") || isTableSeparatorLine(trimmed);
+    /**
+     * 基于文档骨架创建完整模板，样式和列表编号直接取自骨架，不再逐篇构建
+     * @param blocks MarkdownBlockParser 解析出的块级元素
+     * @param skeleton 文档骨架
+     * @param resources 共享资源（已解析的ECharts配置），可为 null
+     * @return 包含占位符的Word文档对象
+     */
+    public static XWPFDocument createCompleteTemplateFromMarkdown(List<MarkdownBlock> blocks, DocumentSkeleton skeleton,
+                                                                 SharedResources resources) {
+        return createCompleteTemplateFromMarkdown(blocks, skeleton, resources, null);
     }
 
-    private static boolean isTableSeparatorLine(String line) {
-        if (line == null) {
-            return false;
-        }
-        String trimmed = line.trim();
-        return trimmed.matches("^\\|?\\s*:?-{2,}[:\\-\\s|]*\\|?\\s*$");
+    /**
+     * 基于文档骨架创建完整模板，并记录每个占位符所在的段落
+     * @param blocks MarkdownBlockParser 解析出的块级元素
+     * @param skeleton 文档骨架
+     * @param resources 共享资源（已解析的ECharts配置），可为 null
+     * @param index 占位符索引，构建过程中写入，可为 null
+     * @return 包含占位符的Word文档对象
+     */
+    public static XWPFDocument createCompleteTemplateFromMarkdown(List<MarkdownBlock> blocks, DocumentSkeleton skeleton,
+                                                                 SharedResources resources, PlaceholderIndex index) {
+        XWPFDocument document = skeleton.newDocument();
+        createTemplateHeader(document, index);
+
+        // 根据Markdown块创建相应的Word结构
+        parseAndCreateDocumentStructure(document, blocks, new BlockWriter(skeleton.getBulletNumId(), resources, index));
+        return document;
     }
+
     /**
-     * 根据Markdown内容创建更完整的模板
-     * @param filePath 输出文件路径
-     * @param markdownContent Markdown内容
-     * @throws IOException IO异常
-     * @throws InvalidFormatException 格式异常
+     * 按转换参数创建完整模板：使用参数中的骨架和共享资源，图表按参数降采样
+     * @param blocks MarkdownBlockParser 解析出的块级元素
+     * @param options 转换参数
+     * @param index 占位符索引，构建过程中写入，可为 null
+     * @return 包含占位符的Word文档对象
      */
-    public static void createCompleteTemplateFromMarkdown(String filePath, String markdownContent)
-            throws IOException, InvalidFormatException {
-        try (XWPFDocument document = new XWPFDocument()) {
-            // 创建标题样式
-            createHeaderStyles(document);
-            
-            // 创建标题段落
-            XWPFParagraph titleParagraph = document.createParagraph();
-            titleParagraph.setAlignment(ParagraphAlignment.CENTER);
-            // 设置标题段落样式
-            setTitleParagraphStyle(titleParagraph);
-            
-            XWPFRun titleRun = titleParagraph.createRun();
-            titleRun.setText("${title}");
-            titleRun.setBold(true);
-            titleRun.setFontSize(16); // 三号字体
-            titleRun.setFontFamily("仿宋");
+    public static XWPFDocument createCompleteTemplateFromMarkdown(List<MarkdownBlock> blocks, ConversionOptions options,
+                                                                 PlaceholderIndex index) {
+        DocumentSkeleton skeleton = options.getSkeleton();
+        XWPFDocument document = skeleton.newDocument();
+        createTemplateHeader(document, index);
+        parseAndCreateDocumentStructure(document, blocks, new BlockWriter(skeleton.getBulletNumId(), options, index));
+        return document;
+    }
 
-            // 添加一个空行
-            XWPFParagraph emptyParagraph = document.createParagraph();
-            setDefaultParagraphStyle(emptyParagraph);
+    /**
+     * 准备文档骨架：补齐缺少的标题样式，并创建正文列表使用的项目符号编号
+     * 参考文档中已定义的同名标题样式保持不变
+     * @param document 去除正文后的文档
+     * @return 项目符号编号ID
+     */
+    static BigInteger prepareSkeleton(XWPFDocument document) {
+        createHeaderStyles(document);
+        return createBulletNumbering(document);
+    }
 
-            // 解析Markdown内容并创建相应的Word结构
-            parseAndCreateDocumentStructure(document, markdownContent);
+    /**
+     * 创建模板的固定开头：${title} 标题段落和一个空行，标题样式由文档骨架提供
+     * @param document Word文档对象
+     */
+    public static void createTemplateHeader(XWPFDocument document) {
+        createTemplateHeader(document, null);
+    }
 
-            // 保存文档
-            try (FileOutputStream out = new FileOutputStream(filePath)) {
-                document.write(out);
-            }
+    /**
+     * 创建模板的固定开头，并将 ${title} 所在的run记入占位符索引
+     * @param document Word文档对象
+     * @param index 占位符索引，可为 null
+     */
+    public static void createTemplateHeader(XWPFDocument document, PlaceholderIndex index) {
+        // 创建标题段落
+        XWPFParagraph titleParagraph = document.createParagraph();
+        titleParagraph.setAlignment(ParagraphAlignment.CENTER);
+        // 设置标题段落样式
+        setTitleParagraphStyle(titleParagraph);
+
+        XWPFRun titleRun = titleParagraph.createRun();
+        titleRun.setText("${title}");
+        titleRun.setBold(true);
+        titleRun.setFontSize(16); // 三号字体
+        titleRun.setFontFamily("仿宋");
+        if (index != null) {
+            index.add("title", titleRun);
         }
+
+        // 添加一个空行
+        XWPFParagraph emptyParagraph = document.createParagraph();
+        setDefaultParagraphStyle(emptyParagraph);
     }
     
     /**
@@ -489,6 +555,10 @@ public class DynamicWordDocumentCreator {
      */
     private static void createHeadingStyle(XWPFStyles styles, String styleId, int headingLevel,
                                            int fontSize, String color, String fontName) {
+        if (styles.styleExist(styleId)) {
+            return;
+        }
+
         // 创建样式
         CTStyle ctStyle = CTStyle.Factory.newInstance();
         ctStyle.setStyleId(styleId);
@@ -599,46 +669,125 @@ public class DynamicWordDocumentCreator {
     }
     
     /**
-     * 解析Markdown内容并创建Word文档结构
+     * 根据Markdown块创建Word文档结构
      * @param document Word文档对象
-     * @param markdownContent Markdown内容
+     * @param blocks Markdown块级元素
+     * @param blockWriter 块写入器
      */
-    private static void parseAndCreateDocumentStructure(XWPFDocument document, String markdownContent) {
-        // 用于匹配标题的正则表达式
-        Pattern headerPattern = Pattern.compile("^(#{1,6})\\s+(.*)$", Pattern.MULTILINE);
-        // 用于匹配图片的正则表达式: ![alt](url)
-        Pattern imagePattern = Pattern.compile("!\\[([^\\]]*)\\]\\(([^)]+)\\)");
-
-        String[] lines = markdownContent.split("\n");
-        int chartIndex = 1;
-        int mermaidIndex = 1;
-        int tableIndex = 1;
-        int imageIndex = 1;
+    private static void parseAndCreateDocumentStructure(XWPFDocument document, List<MarkdownBlock> blocks,
+                                                        BlockWriter blockWriter) {
+        for (MarkdownBlock block : blocks) {
+            blockWriter.write(document, block);
+        }
+    }
 
+    /**
+     * 逐块写入Word结构，持有标题编号和列表编号状态
+     * 同一个实例需按文档顺序写入所有块，才能保证标题编号连续
+     */
+    public static class BlockWriter {
         // 初始化标题编号器
-        HeaderNumbering headerNumbering = new HeaderNumbering();
-        NumberingCache numberingCache = new NumberingCache();
-        
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i];
-            
-            // 检查是否为标题
-            Matcher headerMatcher = headerPattern.matcher(line);
-            if (headerMatcher.find()) {
-                int level = headerMatcher.group(1).length();
-                String title = headerMatcher.group(2);
-                
+        private final HeaderNumbering headerNumbering = new HeaderNumbering();
+        private final NumberingCache numberingCache = new NumberingCache();
+        private final SharedResources resources;
+        private final ChartDownsampler chartDownsampler;
+        private final ConversionOptions.ChartWorkbook chartWorkbook;
+        private final PlaceholderIndex placeholderIndex;
+
+        public BlockWriter() {
+            this(null, null);
+        }
+
+        /**
+         * @param bulletNumId 文档骨架中已创建的项目符号编号ID，为 null 时按需创建
+         * @param resources 共享资源（已解析的ECharts配置），可为 null
+         */
+        public BlockWriter(BigInteger bulletNumId, SharedResources resources) {
+            this(bulletNumId, resources, null);
+        }
+
+        /**
+         * @param bulletNumId 文档骨架中已创建的项目符号编号ID，为 null 时按需创建
+         * @param resources 共享资源（已解析的ECharts配置），可为 null
+         * @param placeholderIndex 写入占位符时记录其所在的run，可为 null
+         */
+        public BlockWriter(BigInteger bulletNumId, SharedResources resources, PlaceholderIndex placeholderIndex) {
+            this(bulletNumId, resources, null, ConversionOptions.ChartWorkbook.XSSF, placeholderIndex);
+        }
+
+        /**
+         * @param bulletNumId 文档骨架中已创建的项目符号编号ID，为 null 时按需创建
+         * @param options 转换参数，取其中的共享资源、图表降采样器和内嵌工作簿的生成方式
+         * @param placeholderIndex 写入占位符时记录其所在的run，可为 null
+         */
+        public BlockWriter(BigInteger bulletNumId, ConversionOptions options, PlaceholderIndex placeholderIndex) {
+            this(bulletNumId, options.getSharedResources(), options.getChartDownsampler(), options.getChartWorkbook(),
+                    placeholderIndex);
+        }
+
+        private BlockWriter(BigInteger bulletNumId, SharedResources resources, ChartDownsampler chartDownsampler,
+                            ConversionOptions.ChartWorkbook chartWorkbook, PlaceholderIndex placeholderIndex) {
+            numberingCache.bulletNumId = bulletNumId;
+            this.resources = resources;
+            this.chartDownsampler = chartDownsampler;
+            this.chartWorkbook = chartWorkbook == null ? ConversionOptions.ChartWorkbook.XSSF : chartWorkbook;
+            this.placeholderIndex = placeholderIndex;
+        }
+
+        /**
+         * 将单个Markdown块写入文档末尾
+         * @param document Word文档对象
+         * @param block Markdown块
+         */
+        public void write(XWPFDocument document, MarkdownBlock block) {
+            write(document, block, prepare(document, block));
+        }
+
+        /**
+         * 推进块之间共享的状态，并返回该块渲染结果所依赖的上下文
+         * 标题返回其编号，列表项返回项目符号的编号ID，图表返回降采样参数和非默认的内嵌工作簿生成方式，其余块与前文无关，返回空串
+         * 即使该块的渲染结果来自缓存，也必须调用本方法，保证后续标题编号和列表编号正确
+         * @param document 列表编号所在的Word文档对象
+         * @param block Markdown块
+         * @return 块上下文
+         */
+        public String prepare(XWPFDocument document, MarkdownBlock block) {
+            if (block instanceof MarkdownBlock.Heading heading) {
                 // 更新标题编号
-                headerNumbering.enterLevel(level);
-                String headerNumber = headerNumbering.getNumber(level);
-                
+                headerNumbering.enterLevel(heading.getLevel());
+                return headerNumbering.getNumber(heading.getLevel());
+            }
+            if (block instanceof MarkdownBlock.ListItem) {
+                return getOrCreateBulletNumId(document, numberingCache).toString();
+            }
+            if (block instanceof MarkdownBlock.ECharts) {
+                String context = chartDownsampler == null ? "" : chartDownsampler.cacheKey();
+                if (chartWorkbook != ConversionOptions.ChartWorkbook.XSSF) {
+                    context = context.isEmpty() ? "workbook:" + chartWorkbook : context + ";workbook:" + chartWorkbook;
+                }
+                return context;
+            }
+            return "";
+        }
+
+        /**
+         * 按 prepare 返回的上下文将单个Markdown块写入文档末尾
+         * @param document Word文档对象
+         * @param block Markdown块
+         * @param context prepare 返回的块上下文
+         */
+        public void write(XWPFDocument document, MarkdownBlock block, String context) {
+            if (block instanceof MarkdownBlock.Heading heading) {
+                int level = heading.getLevel();
+                String headerNumber = context;
+
                 XWPFParagraph headerParagraph = document.createParagraph();
                 setHeaderStyle(headerParagraph, level);
                 XWPFRun headerRun = headerParagraph.createRun();
-                headerRun.setText(headerNumber + title);
+                headerRun.setText(headerNumber + heading.getText());
                 headerRun.setBold(true);
                 headerRun.setFontFamily("仿宋");
-                
+
                 // 根据标题级别设置字体大小
                 int fontSize = 16; // 默认H3（三号字体）
                 switch (level) {
@@ -650,162 +799,73 @@ public class DynamicWordDocumentCreator {
                     case 6: fontSize = 12; break; // H6
                 }
                 headerRun.setFontSize(fontSize);
-                
-                continue;
-            }
-            
-            // 检查是否为无序列表
-            Matcher unorderedMatcher = UNORDERED_LIST_PATTERN.matcher(line);
-            if (unorderedMatcher.matches()) {
-                String indent = unorderedMatcher.group(1);
-                String itemContent = unorderedMatcher.group(2).trim();
-
+            } else if (block instanceof MarkdownBlock.ListItem listItem) {
+                // 有序列表统一改为圆点符号，避免跨层级连续编号
                 XWPFParagraph listParagraph = document.createParagraph();
                 setDefaultParagraphStyle(listParagraph);
                 clearFirstLineIndent(listParagraph);
 
-                int level = calculateListLevel(indent);
-                BigInteger numId = getOrCreateBulletNumId(document, numberingCache);
-                listParagraph.setNumID(numId);
+                int level = calculateListLevel(listItem.getIndent());
+                listParagraph.setNumID(new BigInteger(context));
                 listParagraph.setNumILvl(BigInteger.valueOf(level));
 
-                applyInlineStyles(listParagraph, itemContent, DEFAULT_FONT_SIZE);
-                continue;
-            }
-
-            // 检查是否为有序列表 - 统一改为圆点符号避免跨层级连续编号
-            Matcher orderedMatcher = ORDERED_LIST_PATTERN.matcher(line);
-            if (orderedMatcher.matches()) {
-                String indent = orderedMatcher.group(1);
-                String itemContent = orderedMatcher.group(3).trim();
-
-                XWPFParagraph listParagraph = document.createParagraph();
-                setDefaultParagraphStyle(listParagraph);
-                clearFirstLineIndent(listParagraph);
-
-                int level = calculateListLevel(indent);
-                // 统一使用圆点符号，避免跨层级连续编号问题
-                BigInteger numId = getOrCreateBulletNumId(document, numberingCache);
-                listParagraph.setNumID(numId);
-                listParagraph.setNumILvl(BigInteger.valueOf(level));
-
-                applyInlineStyles(listParagraph, itemContent, DEFAULT_FONT_SIZE);
-                continue;
-            }
-
-            // 检查是否为ECharts图表
-            if (line.trim().equals("```echarts")) {
-                // 查找图表代码块的结束位置
-                StringBuilder chartCode = new StringBuilder();
-                i++; // 移动到下一行
-                while (i < lines.length && !lines[i].trim().equals("```")) {
-                    chartCode.append(lines[i]).append("\n");
-                    i++;
-                }
-
+                applyInlineStyles(listParagraph, listItem.getText(), DEFAULT_FONT_SIZE);
+            } else if (block instanceof MarkdownBlock.ECharts echarts) {
                 // 创建图表占位符
                 XWPFParagraph chartTitleParagraph = document.createParagraph();
                 chartTitleParagraph.setAlignment(ParagraphAlignment.CENTER); // 设置居中对齐
                 setDefaultParagraphStyle(chartTitleParagraph); // 图表标题使用默认段落样式
                 XWPFRun chartTitleRun = chartTitleParagraph.createRun();
-                chartTitleRun.setText("图表 " + chartIndex + "：");
+                chartTitleRun.setText("图表 " + echarts.getIndex() + "：");
                 chartTitleRun.setBold(true);
                 chartTitleRun.setFontFamily("仿宋");
 
                 // 创建实际的图表对象
                 try {
-                    createChartInDocument(document, "chart" + chartIndex, chartCode.toString());
+                    createChartInDocument(document, echarts, resources, chartDownsampler, chartWorkbook);
                 } catch (Exception e) {
                     // 如果创建图表失败，至少添加占位符
                     XWPFParagraph chartParagraph = document.createParagraph();
                     chartParagraph.setAlignment(ParagraphAlignment.CENTER);
                     setDefaultParagraphStyle(chartParagraph);
                     XWPFRun chartRun = chartParagraph.createRun();
-                    chartRun.setText("${chart" + chartIndex + "}");
-                }
-
-                chartIndex++;
-                continue;
-            }
-
-            // 检查是否为 Mermaid 图表
-            if (line.trim().equals("```mermaid")) {
-                // 查找 Mermaid 代码块的结束位置
-                StringBuilder mermaidCode = new StringBuilder();
-                i++; // 移动到下一行
-                while (i < lines.length && !lines[i].trim().equals("```")) {
-                    mermaidCode.append(lines[i]).append("\n");
-                    i++;
+                    chartRun.setText("${" + echarts.getKey() + "}");
+                    indexPlaceholder(echarts.getKey(), chartRun);
                 }
-
+            } else if (block instanceof MarkdownBlock.Mermaid mermaid) {
                 // 创建 Mermaid 占位符
                 XWPFParagraph mermaidParagraph = document.createParagraph();
                 setDefaultParagraphStyle(mermaidParagraph);
                 XWPFRun mermaidRun = mermaidParagraph.createRun();
-                mermaidRun.setText("${mermaid" + mermaidIndex + "}");
-
-                mermaidIndex++;
-                continue;
-            }
-
-            // 检查是否为表格开始
-            if (isTableHeaderLine(lines, i)) {
-                StringBuilder tableMarkdown = new StringBuilder(lines[i]).append("\n");
-                i++;
-                while (i < lines.length && isTableRowLine(lines[i])) {
-                    tableMarkdown.append(lines[i]).append("\n");
-                    i++;
-                }
-                i--; // 回退一行，因为循环会自动增加i
-
+                mermaidRun.setText("${" + mermaid.getKey() + "}");
+                indexPlaceholder(mermaid.getKey(), mermaidRun);
+            } else if (block instanceof MarkdownBlock.Table table) {
                 // 创建表格占位符（不添加表格标题）
                 XWPFParagraph tableParagraph = document.createParagraph();
                 tableParagraph.setAlignment(ParagraphAlignment.CENTER); // 设置居中对齐
                 setDefaultParagraphStyle(tableParagraph);
                 XWPFRun tableRun = tableParagraph.createRun();
-                tableRun.setText("${table" + tableIndex + "}");
-
-                tableIndex++;
-                continue;
+                tableRun.setText("${" + table.getKey() + "}");
+                indexPlaceholder(table.getKey(), tableRun);
+            } else if (block instanceof MarkdownBlock.Image image) {
+                // 创建图片占位符段落
+                XWPFParagraph imageParagraph = document.createParagraph();
+                imageParagraph.setAlignment(ParagraphAlignment.CENTER); // 图片居中
+                setDefaultParagraphStyle(imageParagraph);
+                XWPFRun imageRun = imageParagraph.createRun();
+                imageRun.setText("${" + image.getKey() + "}");
+                indexPlaceholder(image.getKey(), imageRun);
+            } else if (block instanceof MarkdownBlock.Paragraph paragraph) {
+                // 普通文本行
+                XWPFParagraph textParagraph = document.createParagraph();
+                setDefaultParagraphStyle(textParagraph); // 内容段落使用默认样式
+                applyInlineStyles(textParagraph, paragraph.getText(), DEFAULT_FONT_SIZE);
             }
-            
-            // 普通段落
-            if (!line.trim().isEmpty()) {
-                // 检查行中是否包含图片
-                Matcher imageMatcher = imagePattern.matcher(line);
-                if (imageMatcher.find()) {
-                    // 处理包含图片的行
-                    String beforeImage = line.substring(0, imageMatcher.start());
-                    String afterImage = line.substring(imageMatcher.end());
-
-                    // 如果图片前有文本，创建段落
-                    if (!beforeImage.trim().isEmpty()) {
-                        XWPFParagraph paragraph = document.createParagraph();
-                        setDefaultParagraphStyle(paragraph);
-                        applyInlineStyles(paragraph, beforeImage.trim(), DEFAULT_FONT_SIZE);
-                    }
-
-                    // 创建图片占位符段落
-                    XWPFParagraph imageParagraph = document.createParagraph();
-                    imageParagraph.setAlignment(ParagraphAlignment.CENTER); // 图片居中
-                    setDefaultParagraphStyle(imageParagraph);
-                    XWPFRun imageRun = imageParagraph.createRun();
-                    imageRun.setText("${image" + imageIndex + "}");
-
-                    imageIndex++;
+        }
 
-                    // 如果图片后有文本，创建段落
-                    if (!afterImage.trim().isEmpty()) {
-                        XWPFParagraph paragraph = document.createParagraph();
-                        setDefaultParagraphStyle(paragraph);
-                        applyInlineStyles(paragraph, afterImage.trim(), DEFAULT_FONT_SIZE);
-                    }
-                } else {
-                    // 普通文本行
-                    XWPFParagraph paragraph = document.createParagraph();
-                    setDefaultParagraphStyle(paragraph); // 内容段落使用默认样式
-                    applyInlineStyles(paragraph, line.trim(), DEFAULT_FONT_SIZE);
-                }
+        private void indexPlaceholder(String key, XWPFRun run) {
+            if (placeholderIndex != null) {
+                placeholderIndex.add(key, run);
             }
         }
     }
@@ -842,14 +902,29 @@ public class DynamicWordDocumentCreator {
     }
     
     /**
-     * 在文档中创建一个图表，根据ECharts配置创建相应类型的图表
+     * 在文档中创建一个图表，根据ECharts块解析出的图表模型创建相应类型的图表
      * @param document Word文档对象
-     * @param chartTitle 图表标题
-     * @param echartsConfig ECharts配置
+     * @param echarts ECharts块
+     * @param resources 共享资源，可为 null
+     * @param downsampler 图表降采样器，可为 null
+     * @param workbook 内嵌工作簿的生成方式
      */
-    private static void createChartInDocument(XWPFDocument document, String chartTitle, String echartsConfig) throws IOException, InvalidFormatException {
-        // 根据ECharts配置创建相应类型的图表
-        createChartBasedOnEChartsConfig(document, chartTitle, echartsConfig);
+    private static void createChartInDocument(XWPFDocument document, MarkdownBlock.ECharts echarts,
+                                              SharedResources resources, ChartDownsampler downsampler,
+                                              ConversionOptions.ChartWorkbook workbook)
+            throws IOException, InvalidFormatException {
+        ChartModel model;
+        try {
+            model = echarts.getChartModel(resources);
+        } catch (IOException e) {
+            // 配置无法解析时创建示例图表
+            createSampleChart(document, echarts.getKey());
+            return;
+        }
+        if (downsampler != null) {
+            model = downsampler.downsample(model);
+        }
+        createChartFromModel(document, echarts.getKey(), model, workbook);
 
         // 注意：document.createChart() 已经自动将图表添加到文档中
         // 不需要手动创建段落或run来关联图表
@@ -894,249 +969,189 @@ public class DynamicWordDocumentCreator {
     }
     
     /**
-     * 根据ECharts配置创建相应类型的图表
+     * 根据图表模型创建相应类型的图表
      * @param document Word文档对象
-     * @param chartTitle 图表标题
-     * @param echartsConfig ECharts配置
+     * @param chartKey 图表键名，图表无法按模型生成时用作示例图表的标题
+     * @param model 图表模型
+     * @param workbook 内嵌工作簿的生成方式
      * @return 创建的图表对象
      */
-    private static XWPFChart createChartBasedOnEChartsConfig(XWPFDocument document, String chartTitle, String echartsConfig) throws IOException, InvalidFormatException {
+    private static XWPFChart createChartFromModel(XWPFDocument document, String chartKey, ChartModel model,
+                                                  ConversionOptions.ChartWorkbook workbook)
+            throws IOException, InvalidFormatException {
+        long start = System.nanoTime();
         try {
-            // 预处理ECharts配置，将其转换为有效的JSON格式
-            String jsonConfig = EChartsToWordConverter.convertEChartsToJson(echartsConfig);
-            
-            ObjectMapper objectMapper = new ObjectMapper();
-            JsonNode rootNode = objectMapper.readTree(jsonConfig);
-            
-            // 获取图表类型，默认为柱状图
-            String chartType = "bar";
-            JsonNode seriesNode = rootNode.path("series");
-            if (seriesNode.isArray() && seriesNode.size() > 0) {
-                JsonNode firstSeries = seriesNode.get(0);
-                chartType = firstSeries.path("type").asText("bar");
-            }
-            
             // 创建图表对象,并设置图表大小
             XWPFChart chart = document.createChart(15 * Units.EMU_PER_CENTIMETER, 8 * Units.EMU_PER_CENTIMETER);
-            chart.setTitleText(chartTitle);
+            chart.setTitleText(model.getTitle());
 
             // 根据图表类型创建相应的图表
-            switch (chartType) {
+            switch (model.getType()) {
                 case "line":
-                    createLineChart(chart, rootNode);
+                    createLineChart(chart, model, workbook);
                     break;
                 case "pie":
-                    createPieChart(chart, rootNode);
+                    createPieChart(chart, model, workbook);
                     break;
                 default: // 默认创建柱状图
-                    createBarChart(chart, rootNode);
+                    createBarChart(chart, model, workbook);
                     break;
             }
-            
+
             return chart;
         } catch (Exception e) {
-            // 如果解析失败，创建一个默认的柱状图
-            return createSampleChart(document, chartTitle);
+            // 如果生成失败，创建一个默认的柱状图
+            return createSampleChart(document, chartKey);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            ChartTimings.record(workbook, elapsed);
+            logger.debug("图表 {} 生成完成：{} 个系列，内嵌工作簿 {}，耗时 {}ms", chartKey, model.getSeries().size(),
+                    workbook, elapsed / 1_000_000.0);
         }
     }
-    
+
     /**
      * 创建柱状图
      * @param chart 图表对象
-     * @param rootNode ECharts配置的根节点
+     * @param model 图表模型
      */
-    private static void createBarChart(XWPFChart chart, JsonNode rootNode) {
-        // 提取X轴数据
-        String[] categories = {};
-        JsonNode xAxisNode = rootNode.path("xAxis");
-        if (xAxisNode.isArray()) {
-            xAxisNode = xAxisNode.get(0);
-        }
-        
-        if (!xAxisNode.isMissingNode()) {
-            JsonNode xAxisData = xAxisNode.path("data");
-            if (!xAxisData.isMissingNode() && xAxisData.isArray()) {
-                categories = new String[xAxisData.size()];
-                for (int i = 0; i < xAxisData.size(); i++) {
-                    categories[i] = xAxisData.get(i).asText();
-                }
-            }
-        }
-        
-        // 创建轴
-        XDDFCategoryAxis categoryAxis = chart.createCategoryAxis(AxisPosition.BOTTOM);
-        JsonNode xAxisName = xAxisNode.path("name");
-        if (!xAxisName.isMissingNode()) {
-            categoryAxis.setTitle(xAxisName.asText());
-        }
-        
-        XDDFValueAxis valueAxis = chart.createValueAxis(AxisPosition.LEFT);
-        JsonNode yAxisNode = rootNode.path("yAxis");
-        if (yAxisNode.isArray()) {
-            yAxisNode = yAxisNode.get(0);
-        }
-        
-        if (!yAxisNode.isMissingNode()) {
-            JsonNode yAxisName = yAxisNode.path("name");
-            if (!yAxisName.isMissingNode()) {
-                valueAxis.setTitle(yAxisName.asText());
-            }
-        }
-        
+    private static void createBarChart(XWPFChart chart, ChartModel model, ConversionOptions.ChartWorkbook workbook)
+            throws IOException {
         // 创建图表数据
-        XDDFChartData data = chart.createData(ChartTypes.BAR, categoryAxis, valueAxis);
+        XDDFChartData data = chart.createData(ChartTypes.BAR, createCategoryAxis(chart, model), createValueAxis(chart, model));
         data.setVaryColors(true);
-        
-        // 添加数据系列
-        JsonNode seriesNode = rootNode.path("series");
-        if (seriesNode.isArray()) {
-            for (int i = 0; i < seriesNode.size(); i++) {
-                JsonNode serie = seriesNode.get(i);
-                String seriesName = serie.path("name").asText("系列" + (i+1));
-                
-                JsonNode seriesData = serie.path("data");
-                if (!seriesData.isMissingNode() && seriesData.isArray()) {
-                    Double[] values = new Double[seriesData.size()];
-                    for (int j = 0; j < seriesData.size(); j++) {
-                        values[j] = seriesData.get(j).asDouble();
-                    }
-                    
-                    XDDFCategoryDataSource categoryDataSource = XDDFDataSourcesFactory.fromArray(categories);
-                    XDDFNumericalDataSource<Double> valueDataSource = XDDFDataSourcesFactory.fromArray(values);
-                    
-                    XDDFChartData.Series series = data.addSeries(categoryDataSource, valueDataSource);
-                    series.setTitle(seriesName, null);
-                }
-            }
-        }
-        
-        chart.plot(data);
+        plotSeries(chart, data, model, workbook);
 
         // 设置显示数据标签
         if (!chart.getCTChart().getPlotArea().getBarChartList().isEmpty()) {
-            // 获取柱状图的第一个系列并设置数据标签
-            org.openxmlformats.schemas.drawingml.x2006.chart.CTBarChart ctBarChart =
-                    chart.getCTChart().getPlotArea().getBarChartList().get(0);
-
-            if (!ctBarChart.getSerList().isEmpty()) {
-                for (int i = 0; i < ctBarChart.getSerList().size(); i++) {
-                    org.openxmlformats.schemas.drawingml.x2006.chart.CTBarSer series =
-                            ctBarChart.getSerList().get(i);
-
-                    // 添加数据标签设置
-                    org.openxmlformats.schemas.drawingml.x2006.chart.CTDLbls dLbls = series.addNewDLbls();
-                    dLbls.addNewShowVal().setVal(true);     // 显示数值
-                    dLbls.addNewShowCatName().setVal(false); // 不显示类别名称
-                    dLbls.addNewShowSerName().setVal(false); // 不显示系列名称
-                    dLbls.addNewShowPercent().setVal(false); // 不显示百分比
-                    dLbls.addNewShowLegendKey().setVal(false); // 不显示图例
-                    dLbls.addNewShowBubbleSize().setVal(false); // 不显示气泡大小
-                }
+            for (org.openxmlformats.schemas.drawingml.x2006.chart.CTBarSer series :
+                    chart.getCTChart().getPlotArea().getBarChartList().get(0).getSerList()) {
+                addValueLabels(series.addNewDLbls());
             }
         }
     }
-    
+
     /**
      * 创建折线图
      * @param chart 图表对象
-     * @param rootNode ECharts配置的根节点
+     * @param model 图表模型
      */
-    private static void createLineChart(XWPFChart chart, JsonNode rootNode) {
-        // 提取X轴数据
-        String[] categories = {};
-        JsonNode xAxisNode = rootNode.path("xAxis");
-        if (xAxisNode.isArray()) {
-            xAxisNode = xAxisNode.get(0);
-        }
-        
-        if (!xAxisNode.isMissingNode()) {
-            JsonNode xAxisData = xAxisNode.path("data");
-            if (!xAxisData.isMissingNode() && xAxisData.isArray()) {
-                categories = new String[xAxisData.size()];
-                for (int i = 0; i < xAxisData.size(); i++) {
-                    categories[i] = xAxisData.get(i).asText();
-                }
+    private static void createLineChart(XWPFChart chart, ChartModel model, ConversionOptions.ChartWorkbook workbook)
+            throws IOException {
+        // 创建图表数据
+        XDDFChartData data = chart.createData(ChartTypes.LINE, createCategoryAxis(chart, model), createValueAxis(chart, model));
+        plotSeries(chart, data, model, workbook);
+
+        // 设置显示数据标签
+        if (!chart.getCTChart().getPlotArea().getLineChartList().isEmpty()) {
+            for (org.openxmlformats.schemas.drawingml.x2006.chart.CTLineSer series :
+                    chart.getCTChart().getPlotArea().getLineChartList().get(0).getSerList()) {
+                addValueLabels(series.addNewDLbls());
             }
         }
-        
-        // 创建轴
+    }
+
+    private static XDDFCategoryAxis createCategoryAxis(XWPFChart chart, ChartModel model) {
         XDDFCategoryAxis categoryAxis = chart.createCategoryAxis(AxisPosition.BOTTOM);
-        JsonNode xAxisName = xAxisNode.path("name");
-        if (!xAxisName.isMissingNode()) {
-            categoryAxis.setTitle(xAxisName.asText());
+        if (model.getXAxisName() != null) {
+            categoryAxis.setTitle(model.getXAxisName());
         }
-        
+        return categoryAxis;
+    }
+
+    private static XDDFValueAxis createValueAxis(XWPFChart chart, ChartModel model) {
         XDDFValueAxis valueAxis = chart.createValueAxis(AxisPosition.LEFT);
-        JsonNode yAxisNode = rootNode.path("yAxis");
-        if (yAxisNode.isArray()) {
-            yAxisNode = yAxisNode.get(0);
+        if (model.getYAxisName() != null) {
+            valueAxis.setTitle(model.getYAxisName());
         }
-        
-        if (!yAxisNode.isMissingNode()) {
-            JsonNode yAxisName = yAxisNode.path("name");
-            if (!yAxisName.isMissingNode()) {
-                valueAxis.setTitle(yAxisName.asText());
+        return valueAxis;
+    }
+
+    /**
+     * 添加数据系列并绘制，各系列共用同一组类别
+     * 生成内嵌工作簿时，类别和各系列引用工作表中的单元格（A 列为类别，其后每列一个系列），图表中同时保存缓存数据；
+     * XSSF 由 POI 在绘制时填入工作簿，STREAMING 在绘制后直接写出工作簿，NONE 只写缓存数据，不会创建工作簿
+     */
+    private static void plotSeries(XWPFChart chart, XDDFChartData data, ChartModel model,
+                                   ConversionOptions.ChartWorkbook workbook) throws IOException {
+        List<ChartModel.Series> seriesList = model.getSeries();
+        if (workbook == ConversionOptions.ChartWorkbook.NONE) {
+            XDDFCategoryDataSource categoryDataSource = XDDFDataSourcesFactory.fromArray(model.getCategories());
+            for (ChartModel.Series serie : seriesList) {
+                data.addSeries(categoryDataSource, new DoubleArrayDataSource(serie.getValues())).setTitle(serie.getName(), null);
             }
+            plotEachSeries(data);
+            return;
         }
-        
-        // 创建图表数据
-        XDDFChartData data = chart.createData(ChartTypes.LINE, categoryAxis, valueAxis);
-        
-        // 添加数据系列
-        JsonNode seriesNode = rootNode.path("series");
-        if (seriesNode.isArray()) {
-            for (int i = 0; i < seriesNode.size(); i++) {
-                JsonNode serie = seriesNode.get(i);
-                String seriesName = serie.path("name").asText("系列" + (i+1));
-                
-                JsonNode seriesData = serie.path("data");
-                if (!seriesData.isMissingNode() && seriesData.isArray()) {
-                    Double[] values = new Double[seriesData.size()];
-                    for (int j = 0; j < seriesData.size(); j++) {
-                        values[j] = seriesData.get(j).asDouble();
-                    }
-                    
-                    XDDFCategoryDataSource categoryDataSource = XDDFDataSourcesFactory.fromArray(categories);
-                    XDDFNumericalDataSource<Double> valueDataSource = XDDFDataSourcesFactory.fromArray(values);
-                    
-                    XDDFChartData.Series series = data.addSeries(categoryDataSource, valueDataSource);
-                    series.setTitle(seriesName, null);
-                }
+
+        // 类别少于数据点时补上序号，保证工作表中每个数据点都有对应的类别
+        String[] categories = model.getCategories();
+        int pointCount = categories.length;
+        for (ChartModel.Series serie : seriesList) {
+            pointCount = Math.max(pointCount, serie.getValues().length);
+        }
+        if (categories.length < pointCount) {
+            String[] padded = Arrays.copyOf(categories, pointCount);
+            for (int i = categories.length; i < pointCount; i++) {
+                padded[i] = String.valueOf(i + 1);
             }
+            categories = padded;
         }
-        
-        chart.plot(data);
 
-        // 设置显示数据标签
-        if (!chart.getCTChart().getPlotArea().getLineChartList().isEmpty()) {
-            // 获取折线图的第一个系列并设置数据标签
-            org.openxmlformats.schemas.drawingml.x2006.chart.CTLineChart ctLineChart =
-                    chart.getCTChart().getPlotArea().getLineChartList().get(0);
-
-            if (!ctLineChart.getSerList().isEmpty()) {
-                for (int i = 0; i < ctLineChart.getSerList().size(); i++) {
-                    org.openxmlformats.schemas.drawingml.x2006.chart.CTLineSer series =
-                            ctLineChart.getSerList().get(i);
-
-                    // 添加数据标签设置
-                    org.openxmlformats.schemas.drawingml.x2006.chart.CTDLbls dLbls = series.addNewDLbls();
-                    dLbls.addNewShowVal().setVal(true);     // 显示数值
-                    dLbls.addNewShowCatName().setVal(false); // 不显示类别名称
-                    dLbls.addNewShowSerName().setVal(false); // 不显示系列名称
-                    dLbls.addNewShowPercent().setVal(false); // 不显示百分比
-                    dLbls.addNewShowLegendKey().setVal(false); // 不显示图例
-                    dLbls.addNewShowBubbleSize().setVal(false); // 不显示气泡大小
-                }
+        if (workbook == ConversionOptions.ChartWorkbook.XSSF) {
+            int lastRow = Math.max(pointCount, 1);
+            XDDFCategoryDataSource categoryDataSource = XDDFDataSourcesFactory.fromArray(categories,
+                    chart.formatRange(new CellRangeAddress(1, lastRow, 0, 0)), 0);
+            for (int i = 0; i < seriesList.size(); i++) {
+                ChartModel.Series serie = seriesList.get(i);
+                String range = chart.formatRange(new CellRangeAddress(1, lastRow, i + 1, i + 1));
+                data.addSeries(categoryDataSource, new DoubleArrayDataSource(serie.getValues(), range, i + 1))
+                        .setTitle(serie.getName(), chart.setSheetTitle(serie.getName(), i + 1));
             }
+            chart.plot(data);
+            return;
         }
+
+        XDDFCategoryDataSource categoryDataSource = XDDFDataSourcesFactory.fromArray(categories,
+                ChartWorkbookWriter.categoryRange(pointCount), 0);
+        for (int i = 0; i < seriesList.size(); i++) {
+            ChartModel.Series serie = seriesList.get(i);
+            data.addSeries(categoryDataSource,
+                            new DoubleArrayDataSource(serie.getValues(), ChartWorkbookWriter.valueRange(i, pointCount), i + 1))
+                    .setTitle(serie.getName(), ChartWorkbookWriter.titleCell(i));
+        }
+        plotEachSeries(data);
+        PoiUtil.attachWorkbook(chart, ChartWorkbookWriter.write(categories, seriesList));
     }
-    
+
+    /**
+     * 逐个绘制系列；XDDFChart.plot 会先创建内嵌工作簿，不需要 POI 工作簿时不能调用
+     */
+    private static void plotEachSeries(XDDFChartData data) {
+        for (int i = 0; i < data.getSeriesCount(); i++) {
+            data.getSeries(i).plot();
+        }
+    }
+
+    /**
+     * 数据标签只显示数值
+     */
+    private static void addValueLabels(CTDLbls dLbls) {
+        dLbls.addNewShowVal().setVal(true);     // 显示数值
+        dLbls.addNewShowCatName().setVal(false); // 不显示类别名称
+        dLbls.addNewShowSerName().setVal(false); // 不显示系列名称
+        dLbls.addNewShowPercent().setVal(false); // 不显示百分比
+        dLbls.addNewShowLegendKey().setVal(false); // 不显示图例
+        dLbls.addNewShowBubbleSize().setVal(false); // 不显示气泡大小
+    }
+
     /**
      * 创建饼图
      * @param chart 图表对象
-     * @param rootNode ECharts配置的根节点
+     * @param model 图表模型
      */
-    private static void createPieChart(XWPFChart chart, JsonNode rootNode) {
+    private static void createPieChart(XWPFChart chart, ChartModel model, ConversionOptions.ChartWorkbook workbook)
+            throws IOException {
         // 创建轴
         XDDFCategoryAxis categoryAxis = chart.createCategoryAxis(AxisPosition.BOTTOM);
         categoryAxis.setVisible(false);
@@ -1147,38 +1162,7 @@ public class DynamicWordDocumentCreator {
         // 创建图表数据
         XDDFChartData data = chart.createData(ChartTypes.PIE, categoryAxis, valueAxis);
         data.setVaryColors(true);
-        
-        // 添加数据系列
-        JsonNode seriesNode = rootNode.path("series");
-        if (seriesNode.isArray() && seriesNode.size() > 0) {
-            JsonNode serie = seriesNode.get(0); // 饼图通常只有一个系列
-            String seriesName = serie.path("name").asText("系列1");
-            
-            JsonNode seriesData = serie.path("data");
-            if (!seriesData.isMissingNode() && seriesData.isArray()) {
-                String[] categories = new String[seriesData.size()];
-                Double[] values = new Double[seriesData.size()];
-                
-                for (int i = 0; i < seriesData.size(); i++) {
-                    JsonNode dataItem = seriesData.get(i);
-                    if (dataItem.isObject()) {
-                        categories[i] = dataItem.path("name").asText("类别" + (i+1));
-                        values[i] = dataItem.path("value").asDouble();
-                    } else {
-                        categories[i] = "类别" + (i+1);
-                        values[i] = dataItem.asDouble();
-                    }
-                }
-                
-                XDDFCategoryDataSource categoryDataSource = XDDFDataSourcesFactory.fromArray(categories);
-                XDDFNumericalDataSource<Double> valueDataSource = XDDFDataSourcesFactory.fromArray(values);
-                
-                XDDFChartData.Series series = data.addSeries(categoryDataSource, valueDataSource);
-                series.setTitle(seriesName, null);
-            }
-        }
-        
-        chart.plot(data);
+        plotSeries(chart, data, model, workbook);
         CTDLbls ctdLbls = chart.getCTChart().getPlotArea().getPieChartArray(0).getSerArray(0).addNewDLbls();
         ctdLbls.addNewShowVal().setVal(false);
         ctdLbls.addNewShowLegendKey().setVal(false);
@@ -0,0 +1,273 @@
+package cn.daydayup.dev.md2doc.core.template;
+
+import cn.daydayup.dev.md2doc.core.model.ChartModel;
+import cn.daydayup.dev.md2doc.core.model.NumberColumn;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @ClassName EChartsModelReader
+ * @Description 按 JSON 记号流读取ECharts配置并生成图表模型：只读取图表用到的字段，系列数据直接写入 NumberColumn，
+ * 不先构建整棵JSON树，也不为每个数据点创建节点对象；字段顺序任意，其余字段整体跳过
+ * @Author ZhaoYanNing
+ * @Date 2025/12/10 11:20
+ * @Version 1.0
+ */
+class EChartsModelReader {
+
+    private static final String DEFAULT_TITLE = "默认标题";
+
+    private final JsonParser parser;
+
+    private String title = DEFAULT_TITLE;
+    private Axis xAxis = new Axis();
+    private Axis yAxis = new Axis();
+    private final List<RawSeries> series = new ArrayList<>();
+
+    private EChartsModelReader(JsonParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * 读取配置并提取图表模型，取值规则与按JSON树读取时相同：
+     * 多个坐标轴时取第一个；{name, value} 形式的数据项取 value；字符串按数字解析，无法解析和非数值数据按 0 处理
+     * @param parser 指向配置开头的解析器，调用方负责关闭
+     * @return 图表模型
+     * @throws IOException JSON 解析异常
+     */
+    static ChartModel read(JsonParser parser) throws IOException {
+        EChartsModelReader reader = new EChartsModelReader(parser);
+        if (parser.nextToken() == JsonToken.START_OBJECT) {
+            reader.readRoot();
+        } else {
+            // 不是对象的配置没有可用的字段，按空配置处理
+            parser.skipChildren();
+        }
+        return reader.toChartModel();
+    }
+
+    private void readRoot() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "title" -> readTitle();
+                case "xAxis" -> xAxis = readFirstAxis();
+                case "yAxis" -> yAxis = readFirstAxis();
+                case "series" -> readSeriesList();
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private void readTitle() throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            // 多个标题（数组）时与缺少标题相同
+            parser.skipChildren();
+            title = DEFAULT_TITLE;
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("text".equals(field)) {
+                title = readText(DEFAULT_TITLE);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private Axis readFirstAxis() throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            return readAxis();
+        }
+        // 多个坐标轴时取第一个，其余跳过
+        Axis axis = new Axis();
+        if (parser.nextToken() != JsonToken.END_ARRAY) {
+            axis = readAxis();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                parser.skipChildren();
+            }
+        }
+        return axis;
+    }
+
+    private Axis readAxis() throws IOException {
+        Axis axis = new Axis();
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return axis;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("name".equals(field)) {
+                axis.name = readText(null);
+            } else if ("data".equals(field) && parser.currentToken() == JsonToken.START_ARRAY) {
+                axis.data = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    String label = readText(null);
+                    axis.data.add(label == null ? "null" : label);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return axis;
+    }
+
+    private void readSeriesList() throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            series.add(readSeries());
+        }
+    }
+
+    private RawSeries readSeries() throws IOException {
+        RawSeries serie = new RawSeries();
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return serie;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "name" -> serie.name = readText(null);
+                case "type" -> serie.type = readText(null);
+                case "data" -> readSeriesData(serie);
+                default -> parser.skipChildren();
+            }
+        }
+        return serie;
+    }
+
+    private void readSeriesData(RawSeries serie) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        serie.values = new NumberColumn();
+        int index = 0;
+        for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken(), index++) {
+            if (token == JsonToken.START_OBJECT) {
+                readDataItem(serie, index);
+            } else {
+                serie.values.add(readValue());
+            }
+        }
+    }
+
+    /**
+     * 读取 {name, value} 形式的数据项，名称只在饼图中作为类别使用
+     */
+    private void readDataItem(RawSeries serie, int index) throws IOException {
+        double value = 0;
+        String name = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("value".equals(field)) {
+                value = readValue();
+            } else if ("name".equals(field)) {
+                name = readText(null);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        serie.values.add(value);
+        if (name != null) {
+            if (serie.itemNames == null) {
+                serie.itemNames = new ArrayList<>();
+            }
+            while (serie.itemNames.size() < index) {
+                serie.itemNames.add(null);
+            }
+            serie.itemNames.add(name);
+        }
+    }
+
+    /**
+     * 读取当前数值：数字直接取值，字符串按数字解析，数组、对象等按 0 处理
+     */
+    private double readValue() throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+            return 0;
+        }
+        return parser.getValueAsDouble(0);
+    }
+
+    /**
+     * 读取当前文本：标量取其文本，数组和对象取空串，null 取默认值
+     */
+    private String readText(String defaultValue) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return defaultValue;
+        }
+        if (token.isStructStart()) {
+            parser.skipChildren();
+            return "";
+        }
+        return parser.getText();
+    }
+
+    private ChartModel toChartModel() {
+        // 获取图表类型，取第一个系列的类型，默认为柱状图
+        String type = series.isEmpty() || series.get(0).type == null ? "bar" : series.get(0).type;
+        if (!"line".equals(type) && !"pie".equals(type)) {
+            type = "bar";
+        }
+
+        List<ChartModel.Series> models = new ArrayList<>();
+        String[] categories;
+        if ("pie".equals(type)) {
+            // 饼图通常只有一个系列，类别取各数据项的名称
+            RawSeries serie = series.get(0);
+            int size = serie.values == null ? 0 : serie.values.size();
+            categories = new String[size];
+            for (int i = 0; i < size; i++) {
+                String name = serie.itemNames != null && i < serie.itemNames.size() ? serie.itemNames.get(i) : null;
+                categories[i] = name == null ? "类别" + (i + 1) : name;
+            }
+            if (serie.values != null) {
+                models.add(new ChartModel.Series(serie.name == null ? "系列1" : serie.name, serie.values.toArray()));
+            }
+        } else {
+            categories = xAxis.data == null ? new String[0] : xAxis.data.toArray(new String[0]);
+            for (int i = 0; i < series.size(); i++) {
+                RawSeries serie = series.get(i);
+                if (serie.values != null) {
+                    models.add(new ChartModel.Series(serie.name == null ? "系列" + (i + 1) : serie.name,
+                            serie.values.toArray()));
+                }
+            }
+        }
+        return new ChartModel(type, title, xAxis.name, yAxis.name, categories, models);
+    }
+
+    private static class Axis {
+        private String name;
+        private List<String> data;
+    }
+
+    private static class RawSeries {
+        private String name;
+        private String type;
+        private NumberColumn values;
+
+        /**
+         * 数据项的名称，出现 {name, value} 形式的数据项时才创建，没有名称的位置为 null
+         */
+        private List<String> itemNames;
+    }
+}
@@ -1,12 +1,17 @@
 package cn.daydayup.dev.md2doc.core.template;
 
+import cn.daydayup.dev.md2doc.core.model.ChartModel;
 import cn.daydayup.dev.md2doc.core.model.ChartTable;
+import cn.daydayup.dev.md2doc.core.model.SharedResources;
 import cn.daydayup.dev.md2doc.core.model.WordParams;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * @ClassName EChartsToWordConverter
@@ -17,7 +22,20 @@ import java.util.List;
  */
 public class EChartsToWordConverter {
 
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    /**
+     * ECharts配置是JavaScript对象字面量：键名可不加引号，字符串可用单引号，允许末尾逗号和注释
+     * 由解析器一次读完，不再先用正则改写成标准JSON；ObjectMapper 线程安全，所有图表共用一个实例
+     */
+    private static final ObjectMapper objectMapper = JsonMapper.builder()
+            .enable(JsonReadFeature.ALLOW_UNQUOTED_FIELD_NAMES,
+                    JsonReadFeature.ALLOW_SINGLE_QUOTES,
+                    JsonReadFeature.ALLOW_TRAILING_COMMA,
+                    JsonReadFeature.ALLOW_JAVA_COMMENTS,
+                    JsonReadFeature.ALLOW_NON_NUMERIC_NUMBERS,
+                    JsonReadFeature.ALLOW_LEADING_DECIMAL_POINT_FOR_NUMBERS)
+            .build();
+    private static final Pattern UNQUOTED_KEY_PATTERN = Pattern.compile("([{,]\\s*)([a-zA-Z_$][a-zA-Z0-9_$]*)\\s*:");
+    private static final Pattern TRAILING_COMMA_PATTERN = Pattern.compile(",\\s*([}\\]])");
 
     /**
      * 将 ECharts 配置转换为 Word 图表
@@ -28,96 +46,87 @@ public class EChartsToWordConverter {
      * @throws IOException JSON 解析异常
      */
     public static void convertEChartsToWordChart(WordParams params, String chartKey, String echartsConfig) throws IOException {
-        try {
-            // 预处理ECharts配置，将其转换为有效的JSON格式
-            String jsonConfig = convertEChartsToJson(echartsConfig);
-
-            JsonNode rootNode = objectMapper.readTree(jsonConfig);
-
-            // 获取图表标题
-            String title = rootNode.path("title").path("text").asText("默认标题");
-
-            // 创建图表
-            ChartTable chartTable = params.addChart(chartKey).setTitle(title);
-
-            // 处理 X 轴数据
-            JsonNode xAxisNode = rootNode.path("xAxis");
-            if (xAxisNode.isArray()) {
-                xAxisNode = xAxisNode.get(0); // 多个 x 轴时取第一个
-            }
+        convertEChartsToWordChart(params, chartKey, echartsConfig, null);
+    }
 
-            if (!xAxisNode.isMissingNode()) {
-                JsonNode xAxisData = xAxisNode.path("data");
-                if (!xAxisData.isMissingNode()) {
-                    List<String> xAxisLabels = new ArrayList<>();
-                    for (JsonNode dataNode : xAxisData) {
-                        xAxisLabels.add(dataNode.asText());
-                    }
-                    chartTable.getXAxis().addAllData(xAxisLabels);
-                }
-            }
+    /**
+     * 将 ECharts 配置转换为 Word 图表，优先使用共享资源中已解析的配置
+     * Markdown 转换已直接按 ChartModel 生成图表，本方法供按标题替换图表数据的模板使用
+     *
+     * @param params        Word 参数对象
+     * @param chartKey      图表键名
+     * @param echartsConfig ECharts 配置 JSON 字符串
+     * @param resources     共享资源，可为 null
+     * @throws IOException JSON 解析异常
+     */
+    public static void convertEChartsToWordChart(WordParams params, String chartKey, String echartsConfig,
+                                                 SharedResources resources) throws IOException {
+        ChartModel model;
+        try {
+            model = resources == null ? parseChartModel(echartsConfig) : resources.chartModel(echartsConfig);
+        } catch (IOException e) {
+            // 如果解析失败，创建一个默认的空图表
+            ChartTable chartTable = params.addChart(chartKey).setTitle("默认图表标题");
+            chartTable.getXAxis().addAllData("数据1", "数据2", "数据3");
+            chartTable.newNumberYAxis("默认系列").addAll(10, 20, 30);
+            throw e;
+        }
 
-            // 处理 Y 轴数据和系列数据
-            JsonNode seriesNode = rootNode.path("series");
-            if (seriesNode.isArray()) {
-                for (JsonNode serie : seriesNode) {
-                    String seriesName = serie.path("name").asText("数据系列");
-                    JsonNode seriesData = serie.path("data");
+        ChartTable chartTable = params.addChart(chartKey).setTitle(model.getTitle());
+        chartTable.getXAxis().addAllData(model.getCategories());
+        for (ChartModel.Series series : model.getSeries()) {
+            chartTable.newNumberYAxis(series.getName()).addAll(series.getValues());
+        }
 
-                    if (!seriesData.isMissingNode() && seriesData.isArray()) {
-                        List<Number> dataValues = new ArrayList<>();
-                        for (JsonNode dataNode : seriesData) {
-                            if (dataNode.isNumber()) {
-                                dataValues.add(dataNode.numberValue());
-                            } else {
-                                dataValues.add(0);
-                            }
-                        }
-                        chartTable.newYAxis(seriesName).addAllData(dataValues);
-                    }
-                }
-            }
+        // 如果有 Y 轴名称设置，更新第一个 Y 轴的标题
+        if (model.getYAxisName() != null && !model.getYAxisName().isEmpty() && !model.getSeries().isEmpty()) {
+            chartTable.getNumberYAxis(model.getSeries().get(0).getName()).setTitle(model.getYAxisName());
+        }
+    }
 
-            // 如果有 Y 轴名称设置，更新第一个 Y 轴的标题
-            JsonNode yAxisNode = rootNode.path("yAxis");
-            if (yAxisNode.isArray()) {
-                yAxisNode = yAxisNode.get(0); // 多个 y 轴时取第一个
-            }
+    /**
+     * 解析ECharts配置
+     * @param echartsConfig ECharts配置字符串
+     * @return 配置的JSON树
+     * @throws IOException JSON 解析异常
+     */
+    public static JsonNode readEChartsConfig(String echartsConfig) throws IOException {
+        return objectMapper.readTree(echartsConfig);
+    }
 
-            if (!yAxisNode.isMissingNode()) {
-                String yAxisName = yAxisNode.path("name").asText("");
-                if (!yAxisName.isEmpty() && !chartTable.getYAxis().isEmpty()) {
-                    // 获取第一个 Y 轴并设置标题
-                    String firstKey = chartTable.getYAxis().keySet().iterator().next();
-                    chartTable.getYAxis(firstKey).setTitle(yAxisName);
-                }
-            }
-        } catch (Exception e) {
-            // 如果解析失败，创建一个默认的空图表
-            ChartTable chartTable = params.addChart(chartKey).setTitle("默认图表标题");
-            chartTable.getXAxis().addAllData("数据1", "数据2", "数据3");
-            chartTable.newYAxis("默认系列").addAllData(10, 20, 30);
+    /**
+     * 解析ECharts配置并提取图表模型，按记号流读取，系列数据直接写入 double 数组
+     * @param echartsConfig ECharts配置字符串
+     * @return 图表模型
+     * @throws IOException JSON 解析异常
+     */
+    public static ChartModel parseChartModel(String echartsConfig) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(echartsConfig)) {
+            return EChartsModelReader.read(parser);
+        } catch (IOException e) {
             throw new IOException("解析ECharts配置时出错: " + e.getMessage(), e);
         }
     }
 
     /**
      * 将ECharts配置转换为有效的JSON格式
+     * 正则改写会破坏字符串中的单引号和形如 key: 的文本，解析请使用 readEChartsConfig
      * @param echartsConfig ECharts配置字符串
      * @return 有效的JSON字符串
      */
+    @Deprecated
     public static String convertEChartsToJson(String echartsConfig) {  // 改为public方法
         String json = echartsConfig;
 
         // 处理键名，给没有引号的键添加引号
         // 匹配键名（以字母、下划线或$开头，后跟字母、数字、下划线或$）
-        json = json.replaceAll("([{,]\\s*)([a-zA-Z_$][a-zA-Z0-9_$]*)\\s*:", "$1\"$2\":");
+        json = UNQUOTED_KEY_PATTERN.matcher(json).replaceAll("$1\"$2\":");
 
         // 处理单引号为双引号
-        json = json.replaceAll("'", "\"");
+        json = json.replace('\'', '"');
 
         // 处理末尾的逗号（在}或]之前）
-        json = json.replaceAll(",\\s*([}\\]])", "$1");
+        json = TRAILING_COMMA_PATTERN.matcher(json).replaceAll("$1");
 
         return json;
     }
@@ -136,6 +145,6 @@ public class EChartsToWordConverter {
                                       List<String> xAxisLabels, String seriesName, List<Number> seriesData) {
         ChartTable chartTable = params.addChart(chartKey).setTitle(title);
         chartTable.getXAxis().addAllData(xAxisLabels);
-        chartTable.newYAxis(seriesName).addAllData(seriesData);
+        chartTable.newNumberYAxis(seriesName).addAllData(seriesData);
     }
 }
\ No newline at end of file
@@ -0,0 +1,215 @@
+package cn.daydayup.dev.md2doc.core.util;
+
+import cn.daydayup.dev.md2doc.core.model.ChartModel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @ClassName ChartDownsampler
+ * @Description 图表降采样：数据点超过上限的图表在生成图表部件前减少到上限以内，图表缓存和内嵌工作簿都只保存采样后的数据
+ *              折线图按 LTTB（Largest-Triangle-Three-Buckets）选点，保留曲线的峰谷形状；各系列共用类别轴，按所有系列的三角形面积之和选出同一组点
+ *              柱状图把相邻的类别合并为一组，取组内平均值，类别标签写成“首个~末个”；饼图不做处理
+ * @Author ZhaoYanNing
+ * @Date 2025/12/11 9:40
+ * @Version 1.0
+ */
+@Getter
+public class ChartDownsampler {
+
+    /**
+     * LTTB 至少保留首尾两点和中间一个桶
+     */
+    private static final int MIN_POINTS = 3;
+
+    private final int maxPoints;
+
+    /**
+     * @param maxPoints 每个系列最多保留的数据点数，不小于 3
+     */
+    public ChartDownsampler(int maxPoints) {
+        if (maxPoints < MIN_POINTS) {
+            throw new IllegalArgumentException("maxPoints 不能小于 " + MIN_POINTS);
+        }
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * 对图表模型降采样，数据点未超过上限的图表和饼图原样返回；原模型不会被修改
+     * @param model 图表模型
+     * @return 采样后的图表模型
+     */
+    public ChartModel downsample(ChartModel model) {
+        int pointCount = pointCount(model);
+        if (model.isPie() || pointCount <= maxPoints) {
+            return model;
+        }
+        return "line".equals(model.getType()) ? lttb(model, pointCount) : aggregate(model, pointCount);
+    }
+
+    /**
+     * 区分降采样参数的缓存键，参数不同的图表渲染结果不能共用
+     */
+    public String cacheKey() {
+        return "downsample:" + maxPoints;
+    }
+
+    private static int pointCount(ChartModel model) {
+        int count = 0;
+        for (ChartModel.Series series : model.getSeries()) {
+            count = Math.max(count, series.getValues().length);
+        }
+        return count;
+    }
+
+    /**
+     * 折线图：首尾两点固定保留，其余点均分为 maxPoints - 2 个桶，每个桶选出与上一个选中点、下一个桶均值构成三角形面积最大的点
+     * 各系列的面积按该系列的取值范围归一化后相加，避免数值大的系列决定选点；缺失的数据点不参与计算
+     */
+    private ChartModel lttb(ChartModel model, int pointCount) {
+        List<ChartModel.Series> series = model.getSeries();
+        double[][] values = new double[series.size()][];
+        double[] ranges = new double[series.size()];
+        for (int s = 0; s < values.length; s++) {
+            values[s] = series.get(s).getValues();
+            ranges[s] = range(values[s]);
+        }
+
+        int[] selected = new int[maxPoints];
+        double bucketSize = (double) (pointCount - 2) / (maxPoints - 2);
+        int previous = 0;
+        selected[0] = 0;
+        double[] averages = new double[values.length];
+        for (int bucket = 0; bucket < maxPoints - 2; bucket++) {
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextStart = end;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, pointCount);
+            double averageX = (nextStart + nextEnd - 1) / 2.0;
+            for (int s = 0; s < values.length; s++) {
+                averages[s] = average(values[s], nextStart, nextEnd);
+            }
+
+            int best = start;
+            double bestArea = -1;
+            for (int i = start; i < end; i++) {
+                double area = 0;
+                for (int s = 0; s < values.length; s++) {
+                    double y = valueAt(values[s], i);
+                    double previousY = valueAt(values[s], previous);
+                    if (Double.isNaN(y) || Double.isNaN(previousY) || Double.isNaN(averages[s])) {
+                        continue;
+                    }
+                    area += Math.abs((previous - averageX) * (y - previousY)
+                            - (previous - i) * (averages[s] - previousY)) / ranges[s];
+                }
+                if (area > bestArea) {
+                    bestArea = area;
+                    best = i;
+                }
+            }
+            selected[bucket + 1] = best;
+            previous = best;
+        }
+        selected[maxPoints - 1] = pointCount - 1;
+
+        String[] categories = model.getCategories();
+        String[] sampledCategories = new String[categories.length == 0 ? 0 : maxPoints];
+        for (int k = 0; k < sampledCategories.length; k++) {
+            sampledCategories[k] = selected[k] < categories.length ? categories[selected[k]] : "";
+        }
+        List<ChartModel.Series> sampledSeries = new ArrayList<>(series.size());
+        for (int s = 0; s < values.length; s++) {
+            // 较短的系列只保留其长度以内的点
+            int length = 0;
+            while (length < maxPoints && selected[length] < values[s].length) {
+                length++;
+            }
+            double[] sampled = new double[length];
+            for (int k = 0; k < length; k++) {
+                sampled[k] = values[s][selected[k]];
+            }
+            sampledSeries.add(new ChartModel.Series(series.get(s).getName(), sampled));
+        }
+        return copy(model, sampledCategories, sampledSeries);
+    }
+
+    /**
+     * 柱状图：按顺序把类别均分为 maxPoints 组，每组取各系列的平均值；组内全部缺失时仍记为缺失
+     */
+    private ChartModel aggregate(ChartModel model, int pointCount) {
+        int[] bounds = new int[maxPoints + 1];
+        for (int bucket = 0; bucket <= maxPoints; bucket++) {
+            bounds[bucket] = (int) ((long) bucket * pointCount / maxPoints);
+        }
+
+        String[] categories = model.getCategories();
+        String[] sampledCategories = new String[categories.length == 0 ? 0 : maxPoints];
+        for (int bucket = 0; bucket < sampledCategories.length; bucket++) {
+            sampledCategories[bucket] = bucketLabel(categories, bounds[bucket], bounds[bucket + 1]);
+        }
+        List<ChartModel.Series> sampledSeries = new ArrayList<>(model.getSeries().size());
+        for (ChartModel.Series series : model.getSeries()) {
+            double[] values = series.getValues();
+            int length = 0;
+            while (length < maxPoints && bounds[length] < values.length) {
+                length++;
+            }
+            double[] sampled = new double[length];
+            for (int bucket = 0; bucket < length; bucket++) {
+                sampled[bucket] = average(values, bounds[bucket], bounds[bucket + 1]);
+            }
+            sampledSeries.add(new ChartModel.Series(series.getName(), sampled));
+        }
+        return copy(model, sampledCategories, sampledSeries);
+    }
+
+    private static String bucketLabel(String[] categories, int start, int end) {
+        if (start >= categories.length) {
+            return "";
+        }
+        String first = categories[start];
+        int last = Math.min(end, categories.length) - 1;
+        return last <= start ? first : first + "~" + categories[last];
+    }
+
+    private static ChartModel copy(ChartModel model, String[] categories, List<ChartModel.Series> series) {
+        return new ChartModel(model.getType(), model.getTitle(), model.getXAxisName(), model.getYAxisName(),
+                categories, series);
+    }
+
+    private static double valueAt(double[] values, int index) {
+        return index < values.length ? values[index] : Double.NaN;
+    }
+
+    /**
+     * [start, end) 范围内非缺失数据的平均值，没有数据时返回 NaN
+     */
+    private static double average(double[] values, int start, int end) {
+        double sum = 0;
+        int count = 0;
+        for (int i = start; i < Math.min(end, values.length); i++) {
+            if (!Double.isNaN(values[i])) {
+                sum += values[i];
+                count++;
+            }
+        }
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * 系列的取值范围，全部相同或缺失时返回 1
+     */
+    private static double range(double[] values) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : values) {
+            if (!Double.isNaN(value)) {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        return max > min ? max - min : 1;
+    }
+}
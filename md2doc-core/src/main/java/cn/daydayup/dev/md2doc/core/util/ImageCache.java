@@ -0,0 +1,436 @@
+package cn.daydayup.dev.md2doc.core.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * @ClassName ImageCache
+ * @Description 网络图片缓存：内存中按字节数限制的LRU，加磁盘存储；以URL为键，保存已解析的图片及其尺寸和格式
+ *              过期后带 ETag/Last-Modified 发起条件请求，304 时沿用缓存内容；同一URL的并发请求合并为一次下载
+ *              磁盘上图片内容按SHA-256存放，不同URL的相同图片只存一份；磁盘占用超过上限时删除最久未使用的图片
+ * @Author ZhaoYanNing
+ * @Date 2025/11/26 15:40
+ * @Version 1.0
+ */
+public class ImageCache {
+
+    private static final Logger logger = LogManager.getLogger(ImageCache.class);
+
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_MAX_DISK_BYTES = 1024L * 1024 * 1024;
+    public static final Duration DEFAULT_FRESHNESS = Duration.ofMinutes(10);
+
+    /**
+     * 磁盘占用超过上限时删除到上限的该比例，避免每次写入都清理
+     */
+    private static final double DISK_TRIM_RATIO = 0.8;
+
+    private static final ImageCache DEFAULT_CACHE = new ImageCache(DEFAULT_MAX_MEMORY_BYTES, null, DEFAULT_FRESHNESS);
+
+    private final long maxMemoryBytes;
+    private final Path directory;
+    private final long maxDiskBytes;
+    private final Duration freshness;
+
+    /**
+     * 内存缓存，按访问顺序淘汰
+     */
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+
+    /**
+     * 磁盘上图片内容的字节数（不含元数据），启动时统计一次，之后随写入和清理增减
+     */
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final Object diskTrimLock = new Object();
+
+    /**
+     * 正在加载的URL，并发请求等待同一个结果
+     */
+    private final ConcurrentMap<String, CompletableFuture<ImageDownloader.DownloadedImage>> inFlight =
+            new ConcurrentHashMap<>();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+
+    /**
+     * @param maxMemoryBytes 内存缓存的图片字节数上限
+     * @param directory 磁盘缓存目录，为 null 时只使用内存缓存
+     * @param freshness 响应未给出 Cache-Control max-age 时，缓存内容无需重新验证的时长
+     */
+    public ImageCache(long maxMemoryBytes, Path directory, Duration freshness) {
+        this(maxMemoryBytes, directory, DEFAULT_MAX_DISK_BYTES, freshness);
+    }
+
+    /**
+     * @param maxMemoryBytes 内存缓存的图片字节数上限
+     * @param directory 磁盘缓存目录，为 null 时只使用内存缓存
+     * @param maxDiskBytes 磁盘缓存的图片字节数上限，超出后删除最久未使用的图片
+     * @param freshness 响应未给出 Cache-Control max-age 时，缓存内容无需重新验证的时长
+     */
+    public ImageCache(long maxMemoryBytes, Path directory, long maxDiskBytes, Duration freshness) {
+        if (maxDiskBytes <= 0) {
+            throw new IllegalArgumentException("maxDiskBytes 必须大于0");
+        }
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.freshness = freshness;
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory.resolve("urls"));
+                Files.createDirectories(directory.resolve("blobs"));
+                try (Stream<Path> blobs = Files.list(directory.resolve("blobs"))) {
+                    diskBytes.set(blobs.mapToLong(ImageCache::sizeOrZero).sum());
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("无法创建图片缓存目录: " + directory, e);
+            }
+            trimDisk();
+        }
+    }
+
+    /**
+     * @return 进程内共用的默认实例，只使用内存缓存
+     */
+    public static ImageCache defaultCache() {
+        return DEFAULT_CACHE;
+    }
+
+    /**
+     * 获取网络图片，依次查找内存、磁盘，未命中或已过期时下载或重新验证
+     * 同一URL同时只加载一次；加载抛出异常或 Error 时正在等待的调用方一并失败，不会一直阻塞
+     * @param imageUrl 图片URL
+     * @param downloader 下载和重新验证使用的下载器
+     * @return 图片，下载失败且没有缓存时返回 null
+     */
+    public ImageDownloader.DownloadedImage get(String imageUrl, ImageDownloader downloader) {
+        Entry entry = memoryGet(imageUrl);
+        if (entry != null && entry.isFresh()) {
+            memoryHits.incrementAndGet();
+            return entry.image();
+        }
+
+        CompletableFuture<ImageDownloader.DownloadedImage> created = new CompletableFuture<>();
+        CompletableFuture<ImageDownloader.DownloadedImage> existing = inFlight.putIfAbsent(imageUrl, created);
+        if (existing != null) {
+            collapsed.incrementAndGet();
+            return existing.join();
+        }
+        try {
+            ImageDownloader.DownloadedImage image = load(imageUrl, entry, downloader);
+            created.complete(image);
+            return image;
+        } catch (Throwable e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(imageUrl, created);
+        }
+    }
+
+    private ImageDownloader.DownloadedImage load(String imageUrl, Entry entry, ImageDownloader downloader) {
+        if (entry == null) {
+            entry = diskGet(imageUrl);
+            if (entry != null && entry.isFresh()) {
+                diskHits.incrementAndGet();
+                memoryPut(imageUrl, entry);
+                return entry.image();
+            }
+        }
+
+        ImageDownloader.HttpImage response = entry == null
+                ? downloader.fetchImage(imageUrl, null, null)
+                : downloader.fetchImage(imageUrl, entry.etag(), entry.lastModified());
+        if (response == null) {
+            // 源站不可用时继续使用过期的缓存
+            misses.incrementAndGet();
+            return entry == null ? null : entry.image();
+        }
+        long expiresAt = System.currentTimeMillis()
+                + (response.maxAgeSeconds() >= 0 ? response.maxAgeSeconds() * 1000 : freshness.toMillis());
+        if (response.notModified() && entry != null) {
+            revalidations.incrementAndGet();
+            entry = new Entry(entry.image(), entry.etag(), entry.lastModified(), entry.contentHash(), expiresAt);
+        } else if (response.image() != null) {
+            misses.incrementAndGet();
+            bytesDownloaded.addAndGet(response.image().data().length);
+            entry = new Entry(response.image(), response.etag(), response.lastModified(),
+                    sha256(response.image().data()), expiresAt);
+        } else {
+            misses.incrementAndGet();
+            return null;
+        }
+        memoryPut(imageUrl, entry);
+        diskPut(imageUrl, entry);
+        return entry.image();
+    }
+
+    private synchronized Entry memoryGet(String imageUrl) {
+        return memory.get(imageUrl);
+    }
+
+    private synchronized void memoryPut(String imageUrl, Entry entry) {
+        Entry previous = memory.remove(imageUrl);
+        if (previous != null) {
+            memoryBytes -= previous.size();
+        }
+        if (entry.size() > maxMemoryBytes) {
+            return;
+        }
+        memory.put(imageUrl, entry);
+        memoryBytes += entry.size();
+        Iterator<Entry> eldest = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().size();
+            eldest.remove();
+        }
+    }
+
+    private Entry diskGet(String imageUrl) {
+        if (directory == null) {
+            return null;
+        }
+        Path metaFile = directory.resolve("urls").resolve(sha256(imageUrl.getBytes(StandardCharsets.UTF_8)));
+        if (!Files.exists(metaFile)) {
+            return null;
+        }
+        try {
+            Properties meta = new Properties();
+            try (InputStream in = Files.newInputStream(metaFile)) {
+                meta.load(in);
+            }
+            if (!imageUrl.equals(meta.getProperty("url"))) {
+                return null;
+            }
+            String contentHash = meta.getProperty("blob");
+            Path blob = directory.resolve("blobs").resolve(contentHash);
+            byte[] data;
+            try {
+                data = Files.readAllBytes(blob);
+            } catch (NoSuchFileException e) {
+                // 图片内容已被清理，元数据随之作废
+                Files.deleteIfExists(metaFile);
+                return null;
+            }
+            // 以修改时间记录最近使用时间，清理时先删除最久未使用的图片
+            Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+            ImageDownloader.DownloadedImage image = new ImageDownloader.DownloadedImage(data,
+                    meta.getProperty("format"), Integer.parseInt(meta.getProperty("width")),
+                    Integer.parseInt(meta.getProperty("height")));
+            return new Entry(image, meta.getProperty("etag"), meta.getProperty("lastModified"), contentHash,
+                    Long.parseLong(meta.getProperty("expiresAt")));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("读取图片磁盘缓存失败: {} - {}", imageUrl, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 先写入临时文件再移动，其他进程或线程不会读到写了一半的文件
+     */
+    private void diskPut(String imageUrl, Entry entry) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Path blob = directory.resolve("blobs").resolve(entry.contentHash());
+            boolean newBlob = !Files.exists(blob);
+            if (newBlob) {
+                Path temp = Files.createTempFile(directory, "blob", ".tmp");
+                Files.write(temp, entry.image().data());
+                Files.move(temp, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            Properties meta = new Properties();
+            meta.setProperty("url", imageUrl);
+            meta.setProperty("blob", entry.contentHash());
+            meta.setProperty("format", entry.image().format());
+            meta.setProperty("width", String.valueOf(entry.image().width()));
+            meta.setProperty("height", String.valueOf(entry.image().height()));
+            meta.setProperty("expiresAt", String.valueOf(entry.expiresAt()));
+            if (entry.etag() != null) {
+                meta.setProperty("etag", entry.etag());
+            }
+            if (entry.lastModified() != null) {
+                meta.setProperty("lastModified", entry.lastModified());
+            }
+            Path temp = Files.createTempFile(directory, "meta", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                meta.store(out, null);
+            }
+            Files.move(temp, directory.resolve("urls").resolve(sha256(imageUrl.getBytes(StandardCharsets.UTF_8))),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (newBlob && diskBytes.addAndGet(entry.size()) > maxDiskBytes) {
+                trimDisk();
+            }
+        } catch (IOException e) {
+            logger.warn("写入图片磁盘缓存失败: {} - {}", imageUrl, e.getMessage());
+        }
+    }
+
+    /**
+     * 磁盘占用超过上限时，按最近使用时间从旧到新删除图片内容，直到降至上限的 DISK_TRIM_RATIO；
+     * 引用已删除内容的元数据一并删除，图片内容找不到的元数据在读取时也会被删除
+     */
+    private void trimDisk() {
+        synchronized (diskTrimLock) {
+            if (diskBytes.get() <= maxDiskBytes) {
+                return;
+            }
+            Path blobDirectory = directory.resolve("blobs");
+            List<Path> blobs;
+            try (Stream<Path> files = Files.list(blobDirectory)) {
+                blobs = files.sorted(Comparator.comparingLong(ImageCache::lastModifiedOrZero)).toList();
+            } catch (IOException e) {
+                logger.warn("清理图片磁盘缓存失败: {}", e.getMessage());
+                return;
+            }
+            long target = (long) (maxDiskBytes * DISK_TRIM_RATIO);
+            Set<String> removed = new HashSet<>();
+            for (Path blob : blobs) {
+                if (diskBytes.get() <= target) {
+                    break;
+                }
+                long size = sizeOrZero(blob);
+                try {
+                    if (Files.deleteIfExists(blob)) {
+                        diskBytes.addAndGet(-size);
+                        removed.add(blob.getFileName().toString());
+                        diskEvictions.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    logger.warn("删除图片磁盘缓存失败: {} - {}", blob, e.getMessage());
+                }
+            }
+            if (!removed.isEmpty()) {
+                deleteMetaReferencing(removed);
+                logger.info("图片磁盘缓存超过上限，已删除 {} 张最久未使用的图片，当前 {} 字节", removed.size(), diskBytes.get());
+            }
+        }
+    }
+
+    private void deleteMetaReferencing(Set<String> blobs) {
+        try (Stream<Path> files = Files.list(directory.resolve("urls"))) {
+            for (Path metaFile : (Iterable<Path>) files::iterator) {
+                Properties meta = new Properties();
+                try (InputStream in = Files.newInputStream(metaFile)) {
+                    meta.load(in);
+                }
+                if (blobs.contains(meta.getProperty("blob"))) {
+                    Files.deleteIfExists(metaFile);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("清理图片缓存元数据失败: {}", e.getMessage());
+        }
+    }
+
+    private static long sizeOrZero(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long lastModifiedOrZero(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return 当前的命中、未命中和字节数统计
+     */
+    public Stats stats() {
+        long bytes;
+        int entries;
+        synchronized (this) {
+            bytes = memoryBytes;
+            entries = memory.size();
+        }
+        return new Stats(memoryHits.get(), diskHits.get(), misses.get(), revalidations.get(), collapsed.get(),
+                bytesDownloaded.get(), entries, bytes, maxMemoryBytes, directory == null ? 0 : diskBytes.get(),
+                maxDiskBytes, diskEvictions.get());
+    }
+
+    public synchronized void clearMemory() {
+        memory.clear();
+        memoryBytes = 0;
+    }
+
+    /**
+     * 缓存统计
+     * @param memoryHits 内存命中次数
+     * @param diskHits 磁盘命中次数
+     * @param misses 需要完整下载（或下载失败）的次数
+     * @param revalidations 条件请求返回 304、沿用缓存内容的次数
+     * @param collapsed 合并到其他线程正在进行的下载的次数
+     * @param bytesDownloaded 累计下载的图片字节数
+     * @param memoryEntries 内存中的图片数
+     * @param memoryBytes 内存中的图片字节数
+     * @param maxMemoryBytes 内存字节数上限
+     * @param diskBytes 磁盘上的图片字节数，未启用磁盘缓存时为 0
+     * @param maxDiskBytes 磁盘字节数上限
+     * @param diskEvictions 因超过磁盘上限而删除的图片数
+     */
+    public record Stats(long memoryHits, long diskHits, long misses, long revalidations, long collapsed,
+                        long bytesDownloaded, int memoryEntries, long memoryBytes, long maxMemoryBytes,
+                        long diskBytes, long maxDiskBytes, long diskEvictions) {
+    }
+
+    private record Entry(ImageDownloader.DownloadedImage image, String etag, String lastModified,
+                         String contentHash, long expiresAt) {
+
+        boolean isFresh() {
+            return System.currentTimeMillis() < expiresAt;
+        }
+
+        long size() {
+            return image.data().length;
+        }
+    }
+}
@@ -1,27 +1,42 @@
 package cn.daydayup.dev.md2doc.core.util;
 
+import lombok.Getter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPInputStream;
 
 /**
  * @ClassName ImageDownloader
  * @Description 图片下载和处理工具类
+ *              HTTP客户端、大小上限、缓存和故障保护属于实例，由 ConversionOptions 携带；静态方法使用默认实例
  * @Author ZhaoYanNing
  * @Date 2025/10/26
  * @Version 1.0
@@ -31,9 +46,23 @@ public class ImageDownloader {
     private static final Logger logger = LogManager.getLogger(ImageDownloader.class);
 
     /**
-     * 下载超时时间（毫秒）
+     * 默认的连接超时和请求超时
      */
-    private static final int DOWNLOAD_TIMEOUT = 10000; // 10秒
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final String USER_AGENT = "md2doc-image-downloader/1.0";
+
+    /**
+     * 默认的图片字节数上限和像素数上限
+     */
+    public static final long DEFAULT_MAX_IMAGE_BYTES = 20L * 1024 * 1024;
+    public static final long DEFAULT_MAX_IMAGE_PIXELS = 50_000_000L;
+
+    /**
+     * 判断格式和尺寸时先读取的字节数，足以覆盖常见图片的文件头（含 JPEG 的 EXIF 段）
+     */
+    private static final int PROBE_BYTES = 64 * 1024;
 
     /**
      * 最大图片宽度（像素）- 约15cm，适合A4页面
@@ -45,13 +74,93 @@ public class ImageDownloader {
      */
     private static final String[] SUPPORTED_FORMATS = {"jpg", "jpeg", "png", "gif", "bmp", "webp"};
 
+    private static final ImageDownloader DEFAULT_DOWNLOADER = new ImageDownloader(
+            newHttpClient(DEFAULT_CONNECT_TIMEOUT, null), DEFAULT_REQUEST_TIMEOUT, DEFAULT_MAX_IMAGE_BYTES,
+            DEFAULT_MAX_IMAGE_PIXELS, ImageCache.defaultCache(), ImageSourceGuard.defaultGuard());
+
     /**
-     * 下载或读取图片
+     * HTTP客户端：优先使用 HTTP/2，连接在同一实例的请求之间复用
+     */
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+
+    /**
+     * 单张图片（解压后）的字节数上限和像素数（宽 × 高）上限，超出时不再读取，按加载失败处理
+     */
+    private final long maxImageBytes;
+    private final long maxImagePixels;
+
+    /**
+     * 网络图片缓存，为 null 时每次都重新下载
+     */
+    @Getter
+    private final ImageCache cache;
+
+    /**
+     * 图片来源的故障保护（负缓存、按主机熔断、对冲请求），为 null 时不做保护
+     */
+    @Getter
+    private final ImageSourceGuard sourceGuard;
+
+    /**
+     * @param httpClient 下载图片使用的HTTP客户端，可由 newHttpClient 创建
+     * @param requestTimeout 单个请求从发出到读完响应的超时
+     * @param maxImageBytes 图片（解压后）字节数上限
+     * @param maxImagePixels 图片像素数上限，防止体积小但解码后占用大量内存的图片
+     * @param cache 网络图片缓存，为 null 时不缓存
+     * @param sourceGuard 图片来源的故障保护，为 null 时不做保护
+     */
+    public ImageDownloader(HttpClient httpClient, Duration requestTimeout, long maxImageBytes, long maxImagePixels,
+                           ImageCache cache, ImageSourceGuard sourceGuard) {
+        this.httpClient = httpClient;
+        this.requestTimeout = requestTimeout;
+        this.maxImageBytes = Math.min(maxImageBytes, Integer.MAX_VALUE - 8);
+        this.maxImagePixels = maxImagePixels;
+        this.cache = cache;
+        this.sourceGuard = sourceGuard;
+    }
+
+    /**
+     * @return 进程内共用的默认实例：默认超时和上限，使用默认的内存缓存和故障保护
+     */
+    public static ImageDownloader defaultDownloader() {
+        return DEFAULT_DOWNLOADER;
+    }
+
+    /**
+     * 创建下载图片使用的HTTP客户端
+     *
+     * @param connectTimeout 连接超时
+     * @param proxy 代理，为 null 时直连
+     */
+    public static HttpClient newHttpClient(Duration connectTimeout, ProxySelector proxy) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(connectTimeout);
+        if (proxy != null) {
+            builder.proxy(proxy);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 使用默认实例下载或读取图片
      *
      * @param imageSource 图片来源（URL或本地路径）
      * @return DownloadedImage 对象，失败返回 null
      */
     public static DownloadedImage downloadOrReadImage(String imageSource) {
+        return DEFAULT_DOWNLOADER.load(imageSource);
+    }
+
+    /**
+     * 下载或读取图片
+     *
+     * @param imageSource 图片来源（URL或本地路径）
+     * @return DownloadedImage 对象，失败返回 null
+     */
+    public DownloadedImage load(String imageSource) {
         if (imageSource == null || imageSource.trim().isEmpty()) {
             logger.warn("图片来源为空");
             return null;
@@ -75,55 +184,201 @@ public class ImageDownloader {
     }
 
     /**
-     * 从 URL 下载图片
+     * 从 URL 下载图片，设置了缓存时经由缓存获取
      */
-    private static DownloadedImage downloadImageFromUrl(String imageUrl) {
-        logger.info("开始下载网络图片: {}", imageUrl);
-        HttpURLConnection connection = null;
+    private DownloadedImage downloadImageFromUrl(String imageUrl) {
+        if (cache != null) {
+            return cache.get(imageUrl, this);
+        }
+        HttpImage response = fetchImage(imageUrl, null, null);
+        return response == null ? null : response.image();
+    }
 
+    /**
+     * 下载图片，提供 ETag 或 Last-Modified 时发起条件请求
+     *
+     * @param imageUrl 图片URL
+     * @param etag 缓存内容的 ETag，可为 null
+     * @param lastModified 缓存内容的 Last-Modified，可为 null
+     * @return 响应，请求失败或内容无法解析时返回 null
+     */
+    HttpImage fetchImage(String imageUrl, String etag, String lastModified) {
+        URI uri;
         try {
-            URL url = new URL(imageUrl);
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(DOWNLOAD_TIMEOUT);
-            connection.setReadTimeout(DOWNLOAD_TIMEOUT);
-            connection.setRequestProperty("User-Agent", "Mozilla/5.0 (md2doc Image Downloader)");
-
-            int responseCode = connection.getResponseCode();
-            if (responseCode != HttpURLConnection.HTTP_OK) {
-                logger.error("下载图片失败，HTTP 响应码: {} - {}", responseCode, imageUrl);
-                return null;
+            uri = URI.create(imageUrl);
+        } catch (IllegalArgumentException e) {
+            logger.error("图片URL无效: {} - {}", imageUrl, e.getMessage());
+            return null;
+        }
+        String host = uri.getHost();
+        ImageSourceGuard guard = sourceGuard;
+        if (guard != null && !guard.tryAcquire(imageUrl, host)) {
+            logger.warn("图片来源近期失败或主机已熔断，直接使用占位符: {}", imageUrl);
+            return null;
+        }
+
+        // 请求被中断或抛出运行时异常时也要结束本次请求，否则半开熔断器的探测名额一直被占用
+        boolean recorded = false;
+        try {
+            logger.info("开始下载网络图片: {}", imageUrl);
+            HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                    .timeout(requestTimeout)
+                    .header("User-Agent", USER_AGENT)
+                    .header("Accept", "image/*")
+                    .header("Accept-Encoding", "gzip");
+            // HTTP/2 只经 https 的 ALPN 协商；明文 http 直接使用 HTTP/1.1，避免每个请求都携带 h2c 升级头
+            if ("http".equalsIgnoreCase(uri.getScheme())) {
+                request.version(HttpClient.Version.HTTP_1_1);
+            }
+            if (etag != null) {
+                request.header("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                request.header("If-Modified-Since", lastModified);
             }
 
-            try (InputStream inputStream = connection.getInputStream()) {
-                byte[] imageBytes = readAllBytes(inputStream);
-                if (imageBytes == null || imageBytes.length == 0) {
-                    logger.error("图片内容为空: {}", imageUrl);
-                    return null;
+            HttpResponse<InputStream> response = send(request.GET().build(), guard);
+            HttpImage image = toHttpImage(imageUrl, response, etag, lastModified);
+            if (guard != null) {
+                if (image != null) {
+                    guard.recordSuccess(host);
+                } else {
+                    guard.recordFailure(imageUrl, host, response.statusCode() >= 500);
                 }
-                DownloadedImage downloadedImage = createDownloadedImage(imageBytes, imageUrl);
-                if (downloadedImage == null) {
-                    logger.error("无法解析图片格式: {}", imageUrl);
-                    return null;
-                }
-                logger.info("成功下载图片: {} ({}x{})", imageUrl, downloadedImage.width(), downloadedImage.height());
-                return downloadedImage;
+                recorded = true;
             }
-
+            return image;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         } catch (IOException e) {
-            logger.error("下载图片异常: {} - {}", imageUrl, e.getMessage());
+            logger.error("下载图片异常: {} - {}", imageUrl, e.toString());
+            if (guard != null) {
+                guard.recordFailure(imageUrl, host, true);
+                recorded = true;
+            }
             return null;
         } finally {
-            if (connection != null) {
-                connection.disconnect();
+            if (guard != null && !recorded) {
+                guard.recordAbort(host);
+            }
+        }
+    }
+
+    /**
+     * 发送请求；设置了对冲延迟时，请求超过该时长未返回则再发一次，取先成功的响应
+     * 不对冲时同步发送：调用方已在有限并发的线程中，省去异步回调的线程切换
+     */
+    private HttpResponse<InputStream> send(HttpRequest request, ImageSourceGuard guard)
+            throws IOException, InterruptedException {
+        if (guard == null || guard.getHedgeDelay() == null) {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        }
+        CompletableFuture<HttpResponse<InputStream>> primary = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        CompletableFuture<HttpResponse<InputStream>> hedge = null;
+        try {
+            try {
+                return primary.get(guard.getHedgeDelay().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                logger.info("图片请求较慢，发出对冲请求: {}", request.uri());
+                hedge = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+            }
+            CompletableFuture<HttpResponse<InputStream>> winner = new CompletableFuture<>();
+            AtomicInteger failed = new AtomicInteger();
+            BiConsumer<HttpResponse<InputStream>, Throwable> complete = (response, error) -> {
+                if (error == null) {
+                    winner.complete(response);
+                } else if (failed.incrementAndGet() == 2) {
+                    winner.completeExceptionally(error);
+                }
+            };
+            primary.whenComplete(complete);
+            hedge.whenComplete(complete);
+            HttpResponse<InputStream> response = winner.get();
+            guard.recordHedge(hedge.isDone() && !hedge.isCompletedExceptionally() && hedge.getNow(null) == response);
+            // 落后的请求若之后才返回，关闭其响应流以释放连接
+            primary.thenAccept(other -> closeUnless(other, response));
+            hedge.thenAccept(other -> closeUnless(other, response));
+            return response;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            throw cause instanceof IOException io ? io : new IOException(cause);
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
             }
         }
     }
 
+    private static void closeUnless(HttpResponse<InputStream> response, HttpResponse<InputStream> winner) {
+        if (response != winner) {
+            try {
+                response.body().close();
+            } catch (IOException ignored) {
+                // 连接关闭失败不影响结果
+            }
+        }
+    }
+
+    private HttpImage toHttpImage(String imageUrl, HttpResponse<InputStream> response, String etag,
+                                         String lastModified) throws IOException {
+        try (InputStream body = response.body()) {
+            return toHttpImage(imageUrl, response, body, etag, lastModified);
+        }
+    }
+
+    private HttpImage toHttpImage(String imageUrl, HttpResponse<InputStream> response, InputStream body,
+                                         String etag, String lastModified) throws IOException {
+        long maxAge = parseMaxAge(response.headers().firstValue("Cache-Control").orElse(null));
+        if (response.statusCode() == 304 && (etag != null || lastModified != null)) {
+            logger.info("图片未修改，使用缓存: {}", imageUrl);
+            return new HttpImage(true, null, etag, lastModified, maxAge);
+        }
+        if (response.statusCode() != 200) {
+            logger.error("下载图片失败，HTTP 响应码: {} - {}", response.statusCode(), imageUrl);
+            return null;
+        }
+
+        boolean gzip = "gzip".equalsIgnoreCase(response.headers().firstValue("Content-Encoding").orElse(null));
+        // 压缩传输时 Content-Length 是压缩后的长度，不能用于预分配
+        long contentLength = gzip ? -1 : response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        DownloadedImage downloadedImage = readImage(gzip ? new GZIPInputStream(body) : body, contentLength, imageUrl);
+        if (downloadedImage == null) {
+            return null;
+        }
+        logger.info("成功下载图片: {} ({}x{})", imageUrl, downloadedImage.width(), downloadedImage.height());
+        return new HttpImage(false, downloadedImage, response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null), maxAge);
+    }
+
+    /**
+     * 解析 Cache-Control 中的 max-age（秒），no-cache/no-store 视为 0，未给出时返回 -1
+     */
+    static long parseMaxAge(String cacheControl) {
+        if (cacheControl == null) {
+            return -1;
+        }
+        for (String directive : cacheControl.split(",")) {
+            String value = directive.trim().toLowerCase(Locale.ROOT);
+            if (value.equals("no-cache") || value.equals("no-store")) {
+                return 0;
+            }
+            if (value.startsWith("max-age=")) {
+                try {
+                    return Math.max(0, Long.parseLong(value.substring("max-age=".length())));
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
     /**
      * 读取本地图片
      */
-    private static DownloadedImage readLocalImage(String imagePath) {
+    private DownloadedImage readLocalImage(String imagePath) {
         logger.info("开始读取本地图片: {}", imagePath);
 
         try {
@@ -160,11 +415,18 @@ public class ImageDownloader {
                 return null;
             }
 
-            byte[] imageBytes = Files.readAllBytes(path);
-            if (imageBytes == null || imageBytes.length == 0) {
+            long size = Files.size(path);
+            if (size == 0) {
                 logger.error("图片内容为空: {}", path.toAbsolutePath());
                 return null;
             }
+            if (size > maxImageBytes) {
+                logger.error("图片超过大小上限（{} > {} 字节）: {}", size, maxImageBytes, path.toAbsolutePath());
+                return null;
+            }
+
+            // 按文件大小一次读入，不经过中间缓冲区
+            byte[] imageBytes = Files.readAllBytes(path);
 
             DownloadedImage downloadedImage = createDownloadedImage(imageBytes, imageFile.getName());
             if (downloadedImage == null) {
@@ -227,22 +489,18 @@ public class ImageDownloader {
      * 检查 URL 是否可访问（HEAD 请求）
      */
     private static boolean isUrlAccessible(String imageUrl) {
-        HttpURLConnection connection = null;
         try {
-            URL url = new URL(imageUrl);
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("HEAD");
-            connection.setConnectTimeout(5000);
-            connection.setReadTimeout(5000);
-
-            int responseCode = connection.getResponseCode();
-            return responseCode == HttpURLConnection.HTTP_OK;
+            HttpRequest request = HttpRequest.newBuilder(URI.create(imageUrl))
+                    .timeout(Duration.ofSeconds(5))
+                    .header("User-Agent", USER_AGENT)
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .build();
+            return DEFAULT_DOWNLOADER.httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         } catch (Exception e) {
             return false;
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
         }
     }
 
@@ -261,46 +519,108 @@ public class ImageDownloader {
         }
     }
 
-    private static byte[] readAllBytes(InputStream inputStream) throws IOException {
-        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
-            }
-            return outputStream.toByteArray();
+    /**
+     * 流式读取图片：先读取文件头判断格式和尺寸，超出像素上限时不再读取其余内容；
+     * 已知长度时按长度一次分配缓冲区，读取过程中超出字节上限立即放弃
+     *
+     * @param in 图片内容
+     * @param contentLength 内容长度，未知时为 -1
+     * @param sourceHint 图片来源，用于日志和推断格式
+     * @return 图片，超出上限、内容为空或无法解析时返回 null
+     */
+    private DownloadedImage readImage(InputStream in, long contentLength, String sourceHint) throws IOException {
+        long maxBytes = maxImageBytes;
+        if (contentLength > maxBytes) {
+            logger.error("图片超过大小上限（{} > {} 字节）: {}", contentLength, maxBytes, sourceHint);
+            return null;
+        }
+        byte[] buffer = new byte[(int) (contentLength > 0 ? contentLength : Math.min(PROBE_BYTES, maxBytes))];
+        int length = in.readNBytes(buffer, 0, Math.min(buffer.length, PROBE_BYTES));
+        ImageHeader header = probeHeader(buffer, length, sourceHint);
+        if (header != null && !withinPixelLimit(header, sourceHint)) {
+            return null;
         }
-    }
 
-    private static DownloadedImage createDownloadedImage(byte[] imageBytes, String sourceHint) {
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(imageBytes);
-             ImageInputStream imageInputStream = ImageIO.createImageInputStream(bais)) {
+        while (true) {
+            if (length == buffer.length) {
+                int next = in.read();
+                if (next < 0) {
+                    break;
+                }
+                if (length >= maxBytes) {
+                    logger.error("图片超过大小上限（> {} 字节）: {}", maxBytes, sourceHint);
+                    return null;
+                }
+                buffer = Arrays.copyOf(buffer, (int) Math.min(maxBytes, Math.max(buffer.length * 2L, PROBE_BYTES)));
+                buffer[length++] = (byte) next;
+            }
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        if (length == 0) {
+            logger.error("图片内容为空: {}", sourceHint);
+            return null;
+        }
 
-            if (imageInputStream == null) {
-                logger.error("无法创建图片输入流: {}", sourceHint);
+        byte[] data = length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+        if (header == null) {
+            // 文件头超出预读范围（如 EXIF 很大的 JPEG），用完整内容再判断一次
+            header = probeHeader(data, length, sourceHint);
+            if (header == null) {
+                logger.error("无法解析图片格式: {}", sourceHint);
                 return null;
             }
+            if (!withinPixelLimit(header, sourceHint)) {
+                return null;
+            }
+        }
+        return new DownloadedImage(data, header.format(), header.width(), header.height());
+    }
 
+    private boolean withinPixelLimit(ImageHeader header, String sourceHint) {
+        if ((long) header.width() * header.height() > maxImagePixels) {
+            logger.error("图片像素数超过上限（{}x{}）: {}", header.width(), header.height(), sourceHint);
+            return false;
+        }
+        return true;
+    }
+
+    private DownloadedImage createDownloadedImage(byte[] imageBytes, String sourceHint) {
+        ImageHeader header = probeHeader(imageBytes, imageBytes.length, sourceHint);
+        if (header == null || !withinPixelLimit(header, sourceHint)) {
+            return null;
+        }
+        return new DownloadedImage(imageBytes, header.format(), header.width(), header.height());
+    }
+
+    /**
+     * 只读取文件头判断图片格式和尺寸，不解码像素；内容不完整或无法识别时返回 null
+     * 使用内存输入流，避免 ImageIO 默认的磁盘缓存
+     */
+    private static ImageHeader probeHeader(byte[] data, int length, String sourceHint) {
+        try (ImageInputStream imageInputStream = new MemoryCacheImageInputStream(new ByteArrayInputStream(data, 0, length))) {
             Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
             if (!readers.hasNext()) {
-                logger.error("找不到可用的图片读取器: {}", sourceHint);
                 return null;
             }
-
             ImageReader reader = readers.next();
-            reader.setInput(imageInputStream, true, true);
-            int width = reader.getWidth(0);
-            int height = reader.getHeight(0);
-            String formatName = reader.getFormatName();
-            reader.dispose();
-
-            if (formatName == null || formatName.trim().isEmpty()) {
-                formatName = guessFormatFromName(sourceHint);
+            try {
+                reader.setInput(imageInputStream, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                String formatName = reader.getFormatName();
+                if (formatName == null || formatName.trim().isEmpty()) {
+                    formatName = guessFormatFromName(sourceHint);
+                }
+                return new ImageHeader(normalizeFormat(formatName), width, height);
+            } finally {
+                reader.dispose();
             }
-
-            return new DownloadedImage(imageBytes, normalizeFormat(formatName), width, height);
-        } catch (Exception e) {
-            logger.error("解析图片失败: {} - {}", sourceHint, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            logger.debug("读取图片文件头失败: {} - {}", sourceHint, e.getMessage());
             return null;
         }
     }
@@ -320,6 +640,20 @@ public class ImageDownloader {
         return formatName == null ? "png" : formatName.toLowerCase(Locale.ROOT);
     }
 
+    /**
+     * 一次HTTP请求的结果
+     *
+     * @param notModified 条件请求返回 304，内容沿用缓存
+     * @param image 下载的图片，304 时为 null
+     * @param maxAgeSeconds Cache-Control 中的 max-age，未给出时为 -1
+     */
+    record HttpImage(boolean notModified, DownloadedImage image, String etag, String lastModified,
+                     long maxAgeSeconds) {
+    }
+
+    private record ImageHeader(String format, int width, int height) {
+    }
+
     public record DownloadedImage(byte[] data, String format, int width, int height) {
 
         public ByteArrayInputStream toInputStream() {
@@ -0,0 +1,217 @@
+package cn.daydayup.dev.md2doc.core.util;
+
+import cn.daydayup.dev.md2doc.core.model.WordParam;
+import lombok.Getter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * @ClassName ImageFetcher
+ * @Description 并发加载图片：限制总并发数和单个主机的并发数，运行时支持虚拟线程时使用虚拟线程
+ *              实例线程安全，多次转换共用；每篇文档的图片加载时限由 ConversionContext 控制
+ * @Author ZhaoYanNing
+ * @Date 2025/11/26 10:15
+ * @Version 1.0
+ */
+public class ImageFetcher {
+
+    private static final Logger logger = LogManager.getLogger(ImageFetcher.class);
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 32;
+    public static final int DEFAULT_PER_HOST_CONCURRENCY = 6;
+    public static final Duration DEFAULT_DEADLINE = Duration.ofSeconds(30);
+
+    private static final ImageFetcher DEFAULT_FETCHER =
+            new ImageFetcher(DEFAULT_MAX_CONCURRENCY, DEFAULT_PER_HOST_CONCURRENCY, DEFAULT_DEADLINE);
+
+    private final ExecutorService executor;
+    private final int maxConcurrency;
+    private final int perHostConcurrency;
+
+    /**
+     * 调度状态，均由 this 保护：正在加载的图片数、各主机的排队情况、有排队任务且未达并发上限的主机（轮流调度）
+     * 任务只有在取得主机额度和总额度之后才提交给线程池，线程不会阻塞在等待许可上
+     */
+    private int running;
+    private final Map<String, Host> hosts = new HashMap<>();
+    private final Deque<Host> ready = new ArrayDeque<>();
+
+    /**
+     * 单篇文档加载全部图片的时限，超时的图片以占位符代替
+     */
+    @Getter
+    private final Duration deadline;
+
+    /**
+     * @param maxConcurrency 同时加载的图片总数上限
+     * @param perHostConcurrency 同一主机同时加载的图片数上限
+     * @param deadline 单篇文档加载全部图片的时限
+     */
+    public ImageFetcher(int maxConcurrency, int perHostConcurrency, Duration deadline) {
+        if (maxConcurrency <= 0 || perHostConcurrency <= 0) {
+            throw new IllegalArgumentException("并发数必须大于0");
+        }
+        this.executor = newExecutor(maxConcurrency);
+        this.maxConcurrency = maxConcurrency;
+        this.perHostConcurrency = perHostConcurrency;
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return 进程内共用的默认实例
+     */
+    public static ImageFetcher defaultFetcher() {
+        return DEFAULT_FETCHER;
+    }
+
+    /**
+     * 异步加载一张图片：按主机排队，取得主机额度和总额度后才开始加载，等待某个主机时不占用其他主机的并发额度
+     * @param imageSource 图片来源（URL 或本地路径）
+     * @param loader 实际加载图片的方法，如 WordParam::image 或 SharedResources::image
+     * @return 图片参数或占位符文本
+     */
+    public CompletableFuture<WordParam> fetch(String imageSource, Function<String, WordParam> loader) {
+        CompletableFuture<WordParam> future = new CompletableFuture<>();
+        List<Runnable> started;
+        synchronized (this) {
+            String key = hostKey(imageSource);
+            Host host = hosts.computeIfAbsent(key, ignored -> new Host(key));
+            host.waiting.add(new Task(future, () -> loader.apply(imageSource)));
+            markReady(host);
+            started = dispatch();
+        }
+        started.forEach(executor::execute);
+        return future;
+    }
+
+    /**
+     * 取出可以开始的任务：总额度未满时依次从各主机取一个，已达主机上限的主机不参与
+     * 调用方持有 this，取出的任务在释放锁之后提交
+     */
+    private List<Runnable> dispatch() {
+        List<Runnable> started = new ArrayList<>();
+        while (running < maxConcurrency && !ready.isEmpty()) {
+            Host host = ready.poll();
+            host.ready = false;
+            // 等待方已取消（超时或转换结束）的任务直接丢弃，不占用额度
+            while (!host.waiting.isEmpty() && host.waiting.peek().future().isDone()) {
+                host.waiting.poll();
+            }
+            if (host.waiting.isEmpty()) {
+                if (host.active == 0) {
+                    hosts.remove(host.key);
+                }
+                continue;
+            }
+            Task task = host.waiting.poll();
+            host.active++;
+            running++;
+            markReady(host);
+            started.add(() -> run(host, task));
+        }
+        return started;
+    }
+
+    private void markReady(Host host) {
+        if (!host.ready && !host.waiting.isEmpty() && host.active < hostLimit(host)) {
+            host.ready = true;
+            ready.add(host);
+        }
+    }
+
+    private void run(Host host, Task task) {
+        try {
+            // 排队期间被取消的图片不再加载
+            if (!task.future().isDone()) {
+                task.future().complete(task.loader().get());
+            }
+        } catch (Throwable e) {
+            task.future().completeExceptionally(e);
+        } finally {
+            List<Runnable> started;
+            synchronized (this) {
+                running--;
+                host.active--;
+                if (host.active == 0 && host.waiting.isEmpty()) {
+                    hosts.remove(host.key);
+                } else {
+                    markReady(host);
+                }
+                started = dispatch();
+            }
+            started.forEach(executor::execute);
+        }
+    }
+
+    private int hostLimit(Host host) {
+        return host.key.isEmpty() ? Integer.MAX_VALUE : perHostConcurrency;
+    }
+
+    /**
+     * 网络图片按主机限流，本地图片（键为空串）只受总并发数限制
+     */
+    private static String hostKey(String imageSource) {
+        if (!imageSource.startsWith("http://") && !imageSource.startsWith("https://")) {
+            return "";
+        }
+        String host;
+        try {
+            host = URI.create(imageSource.trim()).getHost();
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+        return host == null ? "" : host.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 某个主机的排队任务和正在加载的任务数
+     */
+    private static class Host {
+        private final String key;
+        private final Deque<Task> waiting = new ArrayDeque<>();
+        private int active;
+        private boolean ready;
+
+        Host(String key) {
+            this.key = key;
+        }
+    }
+
+    private record Task(CompletableFuture<WordParam> future, Supplier<WordParam> loader) {
+    }
+
+    /**
+     * 运行在 Java 21 及以上时每张图片一个虚拟线程，否则使用固定大小的守护线程池；并发数由调度保证，线程池大小只是上限
+     */
+    private static ExecutorService newExecutor(int maxConcurrency) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.debug("运行时不支持虚拟线程，图片加载使用 {} 个平台线程", maxConcurrency);
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+                Thread thread = new Thread(runnable, "md2doc-image-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
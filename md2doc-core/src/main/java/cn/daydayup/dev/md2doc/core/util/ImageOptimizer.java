@@ -0,0 +1,337 @@
+package cn.daydayup.dev.md2doc.core.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @ClassName ImageOptimizer
+ * @Description 图片优化：把超过目标宽度的图片缩小到页面显示宽度所需的像素数后再嵌入文档
+ *              JPEG 按指定质量重新压缩；无透明通道的无损图片按内容选择格式：照片转为 JPEG，截图保持 PNG，颜色不超过 256 种时写成调色板 PNG
+ *              BMP 这类未压缩的图片即使不缩小也会转换；结果按图片内容的 SHA-256 和目标宽度缓存
+ * @Author ZhaoYanNing
+ * @Date 2025/12/3 10:15
+ * @Version 1.0
+ */
+public class ImageOptimizer {
+
+    private static final Logger logger = LogManager.getLogger(ImageOptimizer.class);
+
+    /**
+     * ImageDownloader.MAX_WIDTH_PIXELS 对应的显示分辨率
+     */
+    private static final int DISPLAY_DPI = 96;
+
+    public static final int DEFAULT_DPI = 192;
+    public static final float DEFAULT_JPEG_QUALITY = 0.85f;
+    public static final long DEFAULT_MAX_CACHE_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * 抽样得到的不同颜色超过该比例时视为照片
+     */
+    private static final int SAMPLE_SIZE = 128;
+    private static final double PHOTO_COLOR_RATIO = 0.25;
+
+    private final int maxWidth;
+    private final float jpegQuality;
+    private final long maxCacheBytes;
+
+    private final LinkedHashMap<String, ImageDownloader.DownloadedImage> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cacheBytes;
+
+    private final AtomicLong optimized = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    /**
+     * @param dpi 图片按页面显示宽度保留的分辨率，不低于 96（即 ImageDownloader.MAX_WIDTH_PIXELS 个像素）
+     * @param jpegQuality JPEG 压缩质量，0 到 1
+     * @param maxCacheBytes 优化结果缓存的字节数上限
+     */
+    public ImageOptimizer(int dpi, float jpegQuality, long maxCacheBytes) {
+        if (dpi < DISPLAY_DPI) {
+            throw new IllegalArgumentException("图片分辨率不应低于 " + DISPLAY_DPI + " dpi: " + dpi);
+        }
+        if (jpegQuality <= 0 || jpegQuality > 1) {
+            throw new IllegalArgumentException("JPEG 压缩质量应在 0 到 1 之间: " + jpegQuality);
+        }
+        this.maxWidth = ImageDownloader.MAX_WIDTH_PIXELS * dpi / DISPLAY_DPI;
+        this.jpegQuality = jpegQuality;
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    /**
+     * 优化图片，无需优化、无法解码或优化后反而更大时返回原图
+     * 缩小后的图片与原图宽高比相同，按 ImageDownloader.calculateAdaptiveSize 计算出的显示尺寸不变
+     * @param image 原图
+     * @return 优化后的图片
+     */
+    public ImageDownloader.DownloadedImage optimize(ImageDownloader.DownloadedImage image) {
+        String format = image.format();
+        boolean oversized = image.width() > maxWidth;
+        boolean uncompressed = "bmp".equals(format);
+        // GIF 可能是动图，保持原样
+        if ("gif".equals(format) || !oversized && !uncompressed) {
+            return image;
+        }
+
+        String key = sha256(image.data()) + "@" + maxWidth + "/" + jpegQuality;
+        ImageDownloader.DownloadedImage cached = cacheGet(key);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            return cached;
+        }
+
+        ImageDownloader.DownloadedImage result = image;
+        try {
+            BufferedImage decoded = decode(image.data(), image.width());
+            if (decoded != null) {
+                BufferedImage scaled = oversized ? scale(decoded, maxWidth) : decoded;
+                ImageDownloader.DownloadedImage encoded = encode(scaled, format);
+                if (encoded.data().length < image.data().length) {
+                    result = encoded;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("图片优化失败，使用原图: {}", e.getMessage());
+        }
+
+        optimized.incrementAndGet();
+        bytesIn.addAndGet(image.data().length);
+        bytesOut.addAndGet(result.data().length);
+        logger.debug("图片优化: {}x{} {} {}KB -> {}x{} {} {}KB", image.width(), image.height(), format,
+                image.data().length / 1024, result.width(), result.height(), result.format(), result.data().length / 1024);
+        cachePut(key, result);
+        return result;
+    }
+
+    /**
+     * 解码图片；远大于目标宽度时按整数倍抽样解码，保留至少两倍目标宽度供后续平滑缩小，减少解码的内存和时间
+     */
+    private BufferedImage decode(byte[] data, int width) throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = width / (maxWidth * 2);
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 逐级减半的双线性缩放，每一步只缩小一半，避免一次大比例缩放产生锯齿
+     */
+    private static BufferedImage scale(BufferedImage source, int targetWidth) {
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = width == targetWidth ? targetHeight : Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width > targetWidth);
+        return current;
+    }
+
+    private ImageDownloader.DownloadedImage encode(BufferedImage image, String sourceFormat) throws IOException {
+        boolean alpha = image.getColorModel().hasAlpha();
+        boolean jpeg = "jpeg".equals(sourceFormat) || "jpg".equals(sourceFormat);
+        if (!alpha && (jpeg || isPhoto(image))) {
+            BufferedImage rgb = toType(image, BufferedImage.TYPE_INT_RGB);
+            return new ImageDownloader.DownloadedImage(writeJpeg(rgb), "jpeg", image.getWidth(), image.getHeight());
+        }
+        BufferedImage indexed = toIndexed(image);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(indexed != null ? indexed : image, "png", output);
+        return new ImageDownloader.DownloadedImage(output.toByteArray(), "png", image.getWidth(), image.getHeight());
+    }
+
+    private byte[] writeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutput = new MemoryCacheImageOutputStream(output)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(imageOutput);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * 按网格抽样判断是否为照片：照片的相邻像素颜色几乎都不同，截图和图表只有少量颜色
+     */
+    private static boolean isPhoto(BufferedImage image) {
+        int stepX = Math.max(1, image.getWidth() / SAMPLE_SIZE);
+        int stepY = Math.max(1, image.getHeight() / SAMPLE_SIZE);
+        Set<Integer> colors = new HashSet<>();
+        int samples = 0;
+        for (int y = 0; y < image.getHeight(); y += stepY) {
+            for (int x = 0; x < image.getWidth(); x += stepX) {
+                colors.add(image.getRGB(x, y));
+                samples++;
+            }
+        }
+        return colors.size() > samples * PHOTO_COLOR_RATIO;
+    }
+
+    /**
+     * 颜色不超过 256 种时转换为调色板图片，PNG 每个像素只占一个字节；颜色更多时返回 null
+     */
+    private static BufferedImage toIndexed(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        Map<Integer, Integer> palette = new HashMap<>();
+        for (int pixel : pixels) {
+            if (palette.putIfAbsent(pixel, palette.size()) == null && palette.size() > 256) {
+                return null;
+            }
+        }
+        int[] colors = new int[palette.size()];
+        palette.forEach((color, index) -> colors[index] = color);
+        int bits = colors.length <= 2 ? 1 : colors.length <= 4 ? 2 : colors.length <= 16 ? 4 : 8;
+        IndexColorModel colorModel = new IndexColorModel(bits, colors.length, colors, 0,
+                image.getColorModel().hasAlpha(), -1, DataBuffer.TYPE_BYTE);
+        BufferedImage indexed = new BufferedImage(width, height,
+                bits == 8 ? BufferedImage.TYPE_BYTE_INDEXED : BufferedImage.TYPE_BYTE_BINARY, colorModel);
+        WritableRaster raster = indexed.getRaster();
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x] = palette.get(pixels[y * width + x]);
+            }
+            raster.setPixels(0, y, width, 1, row);
+        }
+        return indexed;
+    }
+
+    private static BufferedImage toType(BufferedImage image, int type) {
+        if (image.getType() == type) {
+            return image;
+        }
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), type);
+        Graphics2D graphics = converted.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return converted;
+    }
+
+    private synchronized ImageDownloader.DownloadedImage cacheGet(String key) {
+        return cache.get(key);
+    }
+
+    private synchronized void cachePut(String key, ImageDownloader.DownloadedImage image) {
+        int size = image.data().length;
+        if (size > maxCacheBytes || cache.containsKey(key)) {
+            return;
+        }
+        cache.put(key, image);
+        cacheBytes += size;
+        Iterator<ImageDownloader.DownloadedImage> eldest = cache.values().iterator();
+        while (cacheBytes > maxCacheBytes && eldest.hasNext()) {
+            cacheBytes -= eldest.next().data().length;
+            eldest.remove();
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 区分优化参数的缓存键，参数不同的片段渲染结果不能共用
+     */
+    public String cacheKey() {
+        return "optimize:" + maxWidth + "/" + jpegQuality;
+    }
+
+    /**
+     * @return 当前的优化次数、缓存命中次数和字节数统计
+     */
+    public Stats stats() {
+        int entries;
+        long bytes;
+        synchronized (this) {
+            entries = cache.size();
+            bytes = cacheBytes;
+        }
+        return new Stats(maxWidth, optimized.get(), cacheHits.get(), bytesIn.get(), bytesOut.get(), entries, bytes);
+    }
+
+    /**
+     * 优化统计
+     * @param maxWidth 图片保留的最大宽度（像素）
+     * @param optimized 实际执行优化的次数
+     * @param cacheHits 直接使用缓存结果的次数
+     * @param bytesIn 优化前的累计字节数
+     * @param bytesOut 优化后的累计字节数
+     * @param cacheEntries 缓存的图片数
+     * @param cacheBytes 缓存的字节数
+     */
+    public record Stats(int maxWidth, long optimized, long cacheHits, long bytesIn, long bytesOut, int cacheEntries,
+                        long cacheBytes) {
+    }
+}
@@ -0,0 +1,243 @@
+package cn.daydayup.dev.md2doc.core.util;
+
+import lombok.Getter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @ClassName ImageSourceGuard
+ * @Description 图片来源的故障保护：最近失败的URL在一段时间内直接判定失败（负缓存），
+ *              同一主机连续失败达到阈值后熔断，熔断期间该主机的请求立即失败，到期后只放行一个探测请求
+ *              可选对慢请求发出对冲请求，先返回的结果生效
+ * @Author ZhaoYanNing
+ * @Date 2025/11/27 10:30
+ * @Version 1.0
+ */
+public class ImageSourceGuard {
+
+    private static final Logger logger = LogManager.getLogger(ImageSourceGuard.class);
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+    public static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofMinutes(1);
+
+    /**
+     * 负缓存最多记录的URL数，超出时先清理过期记录，仍超出则清空
+     */
+    private static final int MAX_NEGATIVE_ENTRIES = 10_000;
+
+    private static final ImageSourceGuard DEFAULT_GUARD =
+            new ImageSourceGuard(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION, DEFAULT_NEGATIVE_TTL, null);
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final long negativeTtlMillis;
+
+    /**
+     * 请求超过该时长仍未返回时发出对冲请求，为 null 时不对冲
+     */
+    @Getter
+    private final Duration hedgeDelay;
+
+    private final ConcurrentMap<String, Long> failedUrls = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong circuitRejections = new AtomicLong();
+    private final AtomicLong circuitOpens = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /**
+     * @param failureThreshold 主机连续失败多少次后熔断
+     * @param openDuration 熔断持续时长
+     * @param negativeTtl 失败的URL在多长时间内不再请求
+     * @param hedgeDelay 发出对冲请求前等待的时长，为 null 时不对冲
+     */
+    public ImageSourceGuard(int failureThreshold, Duration openDuration, Duration negativeTtl, Duration hedgeDelay) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold 必须大于0");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openDuration.toMillis();
+        this.negativeTtlMillis = negativeTtl.toMillis();
+        this.hedgeDelay = hedgeDelay;
+    }
+
+    /**
+     * @return 进程内共用的默认实例，不对冲
+     */
+    public static ImageSourceGuard defaultGuard() {
+        return DEFAULT_GUARD;
+    }
+
+    /**
+     * 判断是否可以请求该URL：URL最近失败过或主机处于熔断中时返回 false
+     * @param imageUrl 图片URL
+     * @param host 主机名
+     */
+    public boolean tryAcquire(String imageUrl, String host) {
+        Long failedUntil = failedUrls.get(imageUrl);
+        if (failedUntil != null) {
+            if (System.currentTimeMillis() < failedUntil) {
+                negativeHits.incrementAndGet();
+                return false;
+            }
+            failedUrls.remove(imageUrl, failedUntil);
+        }
+        if (host != null && !breaker(host).tryAcquire()) {
+            circuitRejections.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public void recordSuccess(String host) {
+        successes.incrementAndGet();
+        if (host != null) {
+            breaker(host).recordSuccess();
+        }
+    }
+
+    /**
+     * 记录一次失败，URL进入负缓存
+     * @param imageUrl 图片URL
+     * @param host 主机名
+     * @param hostFailure 是否为主机故障（连接失败、超时、5xx），URL本身的问题（如 404、内容无法解析）不计入熔断
+     */
+    public void recordFailure(String imageUrl, String host, boolean hostFailure) {
+        failures.incrementAndGet();
+        if (failedUrls.size() >= MAX_NEGATIVE_ENTRIES) {
+            long now = System.currentTimeMillis();
+            failedUrls.values().removeIf(until -> until <= now);
+            if (failedUrls.size() >= MAX_NEGATIVE_ENTRIES) {
+                failedUrls.clear();
+            }
+        }
+        failedUrls.put(imageUrl, System.currentTimeMillis() + negativeTtlMillis);
+        if (host == null) {
+            return;
+        }
+        if (hostFailure) {
+            if (breaker(host).recordFailure()) {
+                circuitOpens.incrementAndGet();
+                logger.warn("图片主机 {} 连续失败，熔断 {}ms", host, openMillis);
+            }
+        } else {
+            breaker(host).recordSuccess();
+        }
+    }
+
+    /**
+     * 记录一次未得到结果的请求（被中断或抛出运行时异常）：URL不进入负缓存，也不计入连续失败；
+     * 若该请求是半开熔断器的探测请求，按探测失败处理，重新熔断
+     * @param host 主机名
+     */
+    public void recordAbort(String host) {
+        if (host != null && breaker(host).abortProbe()) {
+            circuitOpens.incrementAndGet();
+            logger.warn("图片主机 {} 的探测请求未完成，继续熔断 {}ms", host, openMillis);
+        }
+    }
+
+    void recordHedge(boolean won) {
+        hedges.incrementAndGet();
+        if (won) {
+            hedgeWins.incrementAndGet();
+        }
+    }
+
+    private Breaker breaker(String host) {
+        return breakers.computeIfAbsent(host.toLowerCase(Locale.ROOT), key -> new Breaker());
+    }
+
+    /**
+     * @return 当前的成功、失败、负缓存命中和熔断统计
+     */
+    public Stats stats() {
+        long now = System.currentTimeMillis();
+        int openHosts = (int) breakers.values().stream().filter(breaker -> breaker.isOpen(now)).count();
+        return new Stats(successes.get(), failures.get(), negativeHits.get(), circuitRejections.get(),
+                circuitOpens.get(), openHosts, failedUrls.size(), hedges.get(), hedgeWins.get());
+    }
+
+    /**
+     * 故障保护统计
+     * @param successes 成功的请求数
+     * @param failures 失败的请求数
+     * @param negativeHits 因URL最近失败过而直接跳过的次数
+     * @param circuitRejections 因主机熔断而直接跳过的次数
+     * @param circuitOpens 熔断次数
+     * @param openHosts 当前处于熔断中的主机数
+     * @param negativeEntries 负缓存中的URL数
+     * @param hedges 发出的对冲请求数
+     * @param hedgeWins 对冲请求先于原请求返回的次数
+     */
+    public record Stats(long successes, long failures, long negativeHits, long circuitRejections, long circuitOpens,
+                        int openHosts, int negativeEntries, long hedges, long hedgeWins) {
+    }
+
+    /**
+     * 单个主机的熔断器：关闭时放行全部请求；打开时拒绝全部请求；到期后半开，只放行一个探测请求
+     */
+    private class Breaker {
+
+        private int consecutiveFailures;
+        private long openUntil;
+        private boolean probing;
+
+        synchronized boolean tryAcquire() {
+            if (openUntil == 0) {
+                return true;
+            }
+            if (System.currentTimeMillis() < openUntil || probing) {
+                return false;
+            }
+            probing = true;
+            return true;
+        }
+
+        synchronized void recordSuccess() {
+            consecutiveFailures = 0;
+            openUntil = 0;
+            probing = false;
+        }
+
+        /**
+         * @return 本次失败是否使熔断器打开
+         */
+        synchronized boolean recordFailure() {
+            consecutiveFailures++;
+            if (probing || (openUntil == 0 && consecutiveFailures >= failureThreshold)) {
+                openUntil = System.currentTimeMillis() + openMillis;
+                probing = false;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return 是否结束了一次探测（熔断器因此重新打开）
+         */
+        synchronized boolean abortProbe() {
+            if (!probing) {
+                return false;
+            }
+            openUntil = System.currentTimeMillis() + openMillis;
+            probing = false;
+            return true;
+        }
+
+        synchronized boolean isOpen(long now) {
+            return openUntil != 0 && (now < openUntil || probing);
+        }
+    }
+}
@@ -1,6 +1,21 @@
 package org.apache.poi.xddf.usermodel.chart;
 
 import lombok.val;
+import org.apache.poi.ooxml.POIXMLDocumentPart;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.PackagingURIHelper;
+import org.apache.poi.xwpf.usermodel.XWPFChart;
+import org.apache.poi.xwpf.usermodel.XWPFRelation;
+import org.apache.xmlbeans.XmlException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.Consumer;
 
 public class PoiUtil {
     public static String getTitle(XDDFChartData.Series series) {
@@ -18,4 +33,68 @@ public class PoiUtil {
         }
         return strCache.getPtArray(0).getV();
     }
+
+    /**
+     * 提交图表（写入内嵌工作簿并序列化图表XML），返回图表部件内容
+     */
+    public static byte[] commitChart(XDDFChart chart) throws IOException {
+        chart.commit();
+        try (InputStream in = chart.getPackagePart().getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * 把已写好的 .xlsx 作为图表的内嵌工作簿，不经过 XSSFWorkbook；图表中已有内嵌工作簿时不要调用
+     * 部件名和关系与 XDDFChart.saveWorkbook 创建的相同
+     * @param chart 图表
+     * @param xlsx 工作簿内容
+     */
+    public static void attachWorkbook(XDDFChart chart, byte[] xlsx) throws IOException {
+        PackageRelationship relationship = chart.createRelationshipInChart(chart.getChartWorkbookRelation(),
+                chart.getChartFactory(), chart.getChartIndex());
+        chart.setExternalId(relationship.getId());
+        try {
+            PackagePart part = chart.getPackagePart().getRelatedPart(relationship);
+            try (OutputStream out = part.getOutputStream()) {
+                out.write(xlsx);
+            }
+            // 与 saveWorkbook 相同，标记为已提交，保存文档时不会清空已写入的内容
+            for (POIXMLDocumentPart.RelationPart relationPart : chart.getRelationParts()) {
+                if (relationPart.getRelationship().getId().equals(relationship.getId())) {
+                    relationPart.getDocumentPart().setCommitted(true);
+                }
+            }
+        } catch (InvalidFormatException e) {
+            throw new IOException("写入内嵌工作簿失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 在不属于任何文档的临时包中加载图表部件，修改后返回新的图表部件内容
+     * 只处理图表XML本身，内嵌工作簿等关联部件保持不变
+     * @param chartXml 图表部件内容
+     * @param update 对图表的修改
+     * @return 修改后的图表部件内容
+     */
+    public static byte[] updateChart(byte[] chartXml, Consumer<XDDFChart> update) throws IOException {
+        OPCPackage pkg = OPCPackage.create(new ByteArrayOutputStream());
+        try {
+            PackagePart part = pkg.createPart(PackagingURIHelper.createPartName("/word/charts/chart1.xml"),
+                    XWPFRelation.CHART.getContentType());
+            try (OutputStream out = part.getOutputStream()) {
+                out.write(chartXml);
+            }
+            XDDFChart chart = new XWPFChart(part) {
+            };
+            // 内存部件的输出流追加写入，提交前先清空已解析的原内容
+            part.clear();
+            update.accept(chart);
+            return commitChart(chart);
+        } catch (InvalidFormatException | XmlException e) {
+            throw new IOException("加载图表部件失败: " + e.getMessage(), e);
+        } finally {
+            pkg.revert();
+        }
+    }
 }
@@ -0,0 +1,25 @@
+package org.apache.poi.xwpf.usermodel;
+
+import org.openxmlformats.schemas.drawingml.x2006.main.CTNonVisualDrawingProps;
+import org.openxmlformats.schemas.drawingml.x2006.wordprocessingDrawing.CTInline;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTDrawing;
+
+public class PoiDrawingUtil {
+
+    /**
+     * 在run中插入已有绘图元素的副本，图片关系沿用原绘图元素，只为副本分配新的绘图对象ID
+     * 绘图对象ID由文档的ID管理器分配，与之后 XWPFRun.addPicture 分配的ID不会重复
+     * @param run 目标run，须与原绘图元素属于同一部件
+     * @param drawing 原绘图元素
+     */
+    public static void copyDrawing(XWPFRun run, CTDrawing drawing) {
+        CTDrawing copy = run.getCTR().addNewDrawing();
+        copy.set(drawing);
+        long id = run.getParent().getDocument().getDrawingIdManager().reserveNew();
+        for (CTInline inline : copy.getInlineArray()) {
+            CTNonVisualDrawingProps docPr = inline.getDocPr();
+            docPr.setId(id);
+            docPr.setName("Drawing " + id);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package cn.daydayup.dev.md2doc.service.config;
+
+import cn.daydayup.dev.md2doc.core.util.ImageCache;
+import cn.daydayup.dev.md2doc.core.util.ImageDownloader;
+import cn.daydayup.dev.md2doc.core.util.ImageOptimizer;
+import cn.daydayup.dev.md2doc.core.util.ImageSourceGuard;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * 网络图片下载配置：HTTP客户端的超时和代理，缓存的内存上限、磁盘目录、磁盘上限和无需重新验证的时长，
+ * 失败来源的负缓存、按主机熔断和对冲请求，以及嵌入文档前的图片优化；组装成一个下载器实例，由转换参数携带，所有转换共用
+ */
+@Configuration
+public class ImageDownloadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageDownloadConfig.class);
+
+    @Bean
+    public ImageCache imageCache(@Value("${md2doc.image-cache.memory-mb:64}") long memoryMb,
+                                 @Value("${md2doc.image-cache.directory:}") String directory,
+                                 @Value("${md2doc.image-cache.disk-mb:1024}") long diskMb,
+                                 @Value("${md2doc.image-cache.freshness-minutes:10}") long freshnessMinutes) {
+        ImageCache imageCache = new ImageCache(memoryMb * 1024 * 1024,
+                directory == null || directory.isBlank() ? null : Paths.get(directory), diskMb * 1024 * 1024,
+                Duration.ofMinutes(freshnessMinutes));
+        log.info("图片缓存：内存上限 {}MB，磁盘目录 {}，磁盘上限 {}MB", memoryMb,
+                directory == null || directory.isBlank() ? "未启用" : directory, diskMb);
+        return imageCache;
+    }
+
+    @Bean
+    public ImageSourceGuard imageSourceGuard(@Value("${md2doc.image-guard.failure-threshold:5}") int failureThreshold,
+                                             @Value("${md2doc.image-guard.open-seconds:30}") long openSeconds,
+                                             @Value("${md2doc.image-guard.negative-ttl-seconds:60}") long negativeTtlSeconds,
+                                             @Value("${md2doc.image-guard.hedge-delay-ms:0}") long hedgeDelayMs) {
+        ImageSourceGuard guard = new ImageSourceGuard(failureThreshold, Duration.ofSeconds(openSeconds),
+                Duration.ofSeconds(negativeTtlSeconds), hedgeDelayMs > 0 ? Duration.ofMillis(hedgeDelayMs) : null);
+        log.info("图片来源保护：连续失败 {} 次熔断 {}s，失败URL {}s 内不再请求，对冲延迟 {}", failureThreshold, openSeconds,
+                negativeTtlSeconds, hedgeDelayMs > 0 ? hedgeDelayMs + "ms" : "未启用");
+        return guard;
+    }
+
+    @Bean
+    public ImageDownloader imageDownloader(@Value("${md2doc.image-http.connect-timeout-ms:10000}") long connectTimeoutMs,
+                                           @Value("${md2doc.image-http.request-timeout-ms:10000}") long requestTimeoutMs,
+                                           @Value("${md2doc.image-http.proxy:}") String proxy,
+                                           @Value("${md2doc.image-http.max-size-mb:20}") long maxSizeMb,
+                                           @Value("${md2doc.image-http.max-megapixels:50}") long maxMegapixels,
+                                           ImageCache imageCache, ImageSourceGuard imageSourceGuard) {
+        ProxySelector proxySelector = null;
+        if (proxy != null && !proxy.isBlank()) {
+            int colon = proxy.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("代理地址格式应为 host:port - " + proxy);
+            }
+            proxySelector = ProxySelector.of(new InetSocketAddress(proxy.substring(0, colon).trim(),
+                    Integer.parseInt(proxy.substring(colon + 1).trim())));
+        }
+        log.info("图片下载：连接超时 {}ms，请求超时 {}ms，代理 {}，单张上限 {}MB / {} 百万像素", connectTimeoutMs,
+                requestTimeoutMs, proxySelector == null ? "未启用" : proxy, maxSizeMb, maxMegapixels);
+        return new ImageDownloader(ImageDownloader.newHttpClient(Duration.ofMillis(connectTimeoutMs), proxySelector),
+                Duration.ofMillis(requestTimeoutMs), maxSizeMb * 1024 * 1024, maxMegapixels * 1_000_000,
+                imageCache, imageSourceGuard);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "md2doc.image-optimize.enabled", havingValue = "true")
+    public ImageOptimizer imageOptimizer(@Value("${md2doc.image-optimize.dpi:192}") int dpi,
+                                         @Value("${md2doc.image-optimize.jpeg-quality:0.85}") float jpegQuality,
+                                         @Value("${md2doc.image-optimize.cache-mb:32}") long cacheMb) {
+        log.info("图片优化：保留 {} dpi，JPEG 质量 {}，缓存上限 {}MB", dpi, jpegQuality, cacheMb);
+        return new ImageOptimizer(dpi, jpegQuality, cacheMb * 1024 * 1024);
+    }
+}
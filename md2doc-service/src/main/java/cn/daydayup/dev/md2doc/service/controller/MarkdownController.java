@@ -1,22 +1,43 @@
 package cn.daydayup.dev.md2doc.service.controller;
 
+import cn.daydayup.dev.md2doc.core.model.BatchDocument;
+import cn.daydayup.dev.md2doc.core.model.BatchResult;
+import cn.daydayup.dev.md2doc.core.model.ConversionOptions;
+import cn.daydayup.dev.md2doc.core.template.ChartTimings;
+import cn.daydayup.dev.md2doc.core.util.ImageCache;
+import cn.daydayup.dev.md2doc.core.util.ImageOptimizer;
+import cn.daydayup.dev.md2doc.core.util.ImageSourceGuard;
 import cn.daydayup.dev.md2doc.service.service.MarkdownConversionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.File;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @RestController
 @RequestMapping("/dataReport/md2doc/api/markdown")
@@ -26,6 +47,17 @@ public class MarkdownController {
     @Autowired
     private MarkdownConversionService markdownConversionService;
 
+    @Autowired
+    private ImageCache imageCache;
+
+    @Autowired
+    private ImageSourceGuard imageSourceGuard;
+
+    @Autowired(required = false)
+    private ImageOptimizer imageOptimizer;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
     // 用于存储临时文件的目录
     private static final String TEMP_DIR = System.getProperty("java.io.tmpdir") + "/md2doc/";
 
@@ -50,19 +82,15 @@ public class MarkdownController {
             
             // 生成唯一文件名
             String fileName = UUID.randomUUID().toString();
-            Path tempFilePath = tempDir.resolve(fileName + ".md");
-            
-            // 保存上传的Markdown文件
-            file.transferTo(tempFilePath);
             
             // 生成输出文件路径
             Path outputPath = tempDir.resolve(fileName + ".docx");
             
-            // 执行转换
-            markdownConversionService.convertMarkdownFileToWord(tempFilePath.toString(), outputPath.toString());
-            
-            // 删除临时的Markdown文件
-            Files.deleteIfExists(tempFilePath);
+            // 直接读取上传流执行转换，不再保存临时的Markdown文件
+            try (InputStream in = file.getInputStream();
+                 OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputPath))) {
+                markdownConversionService.convert(in, out);
+            }
             
             // 构造文件访问URL（支持公网 URL）
             String fileUrl = buildDownloadUrl(fileName + ".docx");
@@ -86,6 +114,9 @@ public class MarkdownController {
      */
     @PostMapping("/convert/text")
     public ResponseEntity<Map<String, String>> convertMarkdownText(@RequestBody MarkdownTextRequest request) {
+        if (!isValidChartMaxPoints(request.getChartMaxPoints())) {
+            return ResponseEntity.badRequest().build();
+        }
         try {
             // 创建临时目录
             Path tempDir = Paths.get(TEMP_DIR);
@@ -95,17 +126,11 @@ public class MarkdownController {
             
             // 生成唯一文件名
             String fileName = UUID.randomUUID().toString();
-            Path tempFilePath = tempDir.resolve(fileName + ".md");
             Path outputPath = tempDir.resolve(fileName + ".docx");
             
-            // 将Markdown内容写入临时文件
-            Files.write(tempFilePath, request.getContent().getBytes());
-            
             // 执行转换
-            markdownConversionService.convertMarkdownToWord(request.getContent(), outputPath.toString());
-            
-            // 删除临时的Markdown文件
-            Files.deleteIfExists(tempFilePath);
+            markdownConversionService.convertMarkdownToWord(request.getContent(), outputPath.toString(),
+                    request.getChartMaxPoints());
             
             // 构造文件访问URL（支持公网 URL）
             String fileUrl = buildDownloadUrl(fileName + ".docx");
@@ -121,6 +146,223 @@ public class MarkdownController {
         }
     }
     
+    /**
+     * 将Markdown文本内容转换为Word文档并直接写入响应，不落盘
+     *
+     * @param request 包含Markdown文本内容的请求体
+     * @return Word文档字节流
+     */
+    @PostMapping("/convert/stream")
+    public ResponseEntity<StreamingResponseBody> convertMarkdownStream(@RequestBody MarkdownTextRequest request) {
+        if (!isValidChartMaxPoints(request.getChartMaxPoints())) {
+            return ResponseEntity.badRequest().build();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", UUID.randomUUID() + ".docx");
+
+        StreamingResponseBody body = out -> {
+            try {
+                markdownConversionService.convertMarkdownToWord(request.getContent(), out, request.getChartMaxPoints());
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("转换失败: " + e.getMessage(), e);
+            }
+        };
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    /**
+     * 书籍模式：将多个章节的Markdown合并为一篇Word文档并直接写入响应
+     * 标题编号跨章节连续，每个章节单独成节（从新页开始）
+     *
+     * @param request 按顺序包含各章节Markdown的请求体
+     * @return Word文档字节流
+     */
+    @PostMapping("/convert/book")
+    public ResponseEntity<StreamingResponseBody> convertMarkdownBook(@RequestBody MarkdownBookRequest request) {
+        if (request.getChapters() == null || request.getChapters().isEmpty()
+                || !isValidChartMaxPoints(request.getChartMaxPoints())) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<String> chapters = new ArrayList<>();
+        for (String chapter : request.getChapters()) {
+            chapters.add(chapter == null ? "" : chapter);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", UUID.randomUUID() + ".docx");
+
+        StreamingResponseBody body = out -> {
+            try {
+                markdownConversionService.convertBook(chapters, out, request.getChartMaxPoints());
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("转换失败: " + e.getMessage(), e);
+            }
+        };
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    /**
+     * 批量将多篇Markdown转换为Word文档，以ZIP流返回
+     * 压缩包最后一项为 summary.json，包含成功/失败数、耗时和吞吐量（篇/秒）
+     *
+     * @param request 包含多篇Markdown的请求体
+     * @return ZIP字节流
+     */
+    @PostMapping("/convert/batch")
+    public ResponseEntity<StreamingResponseBody> convertMarkdownBatch(@RequestBody MarkdownBatchRequest request) {
+        if (request.getDocuments() == null || request.getDocuments().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<BatchDocument> documents = new ArrayList<>();
+        for (int i = 0; i < request.getDocuments().size(); i++) {
+            MarkdownBatchRequest.Document document = request.getDocuments().get(i);
+            String name = document.getName() == null || document.getName().isBlank()
+                    ? "document-" + (i + 1)
+                    : document.getName();
+            documents.add(new BatchDocument(name, document.getContent() == null ? "" : document.getContent()));
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setContentDispositionFormData("attachment", UUID.randomUUID() + ".zip");
+
+        StreamingResponseBody body = out -> {
+            ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+            try {
+                BatchResult result = markdownConversionService.convertBatch(documents, zip);
+
+                Map<String, Object> summary = new LinkedHashMap<>();
+                summary.put("total", result.getTotal());
+                summary.put("succeeded", result.getSucceeded());
+                summary.put("failed", result.getFailures());
+                summary.put("elapsedMillis", result.getElapsedMillis());
+                summary.put("docsPerSecond", result.getDocsPerSecond());
+                summary.put("sharedImages", result.getSharedImages());
+                summary.put("sharedChartConfigs", result.getSharedChartConfigs());
+                zip.putNextEntry(new ZipEntry("summary.json"));
+                zip.write(OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValueAsBytes(summary));
+                zip.closeEntry();
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("批量转换失败: " + e.getMessage(), e);
+            }
+            zip.finish();
+        };
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    /**
+     * 上传并编译邮件合并模板，内容相同的模板只编译一次
+     *
+     * @param file 含 ${key} 占位符和图表的 .docx 模板
+     * @return 模板ID和模板中的占位符
+     */
+    @PostMapping("/templates")
+    public ResponseEntity<Map<String, Object>> registerTemplate(@RequestParam("file") MultipartFile file) {
+        try {
+            String templateId = markdownConversionService.registerTemplate(file.getBytes());
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("templateId", templateId);
+            response.put("placeholders", markdownConversionService.getTemplate(templateId).getPlaceholders());
+            return ResponseEntity.ok(response);
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "模板解析失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 邮件合并：请求体为 NDJSON（每行一条记录），每条记录渲染一份模板文档，以ZIP流返回
+     * 记录边读取边渲染，文档写入压缩包后即释放，不在内存或磁盘中累积
+     * 压缩包最后一项为 summary.json，包含成功/失败数、耗时和吞吐量（份/秒）
+     *
+     * @param templateId 已上传模板的ID
+     * @param records NDJSON 请求体
+     * @return ZIP字节流
+     */
+    @PostMapping(value = "/merge/{templateId}", consumes = {"application/x-ndjson", MediaType.TEXT_PLAIN_VALUE,
+            MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<StreamingResponseBody> mailMerge(@PathVariable("templateId") String templateId,
+                                                           InputStream records) {
+        if (markdownConversionService.getTemplate(templateId) == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setContentDispositionFormData("attachment", UUID.randomUUID() + ".zip");
+
+        StreamingResponseBody body = out -> {
+            ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+            try (Reader reader = new InputStreamReader(records, StandardCharsets.UTF_8)) {
+                BatchResult result = markdownConversionService.mailMerge(templateId, reader, zip);
+
+                Map<String, Object> summary = new LinkedHashMap<>();
+                summary.put("total", result.getTotal());
+                summary.put("succeeded", result.getSucceeded());
+                summary.put("failed", result.getFailures());
+                summary.put("elapsedMillis", result.getElapsedMillis());
+                summary.put("docsPerSecond", result.getDocsPerSecond());
+                summary.put("sharedImages", result.getSharedImages());
+                zip.putNextEntry(new ZipEntry("summary.json"));
+                zip.write(OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValueAsBytes(summary));
+                zip.closeEntry();
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("邮件合并失败: " + e.getMessage(), e);
+            }
+            zip.finish();
+        };
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    /**
+     * 网络图片缓存的命中、未命中和字节数统计，用于评估缓存容量
+     *
+     * @return 缓存统计
+     */
+    @GetMapping("/image-cache/stats")
+    public ResponseEntity<ImageCache.Stats> imageCacheStats() {
+        return ResponseEntity.ok(imageCache.stats());
+    }
+
+    /**
+     * 图片来源保护的统计：成功/失败数、负缓存命中、熔断拒绝和对冲请求
+     *
+     * @return 保护统计
+     */
+    @GetMapping("/image-guard/stats")
+    public ResponseEntity<ImageSourceGuard.Stats> imageGuardStats() {
+        return ResponseEntity.ok(imageSourceGuard.stats());
+    }
+
+    /**
+     * 图片优化的次数、缓存命中和优化前后的字节数，未启用图片优化时返回 404
+     *
+     * @return 优化统计
+     */
+    @GetMapping("/image-optimizer/stats")
+    public ResponseEntity<ImageOptimizer.Stats> imageOptimizerStats() {
+        return imageOptimizer == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(imageOptimizer.stats());
+    }
+
+    /**
+     * 按内嵌工作簿生成方式统计的图表部件数量和生成耗时
+     *
+     * @return 图表生成统计
+     */
+    @GetMapping("/chart/stats")
+    public ResponseEntity<Map<ConversionOptions.ChartWorkbook, ChartTimings.Stats>> chartStats() {
+        return ResponseEntity.ok(ChartTimings.stats());
+    }
+
     /**
      * 提供文件下载服务
      * 
@@ -128,24 +370,18 @@ public class MarkdownController {
      * @return Word文档文件
      */
     @GetMapping("/files/{fileName:.+}")
-    public ResponseEntity<byte[]> downloadFile(@PathVariable("fileName") String fileName) {
-        try {
-            Path filePath = Paths.get(TEMP_DIR, fileName);
-            if (!Files.exists(filePath)) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            byte[] fileContent = Files.readAllBytes(filePath);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.setContentDispositionFormData("attachment", fileName);
-            
-            return new ResponseEntity<>(fileContent, headers, HttpStatus.OK);
-        } catch (IOException e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    public ResponseEntity<Resource> downloadFile(@PathVariable("fileName") String fileName) {
+        Path filePath = Paths.get(TEMP_DIR, fileName);
+        if (!Files.exists(filePath)) {
+            return ResponseEntity.notFound().build();
         }
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", fileName);
+        
+        // 以文件资源方式流式返回，不再整体读入内存
+        return new ResponseEntity<>(new FileSystemResource(filePath), headers, HttpStatus.OK);
     }
 
     /**
@@ -154,6 +390,11 @@ public class MarkdownController {
     public static class MarkdownTextRequest {
         private String content;
 
+        /**
+         * 图表每个系列最多保留的数据点数（可选），0 表示不降采样，未指定时使用服务配置
+         */
+        private Integer chartMaxPoints;
+
         public String getContent() {
             return content;
         }
@@ -161,6 +402,85 @@ public class MarkdownController {
         public void setContent(String content) {
             this.content = content;
         }
+
+        public Integer getChartMaxPoints() {
+            return chartMaxPoints;
+        }
+
+        public void setChartMaxPoints(Integer chartMaxPoints) {
+            this.chartMaxPoints = chartMaxPoints;
+        }
+    }
+
+    /**
+     * 书籍模式请求体
+     */
+    public static class MarkdownBookRequest {
+        private List<String> chapters;
+
+        /**
+         * 图表每个系列最多保留的数据点数（可选），0 表示不降采样，未指定时使用服务配置
+         */
+        private Integer chartMaxPoints;
+
+        public List<String> getChapters() {
+            return chapters;
+        }
+
+        public void setChapters(List<String> chapters) {
+            this.chapters = chapters;
+        }
+
+        public Integer getChartMaxPoints() {
+            return chartMaxPoints;
+        }
+
+        public void setChartMaxPoints(Integer chartMaxPoints) {
+            this.chartMaxPoints = chartMaxPoints;
+        }
+    }
+
+    /**
+     * 批量转换请求体
+     */
+    public static class MarkdownBatchRequest {
+        private List<Document> documents;
+
+        public List<Document> getDocuments() {
+            return documents;
+        }
+
+        public void setDocuments(List<Document> documents) {
+            this.documents = documents;
+        }
+
+        public static class Document {
+            private String name;
+            private String content;
+
+            public String getName() {
+                return name;
+            }
+
+            public void setName(String name) {
+                this.name = name;
+            }
+
+            public String getContent() {
+                return content;
+            }
+
+            public void setContent(String content) {
+                this.content = content;
+            }
+        }
+    }
+
+    /**
+     * 图表数据点上限可不指定、为 0（不降采样）或不小于 3
+     */
+    private static boolean isValidChartMaxPoints(Integer chartMaxPoints) {
+        return chartMaxPoints == null || chartMaxPoints == 0 || chartMaxPoints >= 3;
     }
 
     /**
@@ -1,5 +1,6 @@
 package cn.daydayup.dev.md2doc.service.mcp;
 
+import cn.daydayup.dev.md2doc.core.model.BatchResult;
 import cn.daydayup.dev.md2doc.service.service.MarkdownConversionService;
 import com.fasterxml.jackson.annotation.JsonClassDescription;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -12,11 +13,15 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.BufferedOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.UUID;
 import java.util.function.BiFunction;
+import java.util.zip.ZipOutputStream;
 
 /**
  * MCP Tools 配置 - 提供 Markdown 转 Word 的工具供 AI 模型调用
@@ -118,6 +123,56 @@ public class Md2docMcpTools {
             .build();
     }
 
+    /**
+     * 邮件合并工具：同一个 Word 模板以多条记录分别渲染，结果打包为 ZIP
+     */
+    @Bean
+    public ToolCallback mailMerge() {
+        BiFunction<MailMergeRequest, ToolContext, String> function = (request, toolContext) -> {
+            try {
+                // 验证模板是否存在
+                Path templatePath = Paths.get(request.templateFilePath);
+                if (!Files.exists(templatePath)) {
+                    return "错误：模板文件不存在 - " + request.templateFilePath;
+                }
+                String templateId = markdownConversionService.registerTemplate(Files.readAllBytes(templatePath));
+
+                // 创建临时目录
+                Path tempDir = Paths.get(TEMP_DIR);
+                if (!Files.exists(tempDir)) {
+                    Files.createDirectories(tempDir);
+                }
+
+                // 生成唯一文件名，文档逐份写入压缩包
+                String fileName = UUID.randomUUID() + ".zip";
+                BatchResult result;
+                try (ZipOutputStream zip = new ZipOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(tempDir.resolve(fileName))), StandardCharsets.UTF_8)) {
+                    result = markdownConversionService.mailMerge(templateId, new StringReader(request.records), zip);
+                }
+
+                // 构造文件访问URL，有失败的记录时一并返回失败原因
+                String fileUrl = buildDownloadUrl(fileName);
+                if (result.getFailures().isEmpty()) {
+                    return fileUrl;
+                }
+                return fileUrl + "\n部分记录渲染失败（成功 " + result.getSucceeded() + "/" + result.getTotal() + "）："
+                        + result.getFailures();
+
+            } catch (Exception e) {
+                return "错误：邮件合并失败 - " + e.getMessage();
+            }
+        };
+
+        return FunctionToolCallback.builder("mailMerge", function)
+            .description("邮件合并：以同一个 Word 模板（含 ${key} 占位符和图表）为每条 JSON 记录生成一份 Word 文档，打包为 ZIP。"
+                + "记录为 NDJSON，每行一条，格式：{\"name\": \"文件名\", \"text\": {\"占位符\": \"文本\"}, "
+                + "\"images\": {\"占位符\": \"图片URL\"}, \"tables\": {\"占位符\": [[\"表头\"], [\"值\"]]}, "
+                + "\"charts\": {\"图表标题\": {\"xAxis\": [\"一月\"], \"series\": {\"系列名\": [1]}}}}。返回可下载的 ZIP 链接")
+            .inputType(MailMergeRequest.class)
+            .build();
+    }
+
     /**
      * 获取支持的 Markdown 特性列表的工具
      */
@@ -174,6 +229,20 @@ public class Md2docMcpTools {
         public String markdownFilePath;
     }
 
+    /**
+     * 邮件合并请求
+     */
+    @JsonClassDescription("邮件合并请求")
+    public static class MailMergeRequest {
+        @JsonProperty(required = true)
+        @JsonPropertyDescription("Word 模板文件的完整路径(绝对路径)")
+        public String templateFilePath;
+
+        @JsonProperty(required = true)
+        @JsonPropertyDescription("NDJSON 格式的记录，每行一条 JSON 记录，每条记录生成一份文档")
+        public String records;
+    }
+
     /**
      * 获取特性请求
      */
@@ -1,12 +1,105 @@
 package cn.daydayup.dev.md2doc.service.service;
 
+import cn.daydayup.dev.md2doc.core.MailMergeConverter;
+import cn.daydayup.dev.md2doc.core.MarkdownBatchConverter;
 import cn.daydayup.dev.md2doc.core.MarkdownToWordConverter;
+import cn.daydayup.dev.md2doc.core.model.BatchDocument;
+import cn.daydayup.dev.md2doc.core.model.BatchResult;
+import cn.daydayup.dev.md2doc.core.generate.CompiledTemplate;
+import cn.daydayup.dev.md2doc.core.model.ConversionOptions;
+import cn.daydayup.dev.md2doc.core.template.DocumentSkeleton;
+import cn.daydayup.dev.md2doc.core.util.ChartDownsampler;
+import cn.daydayup.dev.md2doc.core.util.ImageDownloader;
+import cn.daydayup.dev.md2doc.core.util.ImageOptimizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipOutputStream;
+
 @Service
 public class MarkdownConversionService {
 
+    private static final Logger log = LoggerFactory.getLogger(MarkdownConversionService.class);
+
     private final MarkdownToWordConverter converter = new MarkdownToWordConverter();
+    private final MarkdownBatchConverter batchConverter = new MarkdownBatchConverter(converter);
+
+    /**
+     * 文档骨架，启动时构建一次，所有转换共用
+     */
+    private final DocumentSkeleton skeleton;
+
+    /**
+     * 批量转换的最大并发数
+     */
+    private final int batchParallelism;
+
+    /**
+     * 已编译的邮件合并模板，以模板内容的摘要为ID，超出容量时淘汰最久未使用的模板
+     */
+    private final Map<String, CompiledTemplate> templates;
+
+    /**
+     * 图片优化器，未启用时为 null，嵌入原图
+     */
+    @Autowired(required = false)
+    private ImageOptimizer imageOptimizer;
+
+    /**
+     * 图片下载器（HTTP客户端、大小上限、缓存和故障保护），未配置时使用默认实例
+     */
+    @Autowired(required = false)
+    private ImageDownloader imageDownloader = ImageDownloader.defaultDownloader();
+
+    /**
+     * 图表每个系列默认保留的最多数据点数，0 表示不降采样；单次请求可另行指定
+     */
+    @Value("${md2doc.chart-max-points:0}")
+    private int chartMaxPoints;
+
+    /**
+     * 图表内嵌工作簿的生成方式：XSSF（POI 构建）、STREAMING（直接写出）、NONE（不生成，图表数据不可编辑）
+     */
+    @Value("${md2doc.chart-workbook:XSSF}")
+    private ConversionOptions.ChartWorkbook chartWorkbook;
+
+    public MarkdownConversionService(@Value("${md2doc.reference-docx:}") String referenceDocx,
+                                     @Value("${md2doc.batch-parallelism:0}") int batchParallelism,
+                                     @Value("${md2doc.template-cache-size:32}") int templateCacheSize) throws IOException {
+        this.batchParallelism = batchParallelism > 0 ? batchParallelism : Runtime.getRuntime().availableProcessors();
+        this.templates = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledTemplate> eldest) {
+                return size() > Math.max(1, templateCacheSize);
+            }
+        });
+        if (referenceDocx == null || referenceDocx.isBlank()) {
+            this.skeleton = DocumentSkeleton.defaultSkeleton();
+            return;
+        }
+        try (InputStream in = Files.newInputStream(Paths.get(referenceDocx))) {
+            this.skeleton = DocumentSkeleton.fromReferenceDocx(in);
+        }
+        log.info("已加载参考文档样式: {}", referenceDocx);
+    }
 
     /**
      * 将Markdown文件转换为Word文档
@@ -16,7 +109,10 @@ public class MarkdownConversionService {
      * @throws Exception 转换过程中可能抛出的异常
      */
     public void convertMarkdownFileToWord(String markdownPath, String outputPath) throws Exception {
-        converter.convertMarkdownFileToWord(markdownPath, outputPath);
+        try (InputStream in = Files.newInputStream(Paths.get(markdownPath));
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(outputPath)))) {
+            converter.convert(in, out, options());
+        }
     }
 
     /**
@@ -27,6 +123,153 @@ public class MarkdownConversionService {
      * @throws Exception 转换过程中可能抛出的异常
      */
     public void convertMarkdownToWord(String markdownContent, String outputPath) throws Exception {
-        converter.convertMarkdownToWord(markdownContent, outputPath);
+        convertMarkdownToWord(markdownContent, outputPath, null);
+    }
+
+    /**
+     * 将Markdown内容转换为Word文档，图表按指定的数据点上限降采样
+     *
+     * @param markdownContent Markdown内容
+     * @param outputPath 输出Word文档路径
+     * @param chartMaxPoints 图表每个系列最多保留的数据点数，0 表示不降采样，为 null 时使用服务配置
+     * @throws Exception 转换过程中可能抛出的异常
+     */
+    public void convertMarkdownToWord(String markdownContent, String outputPath, Integer chartMaxPoints) throws Exception {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(outputPath)))) {
+            converter.convert(markdownContent, out, options(chartMaxPoints));
+        }
+    }
+
+    /**
+     * 将Markdown字节流转换为Word文档并直接写入输出流，不产生临时文件
+     *
+     * @param markdownStream Markdown字节流（UTF-8）
+     * @param out 输出流
+     * @throws Exception 转换过程中可能抛出的异常
+     */
+    public void convert(InputStream markdownStream, OutputStream out) throws Exception {
+        converter.convert(markdownStream, out, options());
+    }
+
+    /**
+     * 将Markdown内容转换为Word文档并直接写入输出流，不产生临时文件
+     *
+     * @param markdownContent Markdown内容
+     * @param out 输出流
+     * @throws Exception 转换过程中可能抛出的异常
+     */
+    public void convertMarkdownToWord(String markdownContent, OutputStream out) throws Exception {
+        convertMarkdownToWord(markdownContent, out, null);
+    }
+
+    /**
+     * 将Markdown内容转换为Word文档并直接写入输出流，图表按指定的数据点上限降采样
+     *
+     * @param markdownContent Markdown内容
+     * @param out 输出流
+     * @param chartMaxPoints 图表每个系列最多保留的数据点数，0 表示不降采样，为 null 时使用服务配置
+     * @throws Exception 转换过程中可能抛出的异常
+     */
+    public void convertMarkdownToWord(String markdownContent, OutputStream out, Integer chartMaxPoints) throws Exception {
+        converter.convert(markdownContent, out, options(chartMaxPoints));
+    }
+
+    /**
+     * 书籍模式：将多个章节合并为一篇Word文档，标题编号跨章节连续，章节之间分节
+     *
+     * @param chapters 各章节的Markdown内容
+     * @param out 输出流
+     * @throws Exception 转换过程中可能抛出的异常
+     */
+    public void convertBook(List<String> chapters, OutputStream out) throws Exception {
+        convertBook(chapters, out, null);
+    }
+
+    /**
+     * 书籍模式，图表按指定的数据点上限降采样
+     *
+     * @param chapters 各章节的Markdown内容
+     * @param out 输出流
+     * @param chartMaxPoints 图表每个系列最多保留的数据点数，0 表示不降采样，为 null 时使用服务配置
+     * @throws Exception 转换过程中可能抛出的异常
+     */
+    public void convertBook(List<String> chapters, OutputStream out, Integer chartMaxPoints) throws Exception {
+        converter.convertBook(chapters, out, options(chartMaxPoints));
+    }
+
+    /**
+     * 批量转换，一批文档共享图片、ECharts配置和文档骨架，转换结果依次写入压缩包
+     *
+     * @param documents 待转换的文档
+     * @param zip 结果压缩包
+     * @return 汇总结果（含吞吐量）
+     * @throws Exception 写出压缩包失败或被中断
+     */
+    public BatchResult convertBatch(List<BatchDocument> documents, ZipOutputStream zip) throws Exception {
+        return batchConverter.convert(documents, options(), batchParallelism, zip);
+    }
+
+    /**
+     * 编译并登记邮件合并模板，内容相同的模板只编译一次
+     *
+     * @param templateDocx 模板 .docx 字节
+     * @return 模板ID，用于后续的邮件合并
+     * @throws IOException 模板无法解析
+     */
+    public String registerTemplate(byte[] templateDocx) throws IOException {
+        String templateId = templateId(templateDocx);
+        if (!templates.containsKey(templateId)) {
+            try (InputStream in = new ByteArrayInputStream(templateDocx)) {
+                templates.put(templateId, CompiledTemplate.compile(in));
+            }
+            log.info("已编译邮件合并模板: {}", templateId);
+        }
+        return templateId;
+    }
+
+    /**
+     * @param templateId 模板ID
+     * @return 已登记的模板，不存在（未登记或已被淘汰）时返回 null
+     */
+    public CompiledTemplate getTemplate(String templateId) {
+        return templates.get(templateId);
+    }
+
+    /**
+     * 邮件合并：以 NDJSON 中的每条记录渲染一份模板文档，渲染结果依次写入压缩包
+     *
+     * @param templateId 已登记的模板ID
+     * @param records NDJSON 记录，每行一条
+     * @param zip 结果压缩包
+     * @return 汇总结果（含吞吐量）
+     * @throws Exception 模板不存在、读取记录或写出压缩包失败
+     */
+    public BatchResult mailMerge(String templateId, Reader records, ZipOutputStream zip) throws Exception {
+        CompiledTemplate template = getTemplate(templateId);
+        if (template == null) {
+            throw new IllegalArgumentException("模板不存在或已过期: " + templateId);
+        }
+        return MailMergeConverter.merge(template, records, batchParallelism, imageDownloader, zip);
+    }
+
+    private static String templateId(byte[] templateDocx) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(templateDocx);
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ConversionOptions options() {
+        return options(null);
+    }
+
+    private ConversionOptions options(Integer requestChartMaxPoints) {
+        int maxPoints = requestChartMaxPoints != null ? requestChartMaxPoints : chartMaxPoints;
+        return ConversionOptions.create().setSkeleton(skeleton).setImageOptimizer(imageOptimizer)
+                .setImageDownloader(imageDownloader)
+                .setChartDownsampler(maxPoints > 0 ? new ChartDownsampler(maxPoints) : null)
+                .setChartWorkbook(chartWorkbook);
     }
 }
\ No newline at end of file
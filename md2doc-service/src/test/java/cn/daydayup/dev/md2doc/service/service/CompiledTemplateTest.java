@@ -0,0 +1,82 @@
+package cn.daydayup.dev.md2doc.service.service;
+
+import cn.daydayup.dev.md2doc.core.generate.CompiledTemplate;
+import cn.daydayup.dev.md2doc.core.model.WordParam;
+import cn.daydayup.dev.md2doc.core.model.WordParams;
+import org.apache.poi.wp.usermodel.HeaderFooterType;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFHeader;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 编译模板渲染的结果应能被 POI 重新打开：拆分占位符、页眉、单元格、图片、表格和非法控制字符
+ */
+class CompiledTemplateTest {
+
+    @Test
+    void renderedTemplateReopensWithPoi() throws IOException {
+        CompiledTemplate template = CompiledTemplate.compile(new ByteArrayInputStream(template()));
+
+        WordParams params = WordParams.create();
+        params.setText("name", "A\u0001B & <C>");
+        params.setParam("empty", new WordParam.Text(null));
+        params.setText("title", "页眉标题");
+        params.setText("cell", "单元格\u000B内容");
+        params.setParam("photo", WordParam.image(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB)));
+        params.setParam("grid", WordParam.table(List.of(List.of("列1", "列2"), List.of("a", "b"))));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(params, out);
+
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(out.toByteArray()))) {
+            List<XWPFParagraph> paragraphs = document.getParagraphs();
+            assertEquals("姓名：AB & <C>", paragraphs.get(0).getText());
+            assertEquals("空值：", paragraphs.get(1).getText());
+            assertFalse(paragraphs.get(2).getText().contains("${"));
+            assertEquals(1, document.getAllPictures().size());
+
+            List<XWPFTable> tables = document.getTables();
+            assertEquals(2, tables.size());
+            assertEquals("单元格内容", tables.get(0).getRow(0).getCell(0).getText());
+            assertEquals("列1", tables.get(1).getRow(0).getCell(0).getText());
+            assertEquals("b", tables.get(1).getRow(1).getCell(1).getText());
+
+            XWPFHeader header = document.getHeaderList().get(0);
+            assertEquals("页眉标题", header.getParagraphs().get(0).getText());
+            assertTrue(document.getDocument().xmlText().indexOf("${") < 0);
+        }
+    }
+
+    private static byte[] template() throws IOException {
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph split = document.createParagraph();
+            split.createRun().setText("姓名：${na");
+            split.createRun().setText("me}");
+            document.createParagraph().createRun().setText("空值：${empty}");
+            document.createParagraph().createRun().setText("${photo}");
+
+            XWPFTable table = document.createTable(1, 1);
+            table.getRow(0).getCell(0).getParagraphs().get(0).createRun().setText("${cell}");
+            document.createParagraph().createRun().setText("${grid}");
+
+            XWPFHeader header = document.createHeader(HeaderFooterType.DEFAULT);
+            header.createParagraph().createRun().setText("${title}");
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+}
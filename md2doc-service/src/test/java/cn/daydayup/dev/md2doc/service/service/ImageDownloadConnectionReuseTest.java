@@ -0,0 +1,93 @@
+package cn.daydayup.dev.md2doc.service.service;
+
+import cn.daydayup.dev.md2doc.core.MarkdownToWordConverter;
+import cn.daydayup.dev.md2doc.core.model.ConversionOptions;
+import cn.daydayup.dev.md2doc.core.util.ImageDownloader;
+import cn.daydayup.dev.md2doc.core.util.ImageFetcher;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 图片下载应复用连接：同一主机的请求数远多于连接数，连接数不超过单主机并发上限
+ */
+class ImageDownloadConnectionReuseTest {
+
+    private static final int IMAGES = 20;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            connections.add(exchange.getRemoteAddress());
+            byte[] image = png(exchange.getRequestURI().getPath().hashCode());
+            exchange.getResponseHeaders().add("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, image.length);
+            exchange.getResponseBody().write(image);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void imagesAcrossConversionsShareConnections() throws Exception {
+        MarkdownToWordConverter converter = new MarkdownToWordConverter();
+        // 不缓存图片，两次转换都发出请求；两次转换共用下载器，也就共用其HTTP客户端的连接
+        ImageDownloader downloader = new ImageDownloader(
+                ImageDownloader.newHttpClient(ImageDownloader.DEFAULT_CONNECT_TIMEOUT, null),
+                ImageDownloader.DEFAULT_REQUEST_TIMEOUT, ImageDownloader.DEFAULT_MAX_IMAGE_BYTES,
+                ImageDownloader.DEFAULT_MAX_IMAGE_PIXELS, null, null);
+        StringBuilder markdown = new StringBuilder("# 图片\n\n");
+        for (int i = 0; i < IMAGES; i++) {
+            markdown.append("![图").append(i).append("](http://127.0.0.1:")
+                    .append(server.getAddress().getPort()).append("/image-").append(i).append(".png)\n\n");
+        }
+
+        for (int round = 0; round < 2; round++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            converter.convert(markdown.toString(), out, ConversionOptions.create().setImageDownloader(downloader));
+            try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(out.toByteArray()))) {
+                assertEquals(IMAGES, document.getAllPictures().size());
+            }
+        }
+
+        assertEquals(IMAGES * 2, requests.get());
+        assertTrue(connections.size() <= ImageFetcher.DEFAULT_PER_HOST_CONCURRENCY,
+                "两次转换共 " + requests.get() + " 个请求使用了 " + connections.size() + " 个连接");
+    }
+
+    private static byte[] png(int color) throws IOException {
+        BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, color);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
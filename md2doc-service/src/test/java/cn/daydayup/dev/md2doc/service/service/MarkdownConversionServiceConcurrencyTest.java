@@ -0,0 +1,101 @@
+package cn.daydayup.dev.md2doc.service.service;
+
+import org.apache.poi.xwpf.usermodel.IBodyElement;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 多线程共享同一个转换服务实例时，每篇文档的输出应与单线程转换完全一致
+ */
+class MarkdownConversionServiceConcurrencyTest {
+
+    private static final int CONVERSIONS = 200;
+
+    @Test
+    void parallelConversionsProduceIdenticalDocuments() throws Exception {
+        MarkdownConversionService service = new MarkdownConversionService("", 0, 32);
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            expected.add(describe(convert(service, markdown(i))));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(CONVERSIONS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < CONVERSIONS; i++) {
+                String markdown = markdown(i % 4);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return describe(convert(service, markdown));
+                }));
+            }
+            start.countDown();
+
+            for (int i = 0; i < CONVERSIONS; i++) {
+                assertEquals(expected.get(i % 4), results.get(i).get(), "第 " + i + " 次转换结果不一致");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] convert(MarkdownConversionService service, String markdown) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.convertMarkdownToWord(markdown, out);
+        return out.toByteArray();
+    }
+
+    private static String markdown(int variant) {
+        return "# 第" + variant + "章 概述\n\n"
+                + "本章包含 **加粗**、*斜体* 和 `代码`。\n\n"
+                + "## 数据列表\n\n"
+                + "- 条目 " + variant + "-1\n"
+                + "  - 子条目 " + variant + "-2\n"
+                + "1. 有序条目\n\n"
+                + "| 指标 | 数值 |\n"
+                + "| --- | --- |\n"
+                + "| 销售额 | " + (100 + variant) + " |\n"
+                + "| 利润 | " + (20 + variant) + " |\n\n"
+                + "```echarts\n"
+                + "{title: {text: '月度趋势" + variant + "'}, xAxis: {data: ['一月', '二月', '三月']},"
+                + " series: [{name: '销量', type: 'line', data: [" + variant + ", 5, 9]}]}\n"
+                + "```\n\n"
+                + "## 小结\n\n"
+                + "### 细节\n\n"
+                + "结束段落 " + variant + "。\n";
+    }
+
+    /**
+     * 提取正文文本、列表编号和图表数据，用于比较两篇文档
+     */
+    private static String describe(byte[] docx) throws Exception {
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(docx))) {
+            StringBuilder description = new StringBuilder();
+            for (IBodyElement element : document.getBodyElements()) {
+                if (element instanceof XWPFParagraph paragraph) {
+                    description.append(paragraph.getText()).append('|').append(paragraph.getNumID());
+                } else if (element instanceof XWPFTable table) {
+                    description.append(table.getText());
+                }
+                description.append('\n');
+            }
+            document.getCharts().forEach(chart -> description.append(chart.getCTChart().xmlText()).append('\n'));
+            return description.toString();
+        }
+    }
+}